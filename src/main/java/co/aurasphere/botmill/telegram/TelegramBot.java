@@ -24,13 +24,20 @@
 package co.aurasphere.botmill.telegram;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import co.aurasphere.botmill.core.BotMillPolicy;
 import co.aurasphere.botmill.telegram.actionframe.ActionFrame;
 import co.aurasphere.botmill.telegram.autoreply.AutoReply;
+import co.aurasphere.botmill.telegram.bean.TelegramBotMillBean;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.internal.dispatch.ActionFrameIndex;
+import co.aurasphere.botmill.telegram.internal.dispatch.ParallelFrameRunner;
 import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.support.dispatch.DispatcherOptions;
+import co.aurasphere.botmill.telegram.support.dispatch.FrameExecution;
 
 /**
  * Class that represents a TelegramBotMill bot. Each bot has a list of
@@ -38,15 +45,41 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * At each callback received from Telegram, all registered bots callbacks
  * handler are checked. If any callback condition is verified, then the
  * callback handler method is called.
+ * <p>
+ * The frames of a bot can be added or replaced at any time, even while the
+ * bot is processing updates. Each update is processed with the frames
+ * registered when its processing started. The frames added one by one are
+ * indexed together when the bot next needs them, so registering many frames
+ * through {@link #addActionFrame(ActionFrame)} is not slower than through
+ * {@link #setActionFrames(List)}.
  *
  * @author Donato Rimenti
  */
 public class TelegramBot {
 
 	/**
-	 * A list of registered {@link TelegramBotMillEvent} for the current bot.
+	 * The registered {@link ActionFrame} for the current bot, indexed by the
+	 * updates each frame can handle. The index is never modified but replaced
+	 * by a new one whenever the frames change.
 	 */
-	private List<ActionFrame> actionFrameList;
+	private volatile ActionFrameIndex actionFrameIndex;
+
+	/**
+	 * Lock held while building a new {@link #actionFrameIndex} or changing
+	 * the {@link #addedFrames}, so that concurrent changes are not lost.
+	 */
+	private final Object actionFrameLock = new Object();
+
+	/**
+	 * The frames added after the {@link #actionFrameIndex} was built, which
+	 * are indexed on the next read of the frames.
+	 */
+	private final List<ActionFrame> addedFrames = new ArrayList<ActionFrame>();
+
+	/**
+	 * Whether there are {@link #addedFrames} not indexed yet.
+	 */
+	private volatile boolean actionFrameIndexStale;
 
 	/**
 	 * The policy this bot follows when processing the callback handler list.
@@ -72,18 +105,23 @@ public class TelegramBot {
 			botMillPolicy = BotMillPolicy.FIRST_ONLY;
 		}
 		this.botMillPolicy = botMillPolicy;
-		this.actionFrameList = new ArrayList<ActionFrame>();
+		this.actionFrameIndex = new ActionFrameIndex();
 		TelegramBotMillContext.getInstance().register(this);
 	}
 
 	/**
-	 * Adds an {@link ActionFrame} to this bot.
+	 * Adds an {@link ActionFrame} to this bot. The frame is indexed, together
+	 * with any other frame added in the meantime, before the next update is
+	 * processed or the frames are read.
 	 * 
 	 * @param actionFrame
 	 *            the actionFrame to add.
 	 */
 	public void addActionFrame(ActionFrame actionFrame) {
-		this.actionFrameList.add(actionFrame);
+		synchronized (this.actionFrameLock) {
+			this.addedFrames.add(actionFrame);
+			this.actionFrameIndexStale = true;
+		}
 	}
 
 	/**
@@ -95,8 +133,7 @@ public class TelegramBot {
 	 *            the {@link AutoReply} which should handle the event.
 	 */
 	public void addActionFrame(TelegramBotMillEvent event, AutoReply reply) {
-		ActionFrame frame = new ActionFrame(event, reply);
-		this.actionFrameList.add(frame);
+		addActionFrame(new ActionFrame(event, reply));
 	}
 
 	/**
@@ -109,8 +146,67 @@ public class TelegramBot {
 	 *            event.
 	 */
 	public void addActionFrame(TelegramBotMillEvent event, AutoReply... replies) {
-		ActionFrame frame = new ActionFrame(event, replies);
-		this.actionFrameList.add(frame);
+		addActionFrame(new ActionFrame(event, replies));
+	}
+
+	/**
+	 * Replaces all the {@link ActionFrame} of this bot at once. The updates
+	 * being processed keep using the previous frames, while the following
+	 * ones are processed with the new frames. The frames are indexed before
+	 * being swapped in, so the processing of the updates is never paused.
+	 * 
+	 * @param actionFrames
+	 *            the new frames, in the order they should be evaluated.
+	 */
+	public void setActionFrames(List<ActionFrame> actionFrames) {
+		if (actionFrames == null) {
+			actionFrames = Collections.emptyList();
+		}
+		synchronized (this.actionFrameLock) {
+			this.actionFrameIndex = new ActionFrameIndex(actionFrames,
+					this.actionFrameIndex.getVersion() + 1);
+			this.addedFrames.clear();
+			this.actionFrameIndexStale = false;
+		}
+	}
+
+	/**
+	 * Gets the {@link #actionFrameIndex}, indexing first the
+	 * {@link #addedFrames}, if any.
+	 * 
+	 * @return the index of the frames currently registered.
+	 */
+	private ActionFrameIndex getActionFrameIndex() {
+		if (this.actionFrameIndexStale) {
+			synchronized (this.actionFrameLock) {
+				if (this.actionFrameIndexStale) {
+					this.actionFrameIndex = this.actionFrameIndex
+							.with(this.addedFrames);
+					this.addedFrames.clear();
+					this.actionFrameIndexStale = false;
+				}
+			}
+		}
+		return this.actionFrameIndex;
+	}
+
+	/**
+	 * Gets the {@link ActionFrame} currently registered for this bot.
+	 * 
+	 * @return a snapshot of the frames, which can't be modified.
+	 */
+	public List<ActionFrame> getActionFrames() {
+		return getActionFrameIndex().getFrames();
+	}
+
+	/**
+	 * Gets the version of the frames currently registered for this bot, which
+	 * increases each time the frames change.
+	 * 
+	 * @return the version of the frames.
+	 */
+	public long getActionFramesVersion() {
+		return getActionFrameIndex().getVersion();
 	}
 
 	/**
@@ -120,13 +216,32 @@ public class TelegramBot {
 	 * followed by this bot. If the policy is {@link BotMillPolicy#FIRST_ONLY},
 	 * the chain will be processed until the first callback matches. Otherwise,
 	 * if the policy is {@link BotMillPolicy#PROCESS_ALL}, all the chain will
-	 * always be processed.
+	 * always be processed. Only the frames which can handle the type of the
+	 * update are evaluated. Unless the policy is FIRST_ONLY, the triggered
+	 * frames are run as set by {@link DispatcherOptions#getFrameExecution()}.
 	 * 
 	 * @param update
 	 *            the incoming message.
 	 */
 	public void processMessage(Update update) {
-		for (ActionFrame f : this.actionFrameList) {
+		TelegramBotMillEventType type = TelegramBotMillBean
+				.eventKindOf(update);
+		ActionFrameIndex frames = getActionFrameIndex();
+		Iterable<ActionFrame> candidates = frames.getCandidates(update, type);
+		if (!this.botMillPolicy.equals(BotMillPolicy.FIRST_ONLY)) {
+			TelegramBotMillContext context = TelegramBotMillContext
+					.getInstance();
+			FrameExecution execution = context.getDispatcherOptions()
+					.getFrameExecution();
+			if (execution == FrameExecution.PARALLEL
+					|| execution == FrameExecution.PARALLEL_ORDERED) {
+				ParallelFrameRunner.run(candidates, update,
+						execution == FrameExecution.PARALLEL_ORDERED,
+						context.getFrameExecutor());
+				return;
+			}
+		}
+		for (ActionFrame f : candidates) {
 			// If the policy is FIRST_ONLY stop processing the chain at the
 			// first trigger.
 			if (f.getReplies() != null && f.getReplies().length > 0) {
@@ -152,8 +267,7 @@ public class TelegramBot {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result
-				+ ((actionFrameList == null) ? 0 : actionFrameList.hashCode());
+		result = prime * result + getActionFrames().hashCode();
 		result = prime * result
 				+ ((botMillPolicy == null) ? 0 : botMillPolicy.hashCode());
 		return result;
@@ -173,10 +287,7 @@ public class TelegramBot {
 		if (getClass() != obj.getClass())
 			return false;
 		TelegramBot other = (TelegramBot) obj;
-		if (actionFrameList == null) {
-			if (other.actionFrameList != null)
-				return false;
-		} else if (!actionFrameList.equals(other.actionFrameList))
+		if (!getActionFrames().equals(other.getActionFrames()))
 			return false;
 		if (botMillPolicy != other.botMillPolicy)
 			return false;
@@ -190,7 +301,7 @@ public class TelegramBot {
 	 */
 	@Override
 	public String toString() {
-		return "TelegramBot [actionFrameList=" + actionFrameList + ", policy="
+		return "TelegramBot [actionFrameList=" + getActionFrames() + ", policy="
 				+ botMillPolicy + "]";
 	}
 
@@ -23,10 +23,37 @@
  */
 package co.aurasphere.botmill.telegram;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDeduplicator;
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDispatcher;
+import co.aurasphere.botmill.telegram.internal.util.concurrent.NamedThreadFactory;
+import co.aurasphere.botmill.telegram.internal.util.concurrent.VirtualThreads;
+import co.aurasphere.botmill.telegram.internal.util.json.GsonJsonCodec;
+import co.aurasphere.botmill.telegram.internal.util.json.JsonCodec;
+import co.aurasphere.botmill.telegram.internal.util.network.HttpClientFactory;
+import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
+import co.aurasphere.botmill.telegram.internal.util.network.OutboundScheduler;
 import co.aurasphere.botmill.telegram.support.TelegramBotMillMonitor;
+import co.aurasphere.botmill.telegram.support.dispatch.DispatcherOptions;
+import co.aurasphere.botmill.telegram.support.network.HttpClientOptions;
+import co.aurasphere.botmill.telegram.support.network.RateLimitOptions;
+import co.aurasphere.botmill.telegram.support.network.RetryOptions;
 
 /**
  * Class that contains all the context information used to handle bots and
@@ -37,6 +64,12 @@ import co.aurasphere.botmill.telegram.support.TelegramBotMillMonitor;
  */
 public class TelegramBotMillContext {
 
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(TelegramBotMillContext.class);
+
 	/**
 	 * A list of the registered bots in the context. A {@link TelegramBot} can't
 	 * be used unless it's registered to the context.
@@ -44,9 +77,10 @@ public class TelegramBotMillContext {
 	private List<TelegramBot> registeredBots;
 
 	/**
-	 * The current instance.
+	 * The current instance, created when the class is initialized so that all
+	 * the threads share the same one.
 	 */
-	private static TelegramBotMillContext instance;
+	private static final TelegramBotMillContext instance = new TelegramBotMillContext();
 
 	/**
 	 * The bot token used by Telegram for authentication. For more informations
@@ -63,12 +97,111 @@ public class TelegramBotMillContext {
 	 */
 	private boolean validationEnabled;
 
+	/**
+	 * Boolean that indicates whether the updates received through the webhook
+	 * are decoded lazily, only when the bots access their fields.
+	 */
+	private boolean lazyUpdateParsing;
+
+	/**
+	 * The engine which converts the objects from and to JSON.
+	 */
+	private volatile JsonCodec jsonCodec;
+
 	/**
 	 * A list of the registered monitors in the context.
 	 * 
 	 */
 	private List<TelegramBotMillMonitor> registeredMonitors;
 
+	/**
+	 * The options used to build the {@link #httpClient}.
+	 */
+	private HttpClientOptions httpClientOptions;
+
+	/**
+	 * The pooled HTTP client shared by all the requests to Telegram. It's
+	 * created on first use and released by {@link #shutdown()}.
+	 */
+	private volatile CloseableHttpClient httpClient;
+
+	/**
+	 * The bounded executor which sends the asynchronous requests to Telegram.
+	 * It's created on first use and stopped by {@link #shutdown()}.
+	 */
+	private volatile ExecutorService asyncExecutor;
+
+	/**
+	 * The options of the {@link #outboundScheduler}.
+	 */
+	private RateLimitOptions rateLimitOptions;
+
+	/**
+	 * The scheduler which keeps the outgoing requests within the Telegram
+	 * rate limits. It's created on first use if the rate limiter is enabled.
+	 */
+	private volatile OutboundScheduler outboundScheduler;
+
+	/**
+	 * The options for the retry of the failed requests.
+	 */
+	private RetryOptions retryOptions;
+
+	/**
+	 * Timer used to run delayed tasks, such as the retry of a failed request.
+	 * It's created on first use and stopped by {@link #shutdown()}.
+	 */
+	private volatile ScheduledExecutorService scheduledExecutor;
+
+	/**
+	 * The options of the {@link #updateDispatcher}.
+	 */
+	private DispatcherOptions dispatcherOptions;
+
+	/**
+	 * The dispatcher which processes the incoming updates on per-chat ordered
+	 * lanes. It's created on first use if enabled.
+	 */
+	private volatile UpdateDispatcher updateDispatcher;
+
+	/**
+	 * The executor which runs concurrently the action frames triggered by the
+	 * same update. It's created on first use and stopped by
+	 * {@link #shutdown()}.
+	 */
+	private volatile ExecutorService frameExecutor;
+
+	/**
+	 * How many of the last update IDs received through the webhook are
+	 * remembered in order to drop the updates sent again by Telegram. Zero
+	 * disables the deduplication.
+	 */
+	private int deduplicationWindow;
+
+	/**
+	 * The filter which drops the duplicate updates. It's created on first use
+	 * if enabled.
+	 */
+	private volatile UpdateDeduplicator updateDeduplicator;
+
+	/**
+	 * Boolean that indicates whether the updates and the requests to Telegram
+	 * are processed on virtual threads, when the JVM supports them.
+	 */
+	private boolean virtualThreadsEnabled;
+
+	/**
+	 * The permits which limit the number of requests sent to Telegram at the
+	 * same time when running on virtual threads. It's created on first use.
+	 */
+	private volatile Semaphore requestPermits;
+
+	/**
+	 * Boolean that indicates whether the JVM shutdown hook has already been
+	 * registered.
+	 */
+	private boolean shutdownHookRegistered;
+
 	/**
 	 * Instantiates a new TelegramBotMillContext. The validator is enabled by
 	 * default.
@@ -77,6 +210,12 @@ public class TelegramBotMillContext {
 		this.registeredBots = new ArrayList<TelegramBot>();
 		this.validationEnabled = true;
 		this.registeredMonitors = new ArrayList<TelegramBotMillMonitor>();
+		this.httpClientOptions = new HttpClientOptions();
+		this.rateLimitOptions = new RateLimitOptions();
+		this.retryOptions = new RetryOptions();
+		this.dispatcherOptions = new DispatcherOptions();
+		this.deduplicationWindow = 1024;
+		this.jsonCodec = new GsonJsonCodec();
 	}
 
 	/**
@@ -98,9 +237,6 @@ public class TelegramBotMillContext {
 	 * @return the current instance of TelegramBotMillContext.
 	 */
 	public static TelegramBotMillContext getInstance() {
-		if (instance == null) {
-			instance = new TelegramBotMillContext();
-		}
 		return instance;
 	}
 
@@ -151,6 +287,48 @@ public class TelegramBotMillContext {
 		this.validationEnabled = validationEnabled;
 	}
 
+	/**
+	 * Checks if the updates are decoded lazily.
+	 *
+	 * @return true, if the updates are decoded lazily.
+	 * @see co.aurasphere.botmill.telegram.model.update.LazyUpdate
+	 */
+	public boolean isLazyUpdateParsing() {
+		return this.lazyUpdateParsing;
+	}
+
+	/**
+	 * Sets the {@link #lazyUpdateParsing}. Lazy parsing reduces the work done
+	 * for each update when bots only look at a few fields of the messages.
+	 *
+	 * @param lazyUpdateParsing
+	 *            the {@link #lazyUpdateParsing} to set.
+	 */
+	public void setLazyUpdateParsing(boolean lazyUpdateParsing) {
+		this.lazyUpdateParsing = lazyUpdateParsing;
+	}
+
+	/**
+	 * Gets the {@link #jsonCodec}.
+	 *
+	 * @return the {@link #jsonCodec}.
+	 */
+	public JsonCodec getJsonCodec() {
+		return this.jsonCodec;
+	}
+
+	/**
+	 * Sets the {@link #jsonCodec}. The default one is a {@link GsonJsonCodec};
+	 * a {@link co.aurasphere.botmill.telegram.internal.util.json.StreamingJsonCodec}
+	 * trades HTML-safe escaping for less work on each conversion.
+	 *
+	 * @param jsonCodec
+	 *            the {@link #jsonCodec} to set.
+	 */
+	public void setJsonCodec(JsonCodec jsonCodec) {
+		this.jsonCodec = jsonCodec;
+	}
+
 	/**
 	 * Registers a monitor to the context. A monitor needs to be registered to
 	 * this context in order to be used.
@@ -171,6 +349,473 @@ public class TelegramBotMillContext {
 		return this.registeredMonitors;
 	}
 
+	/**
+	 * Gets the {@link #httpClientOptions}.
+	 *
+	 * @return the {@link #httpClientOptions}.
+	 */
+	public HttpClientOptions getHttpClientOptions() {
+		return this.httpClientOptions;
+	}
+
+	/**
+	 * Sets the {@link #httpClientOptions}. The options are applied when the
+	 * HTTP client is created, so this must be called before the first request
+	 * to Telegram.
+	 *
+	 * @param httpClientOptions
+	 *            the {@link #httpClientOptions} to set.
+	 */
+	public void setHttpClientOptions(HttpClientOptions httpClientOptions) {
+		this.httpClientOptions = httpClientOptions;
+	}
+
+	/**
+	 * Gets the shared HTTP client, creating it on first call. A JVM shutdown
+	 * hook which releases the client is registered along with it.
+	 *
+	 * @return the shared {@link #httpClient}.
+	 */
+	public CloseableHttpClient getHttpClient() {
+		CloseableHttpClient client = this.httpClient;
+		if (client == null) {
+			synchronized (this) {
+				client = this.httpClient;
+				if (client == null) {
+					client = HttpClientFactory.create(this.httpClientOptions);
+					this.httpClient = client;
+					registerShutdownHook();
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Gets the executor used to send asynchronous requests, creating it on
+	 * first call. Its size and queue capacity are taken from the
+	 * {@link #httpClientOptions}. When the queue is full, requests are sent by
+	 * the calling thread, which slows down producers instead of piling up
+	 * requests in memory. On virtual threads, each request gets its own
+	 * thread instead.
+	 *
+	 * @return the shared {@link #asyncExecutor}.
+	 */
+	public ExecutorService getAsyncExecutor() {
+		ExecutorService executor = this.asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.asyncExecutor;
+				if (executor == null) {
+					executor = newVirtualExecutor("telegram-botmill-async");
+					if (executor == null) {
+						int poolSize = this.httpClientOptions
+								.getAsyncPoolSize();
+						ThreadPoolExecutor pool = new ThreadPoolExecutor(
+								poolSize, poolSize, 60, TimeUnit.SECONDS,
+								new ArrayBlockingQueue<Runnable>(
+										this.httpClientOptions
+												.getAsyncQueueCapacity()),
+								new NamedThreadFactory(
+										"telegram-botmill-async"),
+								new ThreadPoolExecutor.CallerRunsPolicy());
+						pool.allowCoreThreadTimeOut(true);
+						executor = pool;
+					}
+					this.asyncExecutor = executor;
+					registerShutdownHook();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Gets the {@link #rateLimitOptions}.
+	 *
+	 * @return the {@link #rateLimitOptions}.
+	 */
+	public RateLimitOptions getRateLimitOptions() {
+		return this.rateLimitOptions;
+	}
+
+	/**
+	 * Sets the {@link #rateLimitOptions}. The options are applied when the
+	 * scheduler is created, so this must be called before the first request
+	 * to Telegram.
+	 *
+	 * @param rateLimitOptions
+	 *            the {@link #rateLimitOptions} to set.
+	 */
+	public void setRateLimitOptions(RateLimitOptions rateLimitOptions) {
+		this.rateLimitOptions = rateLimitOptions;
+	}
+
+	/**
+	 * Gets the scheduler which applies the rate limits to the outgoing
+	 * requests, creating it on first call. Its metrics can be used to monitor
+	 * how close the bot is to the Telegram limits.
+	 *
+	 * @return the shared {@link #outboundScheduler} or null if the rate
+	 *         limiter is disabled.
+	 */
+	public OutboundScheduler getOutboundScheduler() {
+		if (!this.rateLimitOptions.isEnabled()) {
+			return null;
+		}
+		OutboundScheduler scheduler = this.outboundScheduler;
+		if (scheduler == null) {
+			synchronized (this) {
+				scheduler = this.outboundScheduler;
+				if (scheduler == null) {
+					scheduler = new OutboundScheduler(this.rateLimitOptions);
+					this.outboundScheduler = scheduler;
+					registerShutdownHook();
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Gets the {@link #retryOptions}.
+	 *
+	 * @return the {@link #retryOptions}.
+	 */
+	public RetryOptions getRetryOptions() {
+		return this.retryOptions;
+	}
+
+	/**
+	 * Sets the {@link #retryOptions}.
+	 *
+	 * @param retryOptions
+	 *            the {@link #retryOptions} to set.
+	 */
+	public void setRetryOptions(RetryOptions retryOptions) {
+		this.retryOptions = retryOptions;
+	}
+
+	/**
+	 * Gets the timer used to run delayed tasks, creating it on first call.
+	 * Delayed tasks should only hand work over to other executors, since the
+	 * timer runs on a single thread.
+	 *
+	 * @return the shared {@link #scheduledExecutor}.
+	 */
+	public ScheduledExecutorService getScheduledExecutor() {
+		ScheduledExecutorService executor = this.scheduledExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.scheduledExecutor;
+				if (executor == null) {
+					ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+							1, new NamedThreadFactory("telegram-botmill-timer"));
+					timer.setRemoveOnCancelPolicy(true);
+					executor = timer;
+					this.scheduledExecutor = executor;
+					registerShutdownHook();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Gets the {@link #dispatcherOptions}.
+	 *
+	 * @return the {@link #dispatcherOptions}.
+	 */
+	public DispatcherOptions getDispatcherOptions() {
+		return this.dispatcherOptions;
+	}
+
+	/**
+	 * Sets the {@link #dispatcherOptions}. The options are applied when the
+	 * dispatcher is created, so this must be called before the first update
+	 * is received.
+	 *
+	 * @param dispatcherOptions
+	 *            the {@link #dispatcherOptions} to set.
+	 */
+	public void setDispatcherOptions(DispatcherOptions dispatcherOptions) {
+		this.dispatcherOptions = dispatcherOptions;
+	}
+
+	/**
+	 * Gets the dispatcher which processes the incoming updates, creating it on
+	 * first call. On virtual threads, the dispatcher is always used and runs
+	 * each update on its own thread.
+	 *
+	 * @return the shared {@link #updateDispatcher} or null if the dispatcher is
+	 *         disabled.
+	 */
+	public UpdateDispatcher getUpdateDispatcher() {
+		if (!this.dispatcherOptions.isEnabled() && !isOnVirtualThreads()) {
+			return null;
+		}
+		UpdateDispatcher dispatcher = this.updateDispatcher;
+		if (dispatcher == null) {
+			synchronized (this) {
+				dispatcher = this.updateDispatcher;
+				if (dispatcher == null) {
+					ExecutorService executor = newVirtualExecutor("telegram-botmill-update");
+					if (executor != null) {
+						dispatcher = new UpdateDispatcher(
+								this.dispatcherOptions, executor);
+					} else {
+						dispatcher = new UpdateDispatcher(
+								this.dispatcherOptions);
+					}
+					this.updateDispatcher = dispatcher;
+					registerShutdownHook();
+				}
+			}
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * Gets the executor which runs concurrently the action frames triggered
+	 * by the same update, creating it on first call. Its size is taken from
+	 * the {@link #dispatcherOptions}. It doesn't queue any frame: when all its
+	 * threads are busy, frames are run by the thread processing the update.
+	 * On virtual threads, each frame gets its own thread instead.
+	 *
+	 * @return the shared {@link #frameExecutor}.
+	 */
+	public ExecutorService getFrameExecutor() {
+		ExecutorService executor = this.frameExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.frameExecutor;
+				if (executor == null) {
+					executor = newVirtualExecutor("telegram-botmill-frame");
+					if (executor == null) {
+						int poolSize = Math.max(
+								this.dispatcherOptions.getFramePoolSize(), 1);
+						ThreadPoolExecutor pool = new ThreadPoolExecutor(
+								poolSize, poolSize, 60, TimeUnit.SECONDS,
+								new SynchronousQueue<Runnable>(),
+								new NamedThreadFactory(
+										"telegram-botmill-frame"),
+								new RejectedExecutionHandler() {
+									// Unlike CallerRunsPolicy, also runs the
+									// frames after shutdown, since the thread
+									// processing the update waits for them.
+									public void rejectedExecution(Runnable r,
+											ThreadPoolExecutor executor) {
+										r.run();
+									}
+								});
+						pool.allowCoreThreadTimeOut(true);
+						executor = pool;
+					}
+					this.frameExecutor = executor;
+					registerShutdownHook();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Gets the {@link #deduplicationWindow}.
+	 *
+	 * @return the {@link #deduplicationWindow}.
+	 */
+	public int getDeduplicationWindow() {
+		return this.deduplicationWindow;
+	}
+
+	/**
+	 * Sets the {@link #deduplicationWindow}. This must be called before the
+	 * first update is received.
+	 *
+	 * @param deduplicationWindow
+	 *            the {@link #deduplicationWindow} to set.
+	 */
+	public void setDeduplicationWindow(int deduplicationWindow) {
+		this.deduplicationWindow = deduplicationWindow;
+	}
+
+	/**
+	 * Gets the filter which drops the duplicate updates, creating it on first
+	 * call. Its metrics tell how often Telegram sends an update again.
+	 *
+	 * @return the shared {@link #updateDeduplicator} or null if the
+	 *         deduplication is disabled.
+	 */
+	public UpdateDeduplicator getUpdateDeduplicator() {
+		if (this.deduplicationWindow <= 0) {
+			return null;
+		}
+		UpdateDeduplicator deduplicator = this.updateDeduplicator;
+		if (deduplicator == null) {
+			synchronized (this) {
+				deduplicator = this.updateDeduplicator;
+				if (deduplicator == null) {
+					deduplicator = new UpdateDeduplicator(
+							this.deduplicationWindow);
+					this.updateDeduplicator = deduplicator;
+				}
+			}
+		}
+		return deduplicator;
+	}
+
+	/**
+	 * Checks if the updates and the requests are processed on virtual
+	 * threads.
+	 *
+	 * @return true, if virtual threads are enabled.
+	 */
+	public boolean isVirtualThreadsEnabled() {
+		return this.virtualThreadsEnabled;
+	}
+
+	/**
+	 * Sets the {@link #virtualThreadsEnabled}. When enabled on a JVM which
+	 * supports virtual threads, each update is dispatched, each triggered
+	 * action frame is run and each asynchronous request is sent on its own
+	 * virtual thread, so that blocking calls made while replying don't tie up
+	 * a thread pool. The updates of a chat are still processed in order and
+	 * the number of requests sent to Telegram at the same time is limited by
+	 * {@link HttpClientOptions#getMaxConcurrentRequests()}. On older JVMs,
+	 * platform threads are used as usual. This must be called before the
+	 * first update is received.
+	 *
+	 * @param virtualThreadsEnabled
+	 *            the {@link #virtualThreadsEnabled} to set.
+	 */
+	public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+		this.virtualThreadsEnabled = virtualThreadsEnabled;
+	}
+
+	/**
+	 * Gets the permits which limit the number of requests sent to Telegram at
+	 * the same time, creating them on first call. Each request must hold a
+	 * permit while it's being sent.
+	 *
+	 * @return the shared {@link #requestPermits} or null if the requests are
+	 *         not sent on virtual threads.
+	 */
+	public Semaphore getRequestPermits() {
+		if (!isOnVirtualThreads()) {
+			return null;
+		}
+		Semaphore permits = this.requestPermits;
+		if (permits == null) {
+			synchronized (this) {
+				permits = this.requestPermits;
+				if (permits == null) {
+					permits = new Semaphore(Math.max(
+							this.httpClientOptions.getMaxConcurrentRequests(),
+							1), true);
+					this.requestPermits = permits;
+				}
+			}
+		}
+		return permits;
+	}
+
+	/**
+	 * Checks if virtual threads are enabled and supported by the JVM.
+	 *
+	 * @return true, if virtual threads are used.
+	 */
+	private boolean isOnVirtualThreads() {
+		return this.virtualThreadsEnabled && VirtualThreads.isSupported();
+	}
+
+	/**
+	 * Creates an executor which runs each task on its own virtual thread, if
+	 * they are enabled.
+	 *
+	 * @param prefix
+	 *            the prefix of the name of the threads.
+	 * @return the executor or null if virtual threads are disabled or not
+	 *         supported by the JVM.
+	 */
+	private ExecutorService newVirtualExecutor(String prefix) {
+		if (!this.virtualThreadsEnabled) {
+			return null;
+		}
+		ExecutorService executor = VirtualThreads.newExecutor(prefix);
+		if (executor == null) {
+			logger.warn("Virtual threads are not supported by this JVM, using platform threads for {}.",
+					prefix);
+		}
+		return executor;
+	}
+
+	/**
+	 * Releases the resources held by the context, waiting for the queued
+	 * updates and the pending asynchronous requests and then closing all the
+	 * pooled connections to Telegram. The requests still waiting for a retry
+	 * or for the rate limits are discarded, completing their futures
+	 * exceptionally. The context can still be used afterwards: new resources
+	 * will be created on the next request.
+	 */
+	public synchronized void shutdown() {
+		if (this.updateDispatcher != null) {
+			this.updateDispatcher.shutdown();
+			this.updateDispatcher = null;
+		}
+		if (this.frameExecutor != null) {
+			this.frameExecutor.shutdown();
+			this.frameExecutor = null;
+		}
+		if (this.scheduledExecutor != null) {
+			this.scheduledExecutor.shutdownNow();
+			this.scheduledExecutor = null;
+			NetworkUtils.discardPendingRetries();
+		}
+		if (this.outboundScheduler != null) {
+			this.outboundScheduler.shutdown();
+			this.outboundScheduler = null;
+		}
+		if (this.asyncExecutor != null) {
+			this.asyncExecutor.shutdown();
+			try {
+				if (!this.asyncExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+					logger.warn("Pending asynchronous requests to Telegram have been discarded.");
+					this.asyncExecutor.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				this.asyncExecutor.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			this.asyncExecutor = null;
+		}
+		if (this.httpClient != null) {
+			try {
+				this.httpClient.close();
+			} catch (IOException e) {
+				logger.error("Error while closing the HTTP client: ", e);
+			}
+			this.httpClient = null;
+		}
+		this.requestPermits = null;
+	}
+
+	/**
+	 * Registers a JVM shutdown hook which calls {@link #shutdown()}, once.
+	 */
+	private void registerShutdownHook() {
+		if (this.shutdownHookRegistered) {
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(
+				new Thread("telegram-botmill-shutdown") {
+					@Override
+					public void run() {
+						TelegramBotMillContext.this.shutdown();
+					}
+				});
+		this.shutdownHookRegistered = true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -23,15 +23,28 @@
  */
 package co.aurasphere.botmill.telegram;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import co.aurasphere.botmill.core.base.BotMillServlet;
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDeduplicator;
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDispatcher;
 import co.aurasphere.botmill.telegram.internal.util.json.JsonUtils;
+import co.aurasphere.botmill.telegram.model.update.LazyUpdate;
 import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.support.dispatch.DispatcherOptions;
 
 /**
  * Main Servlet for Telegram BotMill framework.
@@ -50,6 +63,18 @@ public class TelegramBotMillServlet extends BotMillServlet {
 	 */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The charset of the updates sent by Telegram.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Boolean that indicates whether the warning about
+	 * {@link DispatcherOptions#isImmediateAck()} being ignored has already
+	 * been logged.
+	 */
+	private final AtomicBoolean immediateAckWarned = new AtomicBoolean();
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -64,13 +89,27 @@ public class TelegramBotMillServlet extends BotMillServlet {
 		logger.trace("POST received!");
 		Update callback = null;
 
-		// Extrapolates and logs the JSON for debugging.
-		String json = readerToString(req.getReader());
-		logger.debug("JSON input: " + json);
-
-		// Parses the request as a Telegram Update.
+		// Parses the request as a Telegram Update. The body is read as a
+		// stream and decoded only once, unless debug logging is enabled, in
+		// which case it's captured in order to be logged. In lazy mode, the
+		// raw bytes are kept and decoded only when the bots access them.
+		TelegramBotMillContext context = TelegramBotMillContext.getInstance();
 		try {
-			callback = JsonUtils.fromJson(json, Update.class);
+			if (context.isLazyUpdateParsing()) {
+				byte[] body = readBody(req);
+				if (logger.isDebugEnabled()) {
+					logger.debug("JSON input: {}", new String(body, UTF_8));
+				}
+				callback = new LazyUpdate(body);
+			} else if (logger.isDebugEnabled()) {
+				String json = readerToString(new InputStreamReader(
+						req.getInputStream(), UTF_8));
+				logger.debug("JSON input: {}", json);
+				callback = JsonUtils.fromJson(json, Update.class);
+			} else {
+				callback = JsonUtils.fromJson(new InputStreamReader(
+						req.getInputStream(), UTF_8), Update.class);
+			}
 		} catch (Exception e) {
 			logger.error("Error during Telegram Update parsing: ", e);
 			return;
@@ -78,12 +117,130 @@ public class TelegramBotMillServlet extends BotMillServlet {
 
 		// If the received POST is a Telegram Update, it forwards it to the
 		// registered bots.
-		if (callback != null) {
-			for (TelegramBot bot : TelegramBotMillContext.getInstance()
-					.getRegisteredBots()) {
-				bot.processMessage(callback);
+		if (callback == null) {
+			return;
+		}
+
+		// Drops the updates sent again by Telegram.
+		UpdateDeduplicator deduplicator = context.getUpdateDeduplicator();
+		long updateId = parseUpdateId(callback);
+		if (deduplicator != null && !deduplicator.add(updateId)) {
+			logger.debug("Duplicate update {} dropped.", updateId);
+			return;
+		}
+
+		UpdateDispatcher dispatcher = context.getUpdateDispatcher();
+		if (dispatcher == null) {
+			if (context.getDispatcherOptions().isImmediateAck()
+					&& this.immediateAckWarned.compareAndSet(false, true)) {
+				logger.warn("Immediate acknowledgement is ignored since the dispatcher is disabled: updates are acknowledged once processed.");
 			}
+			UpdateDispatcher.processUpdate(callback);
+			return;
+		}
+
+		// Processes the update on the lane of its chat. Unless immediate
+		// acknowledgement is enabled, the request is held until the update has
+		// been processed. If the update can't be queued, Telegram is asked to
+		// send it again later.
+		DispatcherOptions options = context.getDispatcherOptions();
+		CompletableFuture<Void> processing = dispatcher.dispatch(callback);
+		if (options.isImmediateAck() && !processing.isDone()) {
+			processing.whenComplete(new BiConsumer<Void, Throwable>() {
+				public void accept(Void result, Throwable error) {
+					if (error != null) {
+						logger.error("Error while processing the update: ",
+								error);
+					}
+				}
+			});
+			return;
 		}
+		try {
+			processing.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RejectedExecutionException) {
+				logger.warn("Update rejected: {}", e.getCause().getMessage());
+				reject(resp, options, deduplicator, updateId);
+			} else {
+				logger.error("Error while processing the update: ",
+						e.getCause());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reject(resp, options, deduplicator, updateId);
+		}
+	}
+
+	/**
+	 * Reads the whole body of a request.
+	 * 
+	 * @param req
+	 *            the request.
+	 * @return the body of the request.
+	 * @throws IOException
+	 *             if the body couldn't be read.
+	 */
+	private static byte[] readBody(HttpServletRequest req) throws IOException {
+		int length = req.getContentLength();
+		InputStream in = req.getInputStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream(
+				length > 0 ? length : 4096);
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Asks Telegram to send an update again later.
+	 * 
+	 * @param resp
+	 *            the response.
+	 * @param options
+	 *            the dispatcher options.
+	 * @param deduplicator
+	 *            the duplicate filter, can be null.
+	 * @param updateId
+	 *            the ID of the update.
+	 * @throws IOException
+	 *             if the response couldn't be sent.
+	 */
+	private void reject(HttpServletResponse resp, DispatcherOptions options,
+			UpdateDeduplicator deduplicator, long updateId) throws IOException {
+		// The update will be sent again, so it must not count as received.
+		if (deduplicator != null) {
+			deduplicator.forget(updateId);
+		}
+		resp.sendError(options.getRejectedStatusCode());
+	}
+
+	/**
+	 * Parses the ID of an update.
+	 * 
+	 * @param update
+	 *            the update.
+	 * @return the ID of the update or {@link Long#MIN_VALUE} if it's not
+	 *         valid, which is never considered a duplicate.
+	 */
+	private static long parseUpdateId(Update update) {
+		try {
+			return Long.parseLong(update.getUpdateId());
+		} catch (NumberFormatException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Releases the pooled HTTP connections held by the
+	 * {@link TelegramBotMillContext} when the servlet is taken out of service.
+	 */
+	@Override
+	public void destroy() {
+		TelegramBotMillContext.getInstance().shutdown();
+		super.destroy();
 	}
 
 	/*
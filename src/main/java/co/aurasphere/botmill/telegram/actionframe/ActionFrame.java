@@ -23,8 +23,17 @@
  */
 package co.aurasphere.botmill.telegram.actionframe;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import co.aurasphere.botmill.telegram.autoreply.AutoReply;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
+import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
 /**
@@ -36,6 +45,12 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  */
 public class ActionFrame {
 
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(ActionFrame.class);
+
 	/**
 	 * The event of this frame that will trigger the reply.
 	 */
@@ -51,6 +66,15 @@ public class ActionFrame {
 	 */
 	private AutoReply[] replies;
 
+	/**
+	 * Gets the event.
+	 *
+	 * @return the event
+	 */
+	public TelegramBotMillEvent getEvent() {
+		return event;
+	}
+
 	/**
 	 * Gets the reply.
 	 *
@@ -95,6 +119,17 @@ public class ActionFrame {
 		this.replies = replies;
 	}
 
+	/**
+	 * Checks if the event of this frame is triggered, without replying.
+	 *
+	 * @param update
+	 *            the incoming update.
+	 * @return true, if the event has been triggered.
+	 */
+	public boolean isTriggered(Update update) {
+		return this.event != null && this.event.verifyEventCondition(update);
+	}
+
 	/**
 	 * Executes the reply if the event is triggered.
 	 *
@@ -119,7 +154,9 @@ public class ActionFrame {
 	}
 
 	/**
-	 * Executes multiple replies when multiple AutoReply are set.
+	 * Executes multiple replies when multiple AutoReply are set. The replies
+	 * are sent as described by {@link #sendReplies(Update)}, before
+	 * {@link #afterReply(Update)} is called.
 	 * 
 	 * @param update
 	 *            the incoming update.
@@ -132,16 +169,64 @@ public class ActionFrame {
 		boolean triggered = this.event.verifyEventCondition(update);
 		if (triggered) {
 			beforeReply(update);
-			if (this.replies != null) {
-				for (AutoReply reply : replies) {
-					reply.reply(update);
-				}
-			}
+			sendReplies(update);
 			afterReply(update);
 		}
 		return triggered;
 	}
 
+	/**
+	 * Sends the {@link #replies} to an update, in order, returning once they
+	 * have been sent. The responses of consecutive plain replies (see
+	 * {@link AutoReply#isPlainReply()}) are built first and sent as a single
+	 * batch, back to back on the same connection. The other replies are sent
+	 * through their own {@link AutoReply#reply(Update)}.
+	 * 
+	 * @param update
+	 *            the incoming update.
+	 */
+	public void sendReplies(Update update) {
+		if (this.replies == null) {
+			return;
+		}
+		List<TelegramBotMillResponse> batch = new ArrayList<TelegramBotMillResponse>(
+				this.replies.length);
+		for (AutoReply reply : this.replies) {
+			if (reply.isPlainReply()) {
+				TelegramBotMillResponse response = reply
+						.prepareResponse(update);
+				if (response != null) {
+					batch.add(response);
+				}
+			} else {
+				sendBatch(batch);
+				reply.reply(update);
+			}
+		}
+		sendBatch(batch);
+	}
+
+	/**
+	 * Sends a batch of responses and waits for it, then clears it. As for a
+	 * single reply, a response which couldn't be sent or was rejected by
+	 * Telegram is only logged.
+	 * 
+	 * @param batch
+	 *            the responses to send.
+	 */
+	private void sendBatch(List<TelegramBotMillResponse> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			NetworkUtils.postJsonMessages(batch).join();
+		} catch (CompletionException e) {
+			logger.error("Error while sending the replies of " + this + ": ",
+					e.getCause());
+		}
+		batch.clear();
+	}
+
 	/**
 	 * Convenience method executed before the reply is sent to the user. Default
 	 * implementation does nothing, but you can override it with your desired
@@ -23,9 +23,13 @@
  */
 package co.aurasphere.botmill.telegram.autoreply;
 
+import java.util.concurrent.CompletableFuture;
+
 import co.aurasphere.botmill.telegram.bean.TelegramBotMillBean;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
 import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+import co.aurasphere.botmill.telegram.model.Message;
 import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
@@ -39,19 +43,118 @@ import co.aurasphere.botmill.telegram.model.update.Update;
 public abstract class AutoReply extends TelegramBotMillBean implements Reply {
 
 	/**
-	 * Method which defines the reply flow.
+	 * Tells, for each class of reply, whether it overrides
+	 * {@link #reply(Update)}.
+	 */
+	private static final ClassValue<Boolean> CUSTOM_REPLY = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return type.getMethod("reply", Update.class)
+						.getDeclaringClass() != AutoReply.class;
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+	};
+
+	/**
+	 * How this reply is sent. Defaults to {@link SendMode#SYNCHRONOUS}.
+	 */
+	private SendMode sendMode = SendMode.SYNCHRONOUS;
+
+	/**
+	 * Method which defines the reply flow. According to the {@link #sendMode},
+	 * the response is either sent before this method returns or handed to the
+	 * asynchronous executor.
 	 * 
 	 * @param update
 	 *            the current callback message
 	 */
 	public void reply(Update update) {
-		TelegramBotMillResponse response = createResponse(update);
+		if (this.sendMode == SendMode.ASYNCHRONOUS) {
+			replyAsync(update);
+			return;
+		}
+		TelegramBotMillResponse response = prepareResponse(update);
 		if (response != null) {
-			// If the response is valid, replies to it.
-			if (validate(response)) {
-				NetworkUtils.postJsonMessage(response);
-			}
+			NetworkUtils.postJsonMessage(response);
+		}
+	}
+
+	/**
+	 * Sends the reply without blocking the calling thread. Callers which need
+	 * to wait for the reply to be delivered can join the returned future.
+	 * 
+	 * @param update
+	 *            the current callback message
+	 * @return a future which completes with the response of Telegram, or with
+	 *         null if there was nothing valid to send.
+	 */
+	public CompletableFuture<ApiResponse<Message>> replyAsync(Update update) {
+		TelegramBotMillResponse response = prepareResponse(update);
+		if (response != null) {
+			return NetworkUtils.postJsonMessageAsync(response);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Creates the response to an update and validates it, without sending
+	 * it.
+	 * 
+	 * @param update
+	 *            the current callback message
+	 * @return the response to send or null if there is nothing valid to send.
+	 */
+	public TelegramBotMillResponse prepareResponse(Update update) {
+		TelegramBotMillResponse response = createResponse(update);
+		// If the response is valid, replies to it.
+		if (response != null && validate(response)) {
+			return response;
 		}
+		return null;
+	}
+
+	/**
+	 * Checks if this reply can be sent by sending the response built by
+	 * {@link #prepareResponse(Update)}, which is the case when it's
+	 * synchronous and its class doesn't override {@link #reply(Update)}.
+	 * Otherwise, it must be sent by calling {@link #reply(Update)}.
+	 * 
+	 * @return true, if the prepared response can be sent in place of this
+	 *         reply.
+	 */
+	public boolean isPlainReply() {
+		return this.sendMode != SendMode.ASYNCHRONOUS && !isCustomReply();
+	}
+
+	/**
+	 * Checks if the class of this reply overrides {@link #reply(Update)}.
+	 * 
+	 * @return true, if {@link #reply(Update)} has been overridden.
+	 */
+	public boolean isCustomReply() {
+		return CUSTOM_REPLY.get(getClass());
+	}
+
+	/**
+	 * Gets the {@link #sendMode}.
+	 *
+	 * @return the {@link #sendMode}.
+	 */
+	public SendMode getSendMode() {
+		return sendMode;
+	}
+
+	/**
+	 * Sets the {@link #sendMode}.
+	 *
+	 * @param sendMode
+	 *            the {@link #sendMode} to set.
+	 */
+	public void setSendMode(SendMode sendMode) {
+		this.sendMode = sendMode;
 	}
 
 	public abstract TelegramBotMillResponse createResponse(Update update);
@@ -25,8 +25,14 @@ package co.aurasphere.botmill.telegram.autoreply;
 
 import org.hibernate.validator.constraints.NotBlank;
 
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+import co.aurasphere.botmill.telegram.internal.util.json.JsonTemplate;
+import co.aurasphere.botmill.telegram.internal.util.network.TelegramMethod;
 import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
 import co.aurasphere.botmill.telegram.model.outcoming.factory.ReplyFactory;
+import co.aurasphere.botmill.telegram.model.outcoming.factory.TextMessageResponseBuilder;
+import co.aurasphere.botmill.telegram.model.outcoming.response.PreparedResponse;
+import co.aurasphere.botmill.telegram.model.outcoming.response.TextMessageResponse;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
 /**
@@ -43,6 +49,32 @@ public class MessageAutoReply extends AutoReply {
 	@NotBlank
 	private String replyMessage;
 
+	/**
+	 * Boolean that indicates whether the {@link #replyMessage} is valid,
+	 * checked on the first reply. Since it never changes, the responses then
+	 * only need their chat ID to be checked.
+	 */
+	private volatile Boolean prevalidated;
+
+	/**
+	 * Boolean that indicates whether the response is a reply to the message
+	 * received, quoting it.
+	 */
+	private boolean quote;
+
+	/**
+	 * Boolean that indicates whether the JSON of the response is serialized
+	 * once into a {@link JsonTemplate}, so that each reply only writes the
+	 * chat ID into it.
+	 */
+	private boolean precompiled;
+
+	/**
+	 * The template of the response, compiled on the first reply when
+	 * {@link #precompiled} is true.
+	 */
+	private volatile JsonTemplate template;
+
 	/**
 	 * Instantiates a new message auto reply.
 	 *
@@ -57,7 +89,94 @@ public class MessageAutoReply extends AutoReply {
 	 * {@inheritDoc} It replies with the message specified in the constructor.
 	 */
 	public TelegramBotMillResponse createResponse(Update update) {
-		return ReplyFactory.addTextMessageOnly(this.replyMessage).build(update);
+		int replyToMessageId = this.quote ? safeGetMessageId(update) : 0;
+		if (this.precompiled) {
+			return new PreparedResponse(getTemplate(),
+					TelegramMethod.SEND_MESSAGE, safeGetChatId(update),
+					replyToMessageId);
+		}
+		TextMessageResponseBuilder builder = ReplyFactory
+				.addTextMessageOnly(this.replyMessage);
+		if (this.quote) {
+			builder.replyToMessageId(replyToMessageId);
+		}
+		return builder.build(update);
+	}
+
+	/**
+	 * Gets the {@link #template}, compiling it if needed.
+	 *
+	 * @return the {@link #template}.
+	 */
+	private JsonTemplate getTemplate() {
+		JsonTemplate template = this.template;
+		if (template == null) {
+			TextMessageResponse prototype = new TextMessageResponse();
+			prototype.setText(this.replyMessage);
+			template = JsonTemplate.compile(prototype, this.quote);
+			this.template = template;
+		}
+		return template;
+	}
+
+	/**
+	 * Checks if the response quotes the message received.
+	 *
+	 * @return true, if the response quotes the message received.
+	 */
+	public boolean isQuote() {
+		return quote;
+	}
+
+	/**
+	 * Sets the {@link #quote}.
+	 *
+	 * @param quote
+	 *            the {@link #quote} to set.
+	 */
+	public void setQuote(boolean quote) {
+		this.quote = quote;
+		this.template = null;
+	}
+
+	/**
+	 * Checks if the response is serialized in advance.
+	 *
+	 * @return true, if the response is serialized in advance.
+	 */
+	public boolean isPrecompiled() {
+		return precompiled;
+	}
+
+	/**
+	 * Sets the {@link #precompiled}. A precompiled reply skips building and
+	 * serializing the response at each reply. The JSON is produced by the
+	 * codec in use when the first reply is sent.
+	 *
+	 * @param precompiled
+	 *            the {@link #precompiled} to set.
+	 */
+	public void setPrecompiled(boolean precompiled) {
+		this.precompiled = precompiled;
+		this.template = null;
+	}
+
+	/**
+	 * {@inheritDoc} Since the text of the response is fixed and was checked
+	 * when this reply was created, only the chat ID is checked. Invalid
+	 * responses go through the full validation, which reports the errors.
+	 */
+	@Override
+	protected boolean validate(TelegramBotMillResponse response) {
+		if (TelegramBotMillContext.getInstance().isValidationEnabled()) {
+			if (this.prevalidated == null) {
+				this.prevalidated = validateProperty(this, "replyMessage");
+			}
+			if (this.prevalidated && response.getChatId() != null) {
+				return true;
+			}
+		}
+		return super.validate(response);
 	}
 
 	/*
@@ -69,6 +188,8 @@ public class MessageAutoReply extends AutoReply {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + (precompiled ? 1231 : 1237);
+		result = prime * result + (quote ? 1231 : 1237);
 		result = prime * result + ((replyMessage == null) ? 0 : replyMessage.hashCode());
 		return result;
 	}
@@ -87,6 +208,10 @@ public class MessageAutoReply extends AutoReply {
 		if (getClass() != obj.getClass())
 			return false;
 		MessageAutoReply other = (MessageAutoReply) obj;
+		if (precompiled != other.precompiled)
+			return false;
+		if (quote != other.quote)
+			return false;
 		if (replyMessage == null) {
 			if (other.replyMessage != null)
 				return false;
@@ -102,7 +227,8 @@ public class MessageAutoReply extends AutoReply {
 	 */
 	@Override
 	public String toString() {
-		return "MessageAutoReply [replyMessage=" + replyMessage + "]";
+		return "MessageAutoReply [replyMessage=" + replyMessage + ", quote="
+				+ quote + ", precompiled=" + precompiled + "]";
 	}
 
 }
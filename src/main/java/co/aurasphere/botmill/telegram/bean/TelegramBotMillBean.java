@@ -25,11 +25,12 @@ package co.aurasphere.botmill.telegram.bean;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
-import javax.validation.ValidatorFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,12 @@ public class TelegramBotMillBean {
 	private final static Logger logger = LoggerFactory
 			.getLogger(TelegramBotMillBean.class);
 
+	/**
+	 * Whether each class of response validated so far declares any
+	 * constraint.
+	 */
+	private static final ConcurrentMap<Class<?>, Boolean> constrainedClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
 	/**
 	 * Retrieves a text message from an Update. It never returns null.
 	 * 
@@ -88,6 +95,25 @@ public class TelegramBotMillBean {
 		return "";
 	}
 
+	/**
+	 * Retrieves the ID of the message of an update.
+	 * 
+	 * @param update
+	 *            the Telegram update.
+	 * @return the message ID if found or 0 otherwise.
+	 */
+	protected int safeGetMessageId(Update update) {
+		if (update != null && update.getMessage() != null
+				&& update.getMessage().getMessageId() != null) {
+			try {
+				return Integer.parseInt(update.getMessage().getMessageId());
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * Returns the kind of callback received for the current envelope.
 	 * 
@@ -97,6 +123,22 @@ public class TelegramBotMillBean {
 	 *         callback type.
 	 */
 	protected TelegramBotMillEventType eventKind(Update update) {
+		return eventKindOf(update);
+	}
+
+	/**
+	 * Returns the kind of callback received for an update.
+	 * 
+	 * @param update
+	 *            the update to inspect.
+	 * @return a {@link TelegramBotMillEventType} representing the callback
+	 *         type, {@link TelegramBotMillEventType#ANY} if the update is null
+	 *         or carries no message.
+	 */
+	public static TelegramBotMillEventType eventKindOf(Update update) {
+		if (update == null) {
+			return TelegramBotMillEventType.ANY;
+		}
 		Message message = update.getMessage();
 		if (message != null) {
 			if (message.getText() != null) {
@@ -158,7 +200,8 @@ public class TelegramBotMillBean {
 	}
 
 	/**
-	 * Validates the {@link TelegramBotMillResponse}.
+	 * Validates the {@link TelegramBotMillResponse}. Classes without any
+	 * constraint are not validated at all.
 	 *
 	 * @param response
 	 *            the response
@@ -169,31 +212,74 @@ public class TelegramBotMillBean {
 		if (!TelegramBotMillContext.getInstance().isValidationEnabled()) {
 			return true;
 		}
+		if (!isConstrained(response.getClass())) {
+			return true;
+		}
 
-		boolean valid = true;
-		ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-		Validator validator = factory.getValidator();
-		Set<ConstraintViolation<TelegramBotMillResponse>> violations = validator
+		Set<ConstraintViolation<TelegramBotMillResponse>> violations = ValidatorHolder.VALIDATOR
 				.validate(response);
+		if (violations.isEmpty()) {
+			return true;
+		}
 		for (ConstraintViolation<TelegramBotMillResponse> v : violations) {
-			valid = false;
 			logger.error(
 					"TelegramBotMillResponse validation error. Message: [{}] Value: [{}], Class: [{}], Field: [{}]",
 					v.getMessage(), v.getInvalidValue(), v.getRootBean(),
 					v.getPropertyPath());
 		}
 
-		if (valid == false) {
-			// Sends the constraint violations through the callback.
-			List<TelegramBotMillMonitor> registeredMonitors = TelegramBotMillContext
-					.getInstance().getRegisteredMonitors();
-			for (TelegramBotMillMonitor monitor : registeredMonitors) {
-				// TODO
-				// monitor.onValidationError(response, violations);
-			}
+		// Sends the constraint violations through the callback.
+		List<TelegramBotMillMonitor> registeredMonitors = TelegramBotMillContext
+				.getInstance().getRegisteredMonitors();
+		for (TelegramBotMillMonitor monitor : registeredMonitors) {
+			monitor.onValidationError(response, violations);
+		}
+		return false;
+	}
+
+	/**
+	 * Validates a single property of a bean, without notifying the monitors.
+	 *
+	 * @param bean
+	 *            the bean.
+	 * @param propertyName
+	 *            the name of the property to validate.
+	 * @return true if the property is valid, false otherwise.
+	 */
+	protected boolean validateProperty(Object bean, String propertyName) {
+		return ValidatorHolder.VALIDATOR.validateProperty(bean, propertyName)
+				.isEmpty();
+	}
+
+	/**
+	 * Checks if a class declares any constraint. The answer is computed once
+	 * per class.
+	 *
+	 * @param beanClass
+	 *            the class to check.
+	 * @return true if instances of the class need to be validated.
+	 */
+	private static boolean isConstrained(Class<?> beanClass) {
+		Boolean constrained = constrainedClasses.get(beanClass);
+		if (constrained == null) {
+			constrained = ValidatorHolder.VALIDATOR
+					.getConstraintsForClass(beanClass).isBeanConstrained();
+			constrainedClasses.put(beanClass, constrained);
 		}
+		return constrained;
+	}
+
+	/**
+	 * Holds the validator, built on first use. Building a validator is
+	 * expensive, while a validator is thread-safe and can be shared.
+	 */
+	private static class ValidatorHolder {
 
-		return valid;
+		/**
+		 * The shared validator.
+		 */
+		private static final Validator VALIDATOR = Validation
+				.buildDefaultValidatorFactory().getValidator();
 	}
 
 	/*
@@ -71,6 +71,25 @@ public abstract class BaseStringEvent extends TelegramBotMillBean implements
 		this.caseSensitive = true;
 	}
 
+	/**
+	 * Gets the {@link #expectedString}.
+	 *
+	 * @return the {@link #expectedString}, lowercased if the match is not
+	 *         {@link #caseSensitive}.
+	 */
+	public String getExpectedString() {
+		return expectedString;
+	}
+
+	/**
+	 * Gets the {@link #caseSensitive}.
+	 *
+	 * @return the {@link #caseSensitive}.
+	 */
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
 	/**
 	 * Verify string match.
 	 *
@@ -26,6 +26,7 @@ package co.aurasphere.botmill.telegram.event.message;
 import co.aurasphere.botmill.telegram.bean.TelegramBotMillBean;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
 /**
@@ -35,7 +36,8 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * @author Donato Rimenti
  * 
  */
-public class AnyMessageEvent extends TelegramBotMillBean implements TelegramBotMillEvent {
+public class AnyMessageEvent extends TelegramBotMillBean implements
+		TelegramBotMillTypedEvent {
 
 	/**
 	 * Verify event condition.
@@ -49,6 +51,16 @@ public class AnyMessageEvent extends TelegramBotMillBean implements TelegramBotM
 		return eventKind(update) == TelegramBotMillEventType.MESSAGE;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent#
+	 * getEventType()
+	 */
+	public TelegramBotMillEventType getEventType() {
+		return TelegramBotMillEventType.MESSAGE;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -26,6 +26,7 @@ package co.aurasphere.botmill.telegram.event.message;
 import co.aurasphere.botmill.telegram.bean.TelegramBotMillBean;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
 /**
@@ -35,7 +36,8 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * @author Donato Rimenti
  * 
  */
-public class LocationEvent extends TelegramBotMillBean implements TelegramBotMillEvent {
+public class LocationEvent extends TelegramBotMillBean implements
+		TelegramBotMillTypedEvent {
 
 	/**
 	 * Instantiates a new LocationEvent.
@@ -56,6 +58,16 @@ public class LocationEvent extends TelegramBotMillBean implements TelegramBotMil
 		return eventKind(update) == TelegramBotMillEventType.LOCATION;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent#
+	 * getEventType()
+	 */
+	public TelegramBotMillEventType getEventType() {
+		return TelegramBotMillEventType.LOCATION;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -24,6 +24,8 @@
 package co.aurasphere.botmill.telegram.event.message;
 
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent;
 import co.aurasphere.botmill.telegram.event.base.BaseStringEvent;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
@@ -33,7 +35,8 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * 
  * @author Donato Rimenti
  */
-public class MessageEvent extends BaseStringEvent {
+public class MessageEvent extends BaseStringEvent implements
+		TelegramBotMillTypedEvent {
 
 	/**
 	 * Instantiates a new MessageEvent.
@@ -68,6 +71,21 @@ public class MessageEvent extends BaseStringEvent {
 		return verifyStringMatch(message);
 	}
 
+	/**
+	 * Gets the type of the updates which can verify this event. An empty
+	 * expected message also matches the updates without any text, so it's
+	 * not bound to a type.
+	 * 
+	 * @return {@link TelegramBotMillEventType#MESSAGE} or null if the expected
+	 *         message is empty.
+	 */
+	public TelegramBotMillEventType getEventType() {
+		if (this.expectedString != null && this.expectedString.isEmpty()) {
+			return null;
+		}
+		return TelegramBotMillEventType.MESSAGE;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -26,6 +26,8 @@ package co.aurasphere.botmill.telegram.event.message;
 import java.util.regex.Pattern;
 
 import co.aurasphere.botmill.telegram.event.TelegramBotMillEvent;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent;
 import co.aurasphere.botmill.telegram.event.base.BasePatternEvent;
 import co.aurasphere.botmill.telegram.model.update.Update;
 
@@ -36,7 +38,8 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * @author Donato Rimenti
  * 
  */
-public class MessagePatternEvent extends BasePatternEvent {
+public class MessagePatternEvent extends BasePatternEvent implements
+		TelegramBotMillTypedEvent {
 
 	/**
 	 * Instantiates a new MessagePatternEvent.
@@ -69,6 +72,22 @@ public class MessagePatternEvent extends BasePatternEvent {
 		return verifyPatternMatch(message);
 	}
 
+	/**
+	 * Gets the type of the updates which can verify this event. A pattern
+	 * which matches an empty String also matches the updates without any
+	 * text, so it's not bound to a type.
+	 * 
+	 * @return {@link TelegramBotMillEventType#MESSAGE} or null if the expected
+	 *         pattern matches an empty String.
+	 */
+	public TelegramBotMillEventType getEventType() {
+		if (this.expectedPattern != null
+				&& this.expectedPattern.matcher("").matches()) {
+			return null;
+		}
+		return TelegramBotMillEventType.MESSAGE;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,587 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import co.aurasphere.botmill.telegram.actionframe.ActionFrame;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillEventType;
+import co.aurasphere.botmill.telegram.event.TelegramBotMillTypedEvent;
+import co.aurasphere.botmill.telegram.event.message.MessageEvent;
+import co.aurasphere.botmill.telegram.event.message.MessagePatternEvent;
+import co.aurasphere.botmill.telegram.model.update.Update;
+
+/**
+ * Index of the {@link ActionFrame} of a bot by the
+ * {@link TelegramBotMillEventType} of the updates they can handle. The frames
+ * whose event is a {@link TelegramBotMillTypedEvent} are only candidates for
+ * the updates of their type, while all the other frames are candidates for
+ * every update. The frames whose event is a {@link MessageEvent} are further
+ * indexed by their expected text, so that they are only candidates for the
+ * text messages they match. The frames whose event is a
+ * {@link MessagePatternEvent} with a literal required by its pattern are only
+ * candidates for the text messages containing that literal: all the literals
+ * are looked for with a single pass over the text. The candidates are always
+ * returned in registration order.
+ * <p>
+ * An index is built once from a list of frames and never changes afterwards,
+ * so it can be shared among the threads processing the updates. Changing the
+ * frames of a bot means building a new index.
+ *
+ * @author Donato Rimenti
+ */
+public class ActionFrameIndex {
+
+	/**
+	 * Orders the frames by registration position.
+	 */
+	private static final Comparator<IndexedFrame> POSITION_ORDER = new Comparator<IndexedFrame>() {
+		public int compare(IndexedFrame o1, IndexedFrame o2) {
+			return o1.position < o2.position ? -1
+					: (o1.position == o2.position ? 0 : 1);
+		}
+	};
+
+	/**
+	 * The frames of this index, in registration order.
+	 */
+	private final List<ActionFrame> frames;
+
+	/**
+	 * The version of this index. Each index built for a bot has a greater
+	 * version than the previous one.
+	 */
+	private final long version;
+
+	/**
+	 * The candidate frames for each type which has at least a typed frame.
+	 */
+	private final Map<TelegramBotMillEventType, List<IndexedFrame>> framesByType;
+
+	/**
+	 * The frames which are candidates for every type of update.
+	 */
+	private final List<IndexedFrame> untypedFrames;
+
+	/**
+	 * The case sensitive {@link MessageEvent} frames, by expected text.
+	 */
+	private final Map<String, List<IndexedFrame>> exactMessageFrames;
+
+	/**
+	 * The case insensitive {@link MessageEvent} frames, by lowercased expected
+	 * text.
+	 */
+	private final Map<String, List<IndexedFrame>> foldedMessageFrames;
+
+	/**
+	 * The literals required by the {@link MessagePatternEvent} frames, by
+	 * their index in {@link #patternFrames}.
+	 */
+	private final Map<String, Integer> patternLiterals;
+
+	/**
+	 * The {@link MessagePatternEvent} frames, grouped by the literal their
+	 * pattern requires.
+	 */
+	private final List<List<IndexedFrame>> patternFrames;
+
+	/**
+	 * Matcher for the {@link #patternLiterals}, null if there are none.
+	 */
+	private final LiteralMatcher patternMatcher;
+
+	/**
+	 * Instantiates a new, empty, ActionFrameIndex.
+	 */
+	public ActionFrameIndex() {
+		this(Collections.<ActionFrame> emptyList(), 0);
+	}
+
+	/**
+	 * Instantiates a new ActionFrameIndex.
+	 *
+	 * @param frames
+	 *            the frames to index, in registration order. The list is
+	 *            copied.
+	 * @param version
+	 *            the {@link #version}.
+	 */
+	public ActionFrameIndex(List<ActionFrame> frames, long version) {
+		this.frames = Collections
+				.unmodifiableList(new ArrayList<ActionFrame>(frames));
+		this.version = version;
+		this.framesByType = new EnumMap<TelegramBotMillEventType, List<IndexedFrame>>(
+				TelegramBotMillEventType.class);
+		this.untypedFrames = new ArrayList<IndexedFrame>();
+		this.exactMessageFrames = new HashMap<String, List<IndexedFrame>>();
+		this.foldedMessageFrames = new HashMap<String, List<IndexedFrame>>();
+		this.patternLiterals = new HashMap<String, Integer>();
+		this.patternFrames = new ArrayList<List<IndexedFrame>>();
+		for (int i = 0; i < this.frames.size(); i++) {
+			add(new IndexedFrame(i, this.frames.get(i)));
+		}
+
+		if (this.patternLiterals.isEmpty()) {
+			this.patternMatcher = null;
+		} else {
+			String[] literals = new String[this.patternLiterals.size()];
+			for (Map.Entry<String, Integer> e : this.patternLiterals
+					.entrySet()) {
+				literals[e.getValue()] = e.getKey();
+			}
+			this.patternMatcher = new LiteralMatcher(Arrays.asList(literals));
+		}
+	}
+
+	/**
+	 * Builds a new index with some frames added after the ones of this index.
+	 *
+	 * @param added
+	 *            the frames to add, in registration order.
+	 * @return a new index, with the next version.
+	 */
+	public ActionFrameIndex with(List<ActionFrame> added) {
+		List<ActionFrame> newFrames = new ArrayList<ActionFrame>(
+				this.frames.size() + added.size());
+		newFrames.addAll(this.frames);
+		newFrames.addAll(added);
+		return new ActionFrameIndex(newFrames, this.version + 1);
+	}
+
+	/**
+	 * Indexes a frame after all the ones indexed so far.
+	 *
+	 * @param indexedFrame
+	 *            the frame to index.
+	 */
+	private void add(IndexedFrame indexedFrame) {
+		ActionFrame frame = indexedFrame.frame;
+
+		// Exact text messages are looked up by their text.
+		String expectedMessage = expectedMessageOf(frame);
+		if (expectedMessage != null) {
+			Map<String, List<IndexedFrame>> messageFrames = ((MessageEvent) frame
+					.getEvent()).isCaseSensitive() ? this.exactMessageFrames
+					: this.foldedMessageFrames;
+			List<IndexedFrame> frames = messageFrames.get(expectedMessage);
+			if (frames == null) {
+				frames = new ArrayList<IndexedFrame>(1);
+				messageFrames.put(expectedMessage, frames);
+			}
+			frames.add(indexedFrame);
+			return;
+		}
+
+		// Patterns are only evaluated if the text contains their literal.
+		String requiredLiteral = requiredLiteralOf(frame);
+		if (requiredLiteral != null) {
+			Integer literalIndex = this.patternLiterals.get(requiredLiteral);
+			if (literalIndex == null) {
+				literalIndex = this.patternFrames.size();
+				this.patternLiterals.put(requiredLiteral, literalIndex);
+				this.patternFrames.add(new ArrayList<IndexedFrame>(1));
+			}
+			this.patternFrames.get(literalIndex).add(indexedFrame);
+			return;
+		}
+
+		TelegramBotMillEventType type = typeOf(frame);
+		if (type == null) {
+			this.untypedFrames.add(indexedFrame);
+			for (List<IndexedFrame> frames : this.framesByType.values()) {
+				frames.add(indexedFrame);
+			}
+			return;
+		}
+		List<IndexedFrame> frames = this.framesByType.get(type);
+		if (frames == null) {
+			frames = new ArrayList<IndexedFrame>(this.untypedFrames);
+			this.framesByType.put(type, frames);
+		}
+		frames.add(indexedFrame);
+	}
+
+	/**
+	 * Gets the {@link #frames}.
+	 *
+	 * @return the {@link #frames}, which can't be modified.
+	 */
+	public List<ActionFrame> getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Gets the {@link #version}.
+	 *
+	 * @return the {@link #version}.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the frames which may handle an update, in registration order.
+	 *
+	 * @param update
+	 *            the update.
+	 * @param type
+	 *            the type of the update.
+	 * @return the candidate frames.
+	 */
+	public Iterable<ActionFrame> getCandidates(Update update,
+			TelegramBotMillEventType type) {
+		List<IndexedFrame> frames = this.framesByType.get(type);
+		if (frames == null) {
+			frames = this.untypedFrames;
+		}
+		List<IndexedFrame> messageFrames = Collections.emptyList();
+		if (type == TelegramBotMillEventType.MESSAGE) {
+			messageFrames = getMessageFrames(update.getMessage().getText());
+		}
+		return new Candidates(frames, messageFrames);
+	}
+
+	/**
+	 * Gets the {@link MessageEvent} frames which match a text and the
+	 * {@link MessagePatternEvent} frames which may match it, in registration
+	 * order. The text is lowercased at most once.
+	 *
+	 * @param text
+	 *            the text of the message.
+	 * @return the candidate frames.
+	 */
+	private List<IndexedFrame> getMessageFrames(String text) {
+		List<IndexedFrame> frames = this.exactMessageFrames.get(text);
+		if (!this.foldedMessageFrames.isEmpty()) {
+			frames = merge(frames,
+					this.foldedMessageFrames.get(text.toLowerCase()));
+		}
+		if (this.patternMatcher != null) {
+			frames = merge(frames, getPatternFrames(text));
+		}
+		return frames != null ? frames : Collections
+				.<IndexedFrame> emptyList();
+	}
+
+	/**
+	 * Gets the {@link MessagePatternEvent} frames whose required literal is
+	 * contained in a text, in registration order.
+	 *
+	 * @param text
+	 *            the text of the message.
+	 * @return the candidate frames or null if there are none.
+	 */
+	private List<IndexedFrame> getPatternFrames(String text) {
+		BitSet found = this.patternMatcher.find(text);
+		if (found == null) {
+			return null;
+		}
+		int first = found.nextSetBit(0);
+		if (found.nextSetBit(first + 1) < 0) {
+			return this.patternFrames.get(first);
+		}
+		List<IndexedFrame> frames = new ArrayList<IndexedFrame>();
+		for (int i = first; i >= 0; i = found.nextSetBit(i + 1)) {
+			frames.addAll(this.patternFrames.get(i));
+		}
+		Collections.sort(frames, POSITION_ORDER);
+		return frames;
+	}
+
+	/**
+	 * Merges two lists of frames in registration order.
+	 *
+	 * @param first
+	 *            the first list, can be null.
+	 * @param second
+	 *            the second list, can be null.
+	 * @return the merged list, which is one of the two if the other is null or
+	 *         empty.
+	 */
+	private static List<IndexedFrame> merge(List<IndexedFrame> first,
+			List<IndexedFrame> second) {
+		if (first == null || first.isEmpty()) {
+			return second;
+		}
+		if (second == null || second.isEmpty()) {
+			return first;
+		}
+		List<IndexedFrame> frames = new ArrayList<IndexedFrame>(first.size()
+				+ second.size());
+		int i = 0;
+		int j = 0;
+		while (i < first.size() || j < second.size()) {
+			if (j >= second.size()
+					|| (i < first.size() && first.get(i).position < second
+							.get(j).position)) {
+				frames.add(first.get(i++));
+			} else {
+				frames.add(second.get(j++));
+			}
+		}
+		return frames;
+	}
+
+	/**
+	 * Gets the text a frame expects, if the frame can be looked up by the text
+	 * of a message.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @return the expected text, lowercased if the match is case insensitive,
+	 *         or null if the frame can't be looked up by text.
+	 */
+	private static String expectedMessageOf(ActionFrame frame) {
+		if (frame == null || !(frame.getEvent() instanceof MessageEvent)) {
+			return null;
+		}
+		String expectedMessage = ((MessageEvent) frame.getEvent())
+				.getExpectedString();
+		// An empty expected message also matches updates without any text.
+		if (expectedMessage == null || expectedMessage.isEmpty()) {
+			return null;
+		}
+		return expectedMessage;
+	}
+
+	/**
+	 * Gets the literal required by the pattern of a frame, if the frame can
+	 * be filtered by the literals contained in the text of a message. The
+	 * pattern is read when the index is built.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @return the required literal or null if the frame can't be filtered.
+	 */
+	private static String requiredLiteralOf(ActionFrame frame) {
+		if (frame == null
+				|| !(frame.getEvent() instanceof MessagePatternEvent)) {
+			return null;
+		}
+		MessagePatternEvent event = (MessagePatternEvent) frame.getEvent();
+		// Patterns matching an empty text also match updates without text.
+		if (event.getEventType() != TelegramBotMillEventType.MESSAGE) {
+			return null;
+		}
+		return PatternLiterals.requiredLiteral(event.expectedPattern);
+	}
+
+	/**
+	 * Gets the only type of update a frame can handle.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @return the type of update the frame can handle or null if it can
+	 *         handle any.
+	 */
+	private static TelegramBotMillEventType typeOf(ActionFrame frame) {
+		if (frame != null
+				&& frame.getEvent() instanceof TelegramBotMillTypedEvent) {
+			return ((TelegramBotMillTypedEvent) frame.getEvent())
+					.getEventType();
+		}
+		return null;
+	}
+
+	/**
+	 * A frame along with its registration position.
+	 */
+	private static class IndexedFrame {
+
+		/**
+		 * The registration position of the frame.
+		 */
+		private final int position;
+
+		/**
+		 * The frame.
+		 */
+		private final ActionFrame frame;
+
+		/**
+		 * Instantiates a new IndexedFrame.
+		 *
+		 * @param position
+		 *            the {@link #position}.
+		 * @param frame
+		 *            the {@link #frame}.
+		 */
+		IndexedFrame(int position, ActionFrame frame) {
+			this.position = position;
+			this.frame = frame;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return position + "=" + frame;
+		}
+	}
+
+	/**
+	 * Two lists of frames, each in registration order, iterated as a single
+	 * one in registration order without copying them.
+	 */
+	private static class Candidates implements Iterable<ActionFrame> {
+
+		/**
+		 * The first list.
+		 */
+		private final List<IndexedFrame> first;
+
+		/**
+		 * The second list.
+		 */
+		private final List<IndexedFrame> second;
+
+		/**
+		 * Instantiates a new Candidates.
+		 *
+		 * @param first
+		 *            the {@link #first}.
+		 * @param second
+		 *            the {@link #second}.
+		 */
+		Candidates(List<IndexedFrame> first, List<IndexedFrame> second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Iterable#iterator()
+		 */
+		public Iterator<ActionFrame> iterator() {
+			return new MergingIterator(first, second);
+		}
+	}
+
+	/**
+	 * Iterator which merges two lists of frames by registration position.
+	 */
+	private static class MergingIterator implements Iterator<ActionFrame> {
+
+		/**
+		 * The first list.
+		 */
+		private final List<IndexedFrame> first;
+
+		/**
+		 * The second list.
+		 */
+		private final List<IndexedFrame> second;
+
+		/**
+		 * The next position to read in {@link #first}.
+		 */
+		private int firstIndex;
+
+		/**
+		 * The next position to read in {@link #second}.
+		 */
+		private int secondIndex;
+
+		/**
+		 * Instantiates a new MergingIterator.
+		 *
+		 * @param first
+		 *            the {@link #first}.
+		 * @param second
+		 *            the {@link #second}.
+		 */
+		MergingIterator(List<IndexedFrame> first, List<IndexedFrame> second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			return firstIndex < first.size() || secondIndex < second.size();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public ActionFrame next() {
+			if (secondIndex >= second.size()) {
+				if (firstIndex >= first.size()) {
+					throw new NoSuchElementException();
+				}
+				return first.get(firstIndex++).frame;
+			}
+			if (firstIndex >= first.size()
+					|| second.get(secondIndex).position < first
+							.get(firstIndex).position) {
+				return second.get(secondIndex++).frame;
+			}
+			return first.get(firstIndex++).frame;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ActionFrameIndex [version=" + version + ", framesByType=" + framesByType
+				+ ", untypedFrames=" + untypedFrames + ", exactMessageFrames="
+				+ exactMessageFrames + ", foldedMessageFrames="
+				+ foldedMessageFrames + ", patternLiterals=" + patternLiterals
+				+ "]";
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton which finds which ones of a set of literals appear
+ * in a text, with a single pass over the text.
+ *
+ * @author Donato Rimenti
+ */
+class LiteralMatcher {
+
+	/**
+	 * The characters of the transitions leaving each state, sorted.
+	 */
+	private final char[][] transitionChars;
+
+	/**
+	 * The target states of the transitions leaving each state, aligned with
+	 * {@link #transitionChars}.
+	 */
+	private final int[][] transitionTargets;
+
+	/**
+	 * The state to fall back to for each state when a character has no
+	 * transition.
+	 */
+	private final int[] failures;
+
+	/**
+	 * The index of the literal ending in each state or -1 if none does.
+	 */
+	private final int[] literals;
+
+	/**
+	 * For each state, the closest state on its failure chain where a literal
+	 * ends, or 0 if there's none.
+	 */
+	private final int[] outputs;
+
+	/**
+	 * The number of literals.
+	 */
+	private final int literalCount;
+
+	/**
+	 * Instantiates a new LiteralMatcher.
+	 *
+	 * @param literals
+	 *            the literals to look for, which must be distinct and not
+	 *            empty. Their position in the list identifies them in the
+	 *            results.
+	 */
+	LiteralMatcher(List<String> literals) {
+		this.literalCount = literals.size();
+
+		// Builds the trie.
+		List<StringBuilder> chars = new ArrayList<StringBuilder>();
+		List<List<Integer>> targets = new ArrayList<List<Integer>>();
+		List<Integer> ends = new ArrayList<Integer>();
+		chars.add(new StringBuilder());
+		targets.add(new ArrayList<Integer>());
+		ends.add(-1);
+		for (int l = 0; l < literals.size(); l++) {
+			String literal = literals.get(l);
+			int state = 0;
+			for (int i = 0; i < literal.length(); i++) {
+				char c = literal.charAt(i);
+				int t = chars.get(state).indexOf(String.valueOf(c));
+				if (t >= 0) {
+					state = targets.get(state).get(t);
+				} else {
+					int next = chars.size();
+					chars.add(new StringBuilder());
+					targets.add(new ArrayList<Integer>());
+					ends.add(-1);
+					chars.get(state).append(c);
+					targets.get(state).add(next);
+					state = next;
+				}
+			}
+			ends.set(state, l);
+		}
+
+		// Freezes the transitions, sorted by character.
+		int stateCount = chars.size();
+		this.transitionChars = new char[stateCount][];
+		this.transitionTargets = new int[stateCount][];
+		this.literals = new int[stateCount];
+		for (int s = 0; s < stateCount; s++) {
+			String stateChars = chars.get(s).toString();
+			char[] sorted = stateChars.toCharArray();
+			Arrays.sort(sorted);
+			int[] sortedTargets = new int[sorted.length];
+			for (int t = 0; t < sorted.length; t++) {
+				sortedTargets[t] = targets.get(s).get(
+						stateChars.indexOf(sorted[t]));
+			}
+			this.transitionChars[s] = sorted;
+			this.transitionTargets[s] = sortedTargets;
+			this.literals[s] = ends.get(s);
+		}
+
+		// Computes the failure and output links breadth first.
+		this.failures = new int[stateCount];
+		this.outputs = new int[stateCount];
+		int[] queue = new int[stateCount];
+		int head = 0;
+		int tail = 0;
+		for (int child : this.transitionTargets[0]) {
+			queue[tail++] = child;
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			int failure = this.failures[state];
+			this.outputs[state] = this.literals[failure] >= 0 ? failure
+					: this.outputs[failure];
+			for (int t = 0; t < this.transitionChars[state].length; t++) {
+				char c = this.transitionChars[state][t];
+				int child = this.transitionTargets[state][t];
+				int fallback = failure;
+				int target = transition(fallback, c);
+				while (target < 0 && fallback != 0) {
+					fallback = this.failures[fallback];
+					target = transition(fallback, c);
+				}
+				this.failures[child] = target < 0 ? 0 : target;
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * Finds which literals appear in a text.
+	 *
+	 * @param text
+	 *            the text to scan.
+	 * @return the indexes of the literals found, or null if none was found.
+	 */
+	BitSet find(CharSequence text) {
+		BitSet found = null;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int next = transition(state, c);
+			while (next < 0 && state != 0) {
+				state = this.failures[state];
+				next = transition(state, c);
+			}
+			state = next < 0 ? 0 : next;
+			int match = this.literals[state] >= 0 ? state : this.outputs[state];
+			while (match != 0) {
+				if (found == null) {
+					found = new BitSet(this.literalCount);
+				}
+				found.set(this.literals[match]);
+				match = this.outputs[match];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Follows a transition of the trie.
+	 *
+	 * @param state
+	 *            the starting state.
+	 * @param c
+	 *            the character.
+	 * @return the target state or -1 if there's no such transition.
+	 */
+	private int transition(int state, char c) {
+		int t = Arrays.binarySearch(this.transitionChars[state], c);
+		return t < 0 ? -1 : this.transitionTargets[state][t];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "LiteralMatcher [literalCount=" + literalCount + ", states="
+				+ failures.length + "]";
+	}
+
+}
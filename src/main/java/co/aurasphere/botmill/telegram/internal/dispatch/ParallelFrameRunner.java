@@ -0,0 +1,340 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import co.aurasphere.botmill.telegram.actionframe.ActionFrame;
+import co.aurasphere.botmill.telegram.autoreply.AutoReply;
+import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
+import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.support.dispatch.FrameExecution;
+
+/**
+ * Runs concurrently all the action frames triggered by an update, as
+ * described by {@link FrameExecution}. The frames are forked on an executor
+ * while the calling thread takes part in the work, and the calling thread
+ * returns only when all of them are done.
+ *
+ * @author Donato Rimenti
+ */
+public class ParallelFrameRunner {
+
+	/**
+	 * Instantiates a new ParallelFrameRunner.
+	 */
+	private ParallelFrameRunner() {
+	}
+
+	/**
+	 * Runs the triggered frames among the candidates concurrently. If a frame
+	 * fails, the error is thrown once all the frames are done. Frames rejected
+	 * by the executor, for instance after it has been stopped, are run by the
+	 * calling thread.
+	 *
+	 * @param candidates
+	 *            the frames which may be triggered, in registration order.
+	 * @param update
+	 *            the update.
+	 * @param ordered
+	 *            whether the responses should be sent in the order of the
+	 *            frames.
+	 * @param executor
+	 *            the executor which runs the frames.
+	 */
+	public static void run(Iterable<ActionFrame> candidates,
+			final Update update, boolean ordered, Executor executor) {
+		List<ActionFrame> triggered = new ArrayList<ActionFrame>();
+		for (ActionFrame f : candidates) {
+			if (f.isTriggered(update)) {
+				triggered.add(f);
+			}
+		}
+		if (triggered.isEmpty()) {
+			return;
+		}
+		Executor forker = runInlineOnRejection(executor);
+		if (ordered) {
+			runOrdered(triggered, update, forker);
+		} else {
+			runUnordered(triggered, update, forker);
+		}
+	}
+
+	/**
+	 * Wraps an executor so that the tasks it rejects are run by the calling
+	 * thread, since the calling thread waits for all of them anyway.
+	 *
+	 * @param executor
+	 *            the executor to wrap.
+	 * @return the wrapped executor.
+	 */
+	private static Executor runInlineOnRejection(final Executor executor) {
+		return new Executor() {
+			public void execute(Runnable task) {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					task.run();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Runs the frames concurrently, each one sending its replies as soon as
+	 * they're ready. The last frame is run by the calling thread.
+	 *
+	 * @param frames
+	 *            the triggered frames.
+	 * @param update
+	 *            the update.
+	 * @param executor
+	 *            the executor which runs the frames.
+	 */
+	private static void runUnordered(List<ActionFrame> frames,
+			final Update update, Executor executor) {
+		int last = frames.size() - 1;
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(
+				last);
+		for (int i = 0; i < last; i++) {
+			final ActionFrame frame = frames.get(i);
+			futures.add(CompletableFuture.runAsync(new Runnable() {
+				public void run() {
+					reply(frame, update);
+				}
+			}, executor));
+		}
+
+		RuntimeException failure = null;
+		try {
+			reply(frames.get(last), update);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				join(future);
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Builds the responses of the frames concurrently and sends them from the
+	 * calling thread, in order. Replies which override
+	 * {@link AutoReply#reply(Update)} are instead sent through it by the
+	 * calling thread, in their turn. If a frame fails, the responses of the
+	 * frames after it are not sent.
+	 *
+	 * @param frames
+	 *            the triggered frames.
+	 * @param update
+	 *            the update.
+	 * @param executor
+	 *            the executor which builds the responses.
+	 */
+	private static void runOrdered(List<ActionFrame> frames,
+			final Update update, Executor executor) {
+		List<CompletableFuture<List<PreparedReply>>> futures = new ArrayList<CompletableFuture<List<PreparedReply>>>(
+				frames.size());
+		for (final ActionFrame frame : frames) {
+			futures.add(CompletableFuture.supplyAsync(
+					new Supplier<List<PreparedReply>>() {
+						public List<PreparedReply> get() {
+							frame.beforeReply(update);
+							return prepareResponses(frame, update);
+						}
+					}, executor));
+		}
+
+		int i = 0;
+		try {
+			for (; i < frames.size(); i++) {
+				for (PreparedReply prepared : join(futures.get(i))) {
+					if (prepared.response != null) {
+						NetworkUtils.postJsonMessage(prepared.response);
+					} else {
+						prepared.reply.reply(update);
+					}
+				}
+				frames.get(i).afterReply(update);
+			}
+		} finally {
+			// Waits for the frames left behind by a failure.
+			for (i++; i < futures.size(); i++) {
+				try {
+					join(futures.get(i));
+				} catch (RuntimeException e) {
+					// Only the first failure is reported.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs a frame which has been triggered.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @param update
+	 *            the update.
+	 */
+	private static void reply(ActionFrame frame, Update update) {
+		frame.beforeReply(update);
+		if (frame.getReplies() != null && frame.getReplies().length > 0) {
+			frame.sendReplies(update);
+		} else if (frame.getReply() != null) {
+			frame.getReply().reply(update);
+		}
+		frame.afterReply(update);
+	}
+
+	/**
+	 * Builds the valid responses of a frame, without sending them. The
+	 * replies which override {@link AutoReply#reply(Update)} are left to be
+	 * sent through it.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @param update
+	 *            the update.
+	 * @return the prepared replies, in order.
+	 */
+	private static List<PreparedReply> prepareResponses(ActionFrame frame,
+			Update update) {
+		List<AutoReply> replies = repliesOf(frame);
+		List<PreparedReply> prepared = new ArrayList<PreparedReply>(
+				replies.size());
+		for (AutoReply reply : replies) {
+			if (reply.isCustomReply()) {
+				prepared.add(new PreparedReply(reply, null));
+				continue;
+			}
+			TelegramBotMillResponse response = reply.prepareResponse(update);
+			if (response != null) {
+				prepared.add(new PreparedReply(reply, response));
+			}
+		}
+		return prepared;
+	}
+
+	/**
+	 * A reply of a frame, along with its response when it has been built in
+	 * advance.
+	 */
+	private static class PreparedReply {
+
+		/**
+		 * The reply.
+		 */
+		private final AutoReply reply;
+
+		/**
+		 * The response to send, null if the reply is sent through
+		 * {@link AutoReply#reply(Update)}.
+		 */
+		private final TelegramBotMillResponse response;
+
+		/**
+		 * Instantiates a new PreparedReply.
+		 *
+		 * @param reply
+		 *            the {@link #reply}.
+		 * @param response
+		 *            the {@link #response}.
+		 */
+		PreparedReply(AutoReply reply, TelegramBotMillResponse response) {
+			this.reply = reply;
+			this.response = response;
+		}
+	}
+
+	/**
+	 * Gets the replies of a frame, as chosen by the sequential processing:
+	 * the multiple replies if there are any, the single reply otherwise.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @return the replies of the frame.
+	 */
+	private static List<AutoReply> repliesOf(ActionFrame frame) {
+		if (frame.getReplies() != null && frame.getReplies().length > 0) {
+			return Arrays.asList(frame.getReplies());
+		}
+		if (frame.getReply() != null) {
+			return Collections.singletonList(frame.getReply());
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Waits for a future, rethrowing the error of the task as it is.
+	 *
+	 * @param <T>
+	 *            the type of the result.
+	 * @param future
+	 *            the future.
+	 * @return the result of the task.
+	 */
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ParallelFrameRunner []";
+	}
+
+}
@@ -0,0 +1,301 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.regex.Pattern;
+
+/**
+ * Extracts from a regular expression a literal which must appear in any text
+ * the whole expression matches. The extraction is conservative: whenever the
+ * expression is not understood, no literal is returned.
+ *
+ * @author Donato Rimenti
+ */
+class PatternLiterals {
+
+	/**
+	 * The characters which have a special meaning outside of a character
+	 * class.
+	 */
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	/**
+	 * The escape sequences followed by an argument, like hexadecimal values
+	 * or back references.
+	 */
+	private static final String ESCAPES_WITH_ARGUMENTS = "0123456789xucpPNk";
+
+	/**
+	 * Instantiates a new PatternLiterals.
+	 */
+	private PatternLiterals() {
+	}
+
+	/**
+	 * Gets the longest literal which appears, unconditionally, at the top
+	 * level of a pattern. Patterns with flags or with a top level alternation
+	 * have no required literal.
+	 *
+	 * @param pattern
+	 *            the pattern.
+	 * @return a literal contained by every text the pattern matches or null
+	 *         if none could be found.
+	 */
+	static String requiredLiteral(Pattern pattern) {
+		if (pattern == null || pattern.flags() != 0) {
+			return null;
+		}
+		String regex = pattern.pattern();
+		String longest = "";
+		StringBuilder run = new StringBuilder();
+		int i = 0;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			switch (c) {
+			case '|':
+				return null;
+			case '\\':
+				if (i + 1 >= regex.length()) {
+					return null;
+				}
+				char escaped = regex.charAt(i + 1);
+				if (escaped == 'Q') {
+					int end = regex.indexOf("\\E", i + 2);
+					if (end < 0) {
+						end = regex.length();
+					}
+					run.append(regex, i + 2, end);
+					i = end + 2;
+					continue;
+				}
+				if (ESCAPES_WITH_ARGUMENTS.indexOf(escaped) >= 0) {
+					return null;
+				}
+				if (Character.isLetterOrDigit(escaped)) {
+					// Character classes, anchors and control characters.
+					longest = longest(longest, run);
+				} else {
+					run.append(escaped);
+				}
+				i += 2;
+				continue;
+			case '(':
+				// Inline flags change how the rest of the pattern matches.
+				if (i + 2 < regex.length() && regex.charAt(i + 1) == '?'
+						&& isFlag(regex.charAt(i + 2))) {
+					return null;
+				}
+				longest = longest(longest, run);
+				i = skipGroup(regex, i);
+				if (i < 0) {
+					return null;
+				}
+				continue;
+			case '[':
+				longest = longest(longest, run);
+				i = skipClass(regex, i);
+				if (i < 0) {
+					return null;
+				}
+				continue;
+			case '?':
+			case '*':
+			case '{':
+				// The last character is optional.
+				dropLastCodePoint(run);
+				longest = longest(longest, run);
+				if (c == '{') {
+					i = regex.indexOf('}', i);
+					if (i < 0) {
+						return null;
+					}
+				}
+				i++;
+				continue;
+			case '+':
+				// The last character is required but may be repeated.
+				longest = longest(longest, run);
+				i++;
+				continue;
+			default:
+				if (METACHARACTERS.indexOf(c) >= 0) {
+					longest = longest(longest, run);
+				} else {
+					run.append(c);
+				}
+				i++;
+			}
+		}
+		longest = longest(longest, run);
+		return longest.isEmpty() ? null : longest;
+	}
+
+	/**
+	 * Ends the current run of literal characters.
+	 *
+	 * @param longest
+	 *            the longest literal found so far.
+	 * @param run
+	 *            the current run, which is cleared.
+	 * @return the longest between the two.
+	 */
+	private static String longest(String longest, StringBuilder run) {
+		if (run.length() > longest.length()) {
+			longest = run.toString();
+		}
+		run.setLength(0);
+		return longest;
+	}
+
+	/**
+	 * Removes the last code point of a run, which is two characters long if
+	 * it's a supplementary character.
+	 *
+	 * @param run
+	 *            the current run.
+	 */
+	private static void dropLastCodePoint(StringBuilder run) {
+		int length = run.length();
+		if (length == 0) {
+			return;
+		}
+		if (length > 1 && Character.isLowSurrogate(run.charAt(length - 1))
+				&& Character.isHighSurrogate(run.charAt(length - 2))) {
+			run.setLength(length - 2);
+		} else {
+			run.setLength(length - 1);
+		}
+	}
+
+	/**
+	 * Skips an escape sequence, including a whole quotation like \Q...\E.
+	 *
+	 * @param regex
+	 *            the regular expression.
+	 * @param start
+	 *            the position of the backslash.
+	 * @return the position after the escape sequence.
+	 */
+	private static int skipEscape(String regex, int start) {
+		if (start + 1 < regex.length() && regex.charAt(start + 1) == 'Q') {
+			int end = regex.indexOf("\\E", start + 2);
+			return end < 0 ? regex.length() : end + 2;
+		}
+		return start + 2;
+	}
+
+	/**
+	 * Checks if a character can start an inline flag group, like (?i).
+	 *
+	 * @param c
+	 *            the character after "(?".
+	 * @return true if the group sets flags.
+	 */
+	private static boolean isFlag(char c) {
+		return c == '-' || Character.isLetter(c);
+	}
+
+	/**
+	 * Skips a group.
+	 *
+	 * @param regex
+	 *            the regular expression.
+	 * @param start
+	 *            the position of the opening parenthesis.
+	 * @return the position after the closing parenthesis or -1 if the group
+	 *         is not closed.
+	 */
+	private static int skipGroup(String regex, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = skipEscape(regex, i);
+				continue;
+			}
+			if (c == '[') {
+				i = skipClass(regex, i);
+				if (i < 0) {
+					return -1;
+				}
+				continue;
+			}
+			if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a character class.
+	 *
+	 * @param regex
+	 *            the regular expression.
+	 * @param start
+	 *            the position of the opening bracket.
+	 * @return the position after the closing bracket or -1 if the class is
+	 *         not closed.
+	 */
+	private static int skipClass(String regex, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = skipEscape(regex, i);
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				// A closing bracket right after the opening is a literal.
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					i++;
+				}
+			} else if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatternLiterals []";
+	}
+
+}
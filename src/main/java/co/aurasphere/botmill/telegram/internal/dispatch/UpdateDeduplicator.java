@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Filters out the updates already received, which Telegram sends again when
+ * the webhook is slow to answer or fails. The IDs of the last received
+ * updates are kept in a sliding window made of a ring buffer, which evicts
+ * the oldest ID, and an open-addressing hash set of primitive longs, which
+ * makes the lookup constant time without allocating.
+ *
+ * @author Donato Rimenti
+ */
+public class UpdateDeduplicator {
+
+	/**
+	 * Marks an empty slot of the {@link #table}.
+	 */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/**
+	 * The IDs in the window, in order of arrival. A forgotten ID is replaced
+	 * by {@link #EMPTY}, so that its eviction doesn't remove the same ID
+	 * received again afterwards.
+	 */
+	private final long[] window;
+
+	/**
+	 * Index of the oldest ID in the {@link #window}, where the next one will
+	 * be written once the window is full.
+	 */
+	private int head;
+
+	/**
+	 * Number of IDs in the {@link #window}.
+	 */
+	private int size;
+
+	/**
+	 * Hash set of the IDs in the window, with linear probing. Its capacity is
+	 * a power of two at least twice the window size.
+	 */
+	private final long[] table;
+
+	/**
+	 * Mask used to turn a hash into an index of the {@link #table}.
+	 */
+	private final int mask;
+
+	/**
+	 * Number of updates checked.
+	 */
+	private long receivedUpdates;
+
+	/**
+	 * Number of updates found to be duplicates.
+	 */
+	private long duplicateUpdates;
+
+	/**
+	 * Instantiates a new UpdateDeduplicator.
+	 *
+	 * @param windowSize
+	 *            how many of the last update IDs are remembered.
+	 */
+	public UpdateDeduplicator(int windowSize) {
+		this.window = new long[Math.max(windowSize, 1)];
+		int capacity = Integer.highestOneBit(this.window.length) << 2;
+		this.table = new long[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(this.table, EMPTY);
+	}
+
+	/**
+	 * Records an update ID, checking whether it has already been received.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 * @return true if the ID is new, false if the update is a duplicate.
+	 */
+	public synchronized boolean add(long updateId) {
+		this.receivedUpdates++;
+		if (updateId == EMPTY) {
+			return true;
+		}
+		int slot = find(updateId);
+		if (this.table[slot] == updateId) {
+			this.duplicateUpdates++;
+			return false;
+		}
+		this.table[slot] = updateId;
+
+		if (this.size == this.window.length) {
+			long evicted = this.window[this.head];
+			if (evicted != EMPTY) {
+				remove(evicted);
+			}
+			this.window[this.head] = updateId;
+			this.head = (this.head + 1) % this.window.length;
+		} else {
+			this.window[(this.head + this.size) % this.window.length] = updateId;
+			this.size++;
+		}
+		return true;
+	}
+
+	/**
+	 * Forgets an update ID, so that the update will be accepted when it's
+	 * received again. Used when an update couldn't be processed and Telegram
+	 * is asked to send it again. The slot of the ID in the {@link #window} is
+	 * left empty until it's evicted.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 */
+	public synchronized void forget(long updateId) {
+		if (updateId == EMPTY
+				|| this.table[find(updateId)] != updateId) {
+			return;
+		}
+		remove(updateId);
+		// The ID is usually one of the last received, so the window is
+		// searched from the newest ID.
+		for (int i = this.size - 1; i >= 0; i--) {
+			int index = (this.head + i) % this.window.length;
+			if (this.window[index] == updateId) {
+				this.window[index] = EMPTY;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Finds the slot of an ID in the {@link #table}.
+	 *
+	 * @param updateId
+	 *            the ID.
+	 * @return the slot holding the ID or the empty slot where it would be
+	 *         inserted.
+	 */
+	private int find(long updateId) {
+		int slot = hash(updateId);
+		while (this.table[slot] != EMPTY && this.table[slot] != updateId) {
+			slot = (slot + 1) & this.mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Removes an ID from the {@link #table}, shifting back the following
+	 * entries of its probe sequence so that no tombstone is needed.
+	 *
+	 * @param updateId
+	 *            the ID to remove.
+	 */
+	private void remove(long updateId) {
+		int hole = find(updateId);
+		if (this.table[hole] == EMPTY) {
+			return;
+		}
+		int slot = hole;
+		while (true) {
+			slot = (slot + 1) & this.mask;
+			long entry = this.table[slot];
+			if (entry == EMPTY) {
+				break;
+			}
+			int home = hash(entry);
+			// Moves the entry only if the hole is on its probe sequence.
+			boolean inRange = hole <= slot ? (hole < home && home <= slot)
+					: (hole < home || home <= slot);
+			if (!inRange) {
+				this.table[hole] = entry;
+				hole = slot;
+			}
+		}
+		this.table[hole] = EMPTY;
+	}
+
+	/**
+	 * Computes the home slot of an ID. Update IDs are sequential, so they are
+	 * scrambled with a multiplicative hash.
+	 *
+	 * @param updateId
+	 *            the ID.
+	 * @return the home slot of the ID.
+	 */
+	private int hash(long updateId) {
+		long scrambled = updateId * 0x9E3779B97F4A7C15L;
+		return (int) (scrambled ^ (scrambled >>> 32)) & this.mask;
+	}
+
+	/**
+	 * Gets the {@link #receivedUpdates}.
+	 *
+	 * @return the {@link #receivedUpdates}.
+	 */
+	public synchronized long getReceivedUpdates() {
+		return this.receivedUpdates;
+	}
+
+	/**
+	 * Gets the {@link #duplicateUpdates}.
+	 *
+	 * @return the {@link #duplicateUpdates}.
+	 */
+	public synchronized long getDuplicateUpdates() {
+		return this.duplicateUpdates;
+	}
+
+	/**
+	 * Gets the fraction of the received updates which were duplicates.
+	 *
+	 * @return the duplicate rate, between 0 and 1.
+	 */
+	public synchronized double getDuplicateRate() {
+		return this.receivedUpdates == 0 ? 0
+				: (double) this.duplicateUpdates / this.receivedUpdates;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "UpdateDeduplicator [window=" + window.length
+				+ ", receivedUpdates=" + receivedUpdates
+				+ ", duplicateUpdates=" + duplicateUpdates + "]";
+	}
+
+}
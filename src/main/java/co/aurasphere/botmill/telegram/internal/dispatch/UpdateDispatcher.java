@@ -0,0 +1,552 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.TelegramBot;
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+import co.aurasphere.botmill.telegram.internal.util.concurrent.NamedThreadFactory;
+import co.aurasphere.botmill.telegram.model.CallbackQuery;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.User;
+import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.support.dispatch.DispatcherOptions;
+import co.aurasphere.botmill.telegram.support.dispatch.SaturationPolicy;
+
+/**
+ * Dispatches the incoming updates to the registered bots on a fixed set of
+ * lanes, each one served by a single thread with a bounded queue. Updates are
+ * assigned to a lane by hashing their chat ID, so the updates of a chat are
+ * always processed in order while different chats are processed in parallel.
+ * Alternatively, each update can be processed on its own thread, usually a
+ * virtual one, waiting for the previous update of its chat to be done.
+ *
+ * @author Donato Rimenti
+ */
+public class UpdateDispatcher {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(UpdateDispatcher.class);
+
+	/**
+	 * Function which ignores the outcome of an update, used to wait for an
+	 * update whether it failed or not.
+	 */
+	private static final BiFunction<Void, Throwable, Void> IGNORE_OUTCOME = new BiFunction<Void, Throwable, Void>() {
+		public Void apply(Void result, Throwable error) {
+			return null;
+		}
+	};
+
+	/**
+	 * The lanes of this dispatcher, null if each update has its own thread.
+	 */
+	private final ThreadPoolExecutor[] lanes;
+
+	/**
+	 * The executor which starts a thread for each update, null if the
+	 * updates are processed on the {@link #lanes}.
+	 */
+	private final ExecutorService threadPerUpdate;
+
+	/**
+	 * The maximum number of updates processed or waiting at the same time
+	 * when each update has its own thread.
+	 */
+	private final int capacity;
+
+	/**
+	 * The permits for the updates processed or waiting when each update has
+	 * its own thread, one for each update.
+	 */
+	private final Semaphore pendingUpdates;
+
+	/**
+	 * The future of the last update dispatched for each routing key which is
+	 * not done yet, used to process the updates of a chat in order when each
+	 * update has its own thread.
+	 */
+	private final ConcurrentMap<String, CompletableFuture<Void>> lastUpdates;
+
+	/**
+	 * The policy applied when the dispatcher is full.
+	 */
+	private final SaturationPolicy saturationPolicy;
+
+	/**
+	 * Number of updates rejected or discarded because their lane was full.
+	 */
+	private final AtomicLong rejectedUpdates;
+
+	/**
+	 * Instantiates a new UpdateDispatcher.
+	 *
+	 * @param options
+	 *            the options of this dispatcher.
+	 */
+	public UpdateDispatcher(DispatcherOptions options) {
+		int laneCount = Math.max(options.getLanes(), 1);
+		this.lanes = new ThreadPoolExecutor[laneCount];
+		this.threadPerUpdate = null;
+		this.capacity = 0;
+		this.pendingUpdates = null;
+		this.lastUpdates = null;
+		this.saturationPolicy = options.getSaturationPolicy();
+		this.rejectedUpdates = new AtomicLong();
+		NamedThreadFactory threadFactory = new NamedThreadFactory(
+				"telegram-botmill-lane");
+		RejectedExecutionHandler saturationHandler = new SaturationHandler(
+				options.getSaturationPolicy());
+		for (int i = 0; i < laneCount; i++) {
+			this.lanes[i] = new ThreadPoolExecutor(1, 1, 0,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+							Math.max(options.getLaneQueueCapacity(), 1)),
+					threadFactory, saturationHandler);
+		}
+	}
+
+	/**
+	 * Instantiates a new UpdateDispatcher which processes each update on its
+	 * own thread instead of on lanes. There can be at most as many updates
+	 * processed or waiting as the lanes would hold, beyond which the
+	 * {@link SaturationPolicy} applies.
+	 *
+	 * @param options
+	 *            the options of this dispatcher.
+	 * @param threadPerUpdate
+	 *            the {@link #threadPerUpdate}.
+	 */
+	public UpdateDispatcher(DispatcherOptions options,
+			ExecutorService threadPerUpdate) {
+		this.lanes = null;
+		this.threadPerUpdate = threadPerUpdate;
+		this.capacity = Math.max(options.getLanes(), 1)
+				* Math.max(options.getLaneQueueCapacity(), 1);
+		this.pendingUpdates = new Semaphore(this.capacity);
+		this.lastUpdates = new ConcurrentHashMap<String, CompletableFuture<Void>>();
+		this.saturationPolicy = options.getSaturationPolicy();
+		this.rejectedUpdates = new AtomicLong();
+	}
+
+	/**
+	 * Queues an update on the lane of its chat.
+	 *
+	 * @param update
+	 *            the update to process.
+	 * @return a future which completes once all the registered bots have
+	 *         processed the update, or completes exceptionally with a
+	 *         {@link RejectedExecutionException} if the lane was full and the
+	 *         policy is {@link SaturationPolicy#REJECT}.
+	 */
+	public CompletableFuture<Void> dispatch(Update update) {
+		if (this.lanes == null) {
+			return dispatchOnOwnThread(update);
+		}
+		LaneTask task = new LaneTask(update);
+		try {
+			this.lanes[laneOf(update)].execute(task);
+		} catch (RejectedExecutionException e) {
+			this.rejectedUpdates.incrementAndGet();
+			task.future.completeExceptionally(e);
+		}
+		return task.future;
+	}
+
+	/**
+	 * Starts a thread which processes an update once the previous update of
+	 * its chat is done.
+	 *
+	 * @param update
+	 *            the update to process.
+	 * @return the future of the update, as described by
+	 *         {@link #dispatch(Update)}.
+	 */
+	private CompletableFuture<Void> dispatchOnOwnThread(final Update update) {
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		if (!acquirePendingUpdate(update, future)) {
+			return future;
+		}
+		String key = routingKey(update);
+		final String routingKey = key == null ? "" : key;
+		final CompletableFuture<Void> previous = this.lastUpdates.put(
+				routingKey, future);
+		Runnable task = new Runnable() {
+			public void run() {
+				Throwable error = null;
+				try {
+					if (previous != null) {
+						// Blocking is cheap on a virtual thread.
+						previous.handle(IGNORE_OUTCOME).join();
+					}
+					processUpdate(update);
+				} catch (Throwable t) {
+					error = t;
+				} finally {
+					release(routingKey, future);
+				}
+				if (error == null) {
+					future.complete(null);
+				} else {
+					future.completeExceptionally(error);
+				}
+			}
+		};
+		try {
+			this.threadPerUpdate.execute(task);
+		} catch (RejectedExecutionException e) {
+			this.rejectedUpdates.incrementAndGet();
+			future.completeExceptionally(new RejectedExecutionException(
+					"The update dispatcher has been stopped.", e));
+			release(routingKey, future);
+		}
+		return future;
+	}
+
+	/**
+	 * Takes a permit for an update, applying the {@link #saturationPolicy} if
+	 * the dispatcher is full.
+	 *
+	 * @param update
+	 *            the update to process.
+	 * @param future
+	 *            the future of the update, completed here if it won't be
+	 *            processed.
+	 * @return true, if the update can be processed.
+	 */
+	private boolean acquirePendingUpdate(Update update,
+			CompletableFuture<Void> future) {
+		if (this.threadPerUpdate.isShutdown()) {
+			this.rejectedUpdates.incrementAndGet();
+			future.completeExceptionally(new RejectedExecutionException(
+					"The update dispatcher has been stopped."));
+			return false;
+		}
+		if (this.pendingUpdates.tryAcquire()) {
+			return true;
+		}
+		switch (this.saturationPolicy == null ? SaturationPolicy.BLOCK
+				: this.saturationPolicy) {
+		case BLOCK:
+			try {
+				this.pendingUpdates.acquire();
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				future.completeExceptionally(new RejectedExecutionException(
+						"Interrupted while waiting for a lane.", e));
+				return false;
+			}
+		case DISCARD:
+			this.rejectedUpdates.incrementAndGet();
+			logger.warn("Dispatcher full, update {} discarded.",
+					update.getUpdateId());
+			future.complete(null);
+			return false;
+		default:
+			this.rejectedUpdates.incrementAndGet();
+			future.completeExceptionally(new RejectedExecutionException(
+					"Dispatcher full, update " + update.getUpdateId()
+							+ " rejected."));
+			return false;
+		}
+	}
+
+	/**
+	 * Releases the permit of an update which is done and forgets it, unless a
+	 * newer update of the same chat has been dispatched meanwhile.
+	 *
+	 * @param routingKey
+	 *            the routing key of the update.
+	 * @param future
+	 *            the future of the update.
+	 */
+	private void release(String routingKey, CompletableFuture<Void> future) {
+		this.lastUpdates.remove(routingKey, future);
+		this.pendingUpdates.release();
+	}
+
+	/**
+	 * Forwards an update to all the registered bots. An error raised by a bot
+	 * is logged and doesn't prevent the other bots from processing the update.
+	 *
+	 * @param update
+	 *            the update to process.
+	 */
+	public static void processUpdate(Update update) {
+		for (TelegramBot bot : TelegramBotMillContext.getInstance()
+				.getRegisteredBots()) {
+			try {
+				bot.processMessage(update);
+			} catch (RuntimeException e) {
+				logger.error("Error while processing update "
+						+ update.getUpdateId() + ": ", e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the lane assigned to an update.
+	 *
+	 * @param update
+	 *            the update.
+	 * @return the index of the lane.
+	 */
+	private int laneOf(Update update) {
+		String key = routingKey(update);
+		int hash = key == null ? 0 : key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % this.lanes.length;
+	}
+
+	/**
+	 * Gets the key which determines the lane of an update: the ID of the chat
+	 * the update belongs to or, for updates which don't belong to a chat like
+	 * inline queries, the ID of the user who sent them.
+	 *
+	 * @param update
+	 *            the update.
+	 * @return the routing key of the update.
+	 */
+	static String routingKey(Update update) {
+		Message message = update.getMessage();
+		if (message == null) {
+			message = update.getEditedMessage();
+		}
+		if (message == null) {
+			message = update.getChannelPost();
+		}
+		if (message == null) {
+			message = update.getEditedChannelPost();
+		}
+		CallbackQuery callbackQuery = update.getCallbackQuery();
+		if (message == null && callbackQuery != null) {
+			message = callbackQuery.getMessage();
+		}
+		if (message != null && message.getChat() != null) {
+			return message.getChat().getId();
+		}
+
+		User from = null;
+		if (callbackQuery != null) {
+			from = callbackQuery.getFrom();
+		} else if (update.getInlineQuery() != null) {
+			from = update.getInlineQuery().getFrom();
+		} else if (update.getChosenInlineResult() != null) {
+			from = update.getChosenInlineResult().getFrom();
+		}
+		if (from != null) {
+			return from.getId();
+		}
+		return update.getUpdateId();
+	}
+
+	/**
+	 * Gets the number of updates waiting in all the lanes.
+	 *
+	 * @return the number of queued updates.
+	 */
+	public int getQueueDepth() {
+		if (this.lanes == null) {
+			return this.capacity - this.pendingUpdates.availablePermits();
+		}
+		int depth = 0;
+		for (ThreadPoolExecutor lane : this.lanes) {
+			depth += lane.getQueue().size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Gets the {@link #rejectedUpdates}.
+	 *
+	 * @return the {@link #rejectedUpdates}.
+	 */
+	public long getRejectedUpdates() {
+		return this.rejectedUpdates.get();
+	}
+
+	/**
+	 * Stops the dispatcher, waiting for the queued updates to be processed.
+	 */
+	public void shutdown() {
+		if (this.lanes == null) {
+			this.threadPerUpdate.shutdown();
+			try {
+				if (!this.threadPerUpdate.awaitTermination(10, TimeUnit.SECONDS)) {
+					logger.warn("Queued updates have been discarded.");
+					this.threadPerUpdate.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				this.threadPerUpdate.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+		for (ThreadPoolExecutor lane : this.lanes) {
+			lane.shutdown();
+		}
+		try {
+			for (ThreadPoolExecutor lane : this.lanes) {
+				if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+					logger.warn("Queued updates have been discarded.");
+					lane.shutdownNow();
+				}
+			}
+		} catch (InterruptedException e) {
+			for (ThreadPoolExecutor lane : this.lanes) {
+				lane.shutdownNow();
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The task which processes an update on its lane.
+	 */
+	private static class LaneTask implements Runnable {
+
+		/**
+		 * The update to process.
+		 */
+		private final Update update;
+
+		/**
+		 * The future completed once the update has been processed.
+		 */
+		private final CompletableFuture<Void> future;
+
+		/**
+		 * Instantiates a new LaneTask.
+		 *
+		 * @param update
+		 *            the {@link #update}.
+		 */
+		LaneTask(Update update) {
+			this.update = update;
+			this.future = new CompletableFuture<Void>();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			try {
+				processUpdate(this.update);
+				this.future.complete(null);
+			} catch (Throwable t) {
+				this.future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * Applies the {@link SaturationPolicy} when a lane is full.
+	 */
+	private class SaturationHandler implements RejectedExecutionHandler {
+
+		/**
+		 * The policy to apply.
+		 */
+		private final SaturationPolicy policy;
+
+		/**
+		 * Instantiates a new SaturationHandler.
+		 *
+		 * @param policy
+		 *            the {@link #policy}.
+		 */
+		SaturationHandler(SaturationPolicy policy) {
+			this.policy = policy == null ? SaturationPolicy.BLOCK : policy;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java
+		 * .lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+		 */
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor lane) {
+			if (lane.isShutdown()) {
+				throw new RejectedExecutionException(
+						"The update dispatcher has been stopped.");
+			}
+			switch (this.policy) {
+			case BLOCK:
+				try {
+					lane.getQueue().put(task);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(
+							"Interrupted while waiting for a lane.", e);
+				}
+				break;
+			case DISCARD:
+				rejectedUpdates.incrementAndGet();
+				LaneTask laneTask = (LaneTask) task;
+				logger.warn("Lane full, update {} discarded.",
+						laneTask.update.getUpdateId());
+				laneTask.future.complete(null);
+				break;
+			default:
+				throw new RejectedExecutionException("Lane full, update "
+						+ ((LaneTask) task).update.getUpdateId()
+						+ " rejected.");
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UpdateDispatcher [lanes="
+				+ (lanes == null ? "none" : String.valueOf(lanes.length))
+				+ ", queueDepth=" + getQueueDepth() + "]";
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} which creates daemon threads named after a common
+ * prefix, so that Telegram BotMill threads are easy to spot in a thread dump
+ * and never prevent the JVM from exiting.
+ *
+ * @author Donato Rimenti
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+	/**
+	 * The prefix of the name of the created threads.
+	 */
+	private final String prefix;
+
+	/**
+	 * Counter used to number the created threads.
+	 */
+	private final AtomicInteger counter;
+
+	/**
+	 * Instantiates a new NamedThreadFactory.
+	 *
+	 * @param prefix
+	 *            the {@link #prefix}.
+	 */
+	public NamedThreadFactory(String prefix) {
+		this.prefix = prefix;
+		this.counter = new AtomicInteger();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, this.prefix + "-"
+				+ this.counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "NamedThreadFactory [prefix=" + prefix + "]";
+	}
+
+}
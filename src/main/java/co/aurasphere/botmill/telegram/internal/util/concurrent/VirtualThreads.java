@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors running each task on its own virtual thread. Virtual
+ * threads are only available from Java 21, so they are looked up through
+ * reflection when this class is loaded and this library still runs on older
+ * JVMs, where {@link #isSupported()} simply returns false.
+ *
+ * @author Donato Rimenti
+ */
+public class VirtualThreads {
+
+	/**
+	 * The method {@code Thread.ofVirtual()}, null if not supported.
+	 */
+	private static final Method OF_VIRTUAL;
+
+	/**
+	 * The method {@code Thread.Builder.name(String, long)}, null if not
+	 * supported.
+	 */
+	private static final Method NAME;
+
+	/**
+	 * The method {@code Thread.Builder.factory()}, null if not supported.
+	 */
+	private static final Method FACTORY;
+
+	/**
+	 * The method {@code Executors.newThreadPerTaskExecutor(ThreadFactory)},
+	 * null if not supported.
+	 */
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			// The methods are looked up on the public interface, since the
+			// builder implementations are not accessible.
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod(
+					"newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (ClassNotFoundException e) {
+			ofVirtual = null;
+		} catch (NoSuchMethodException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	/**
+	 * Instantiates a new VirtualThreads.
+	 */
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Checks if the running JVM supports virtual threads.
+	 *
+	 * @return true, if virtual threads are supported.
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Creates an executor which starts a new virtual thread for each task,
+	 * named after a common prefix like the threads of a
+	 * {@link NamedThreadFactory}.
+	 *
+	 * @param prefix
+	 *            the prefix of the name of the created threads.
+	 * @return the executor or null if virtual threads are not supported.
+	 */
+	public static ExecutorService newExecutor(String prefix) {
+		if (!isSupported()) {
+			return null;
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = NAME.invoke(builder, prefix + "-", 1L);
+			ThreadFactory threadFactory = (ThreadFactory) FACTORY
+					.invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null,
+					threadFactory);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "VirtualThreads [supported=" + isSupported() + "]";
+	}
+
+}
@@ -26,6 +26,8 @@ package co.aurasphere.botmill.telegram.internal.util.json;
 import java.lang.reflect.Type;
 import java.util.Calendar;
 
+import co.aurasphere.botmill.telegram.internal.util.time.UnixTimeUtils;
+
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -41,10 +43,8 @@ public class CalendarFromTimestampJsonDeserializer implements JsonDeserializer<C
 	 */
 	public Calendar deserialize(JsonElement json, Type typeOfT,
 			JsonDeserializationContext context) throws JsonParseException {
-		long timestamp = json.getAsLong();
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTimeInMillis(timestamp);
-		return calendar;
+		// Telegram timestamps are in seconds.
+		return UnixTimeUtils.toCalendar(json.getAsLong());
 	}
 
 }
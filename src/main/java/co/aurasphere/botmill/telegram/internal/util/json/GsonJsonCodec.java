@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.Calendar;
+
+import co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapterFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The default {@link JsonCodec}, which delegates to a Gson instance with the
+ * adapters for the Telegram formats. The Gson instance is built when the codec
+ * is created, so it's never shared before being fully initialized.
+ *
+ * @author Donato Rimenti
+ */
+public class GsonJsonCodec implements JsonCodec {
+
+	/**
+	 * Gson which handles the JSON conversion.
+	 */
+	private final Gson gson;
+
+	/**
+	 * Instantiates a new GsonJsonCodec.
+	 */
+	public GsonJsonCodec() {
+		this.gson = newGsonBuilder().create();
+	}
+
+	/**
+	 * Creates a GsonBuilder with custom adapters to manage datatypes according
+	 * to Telegram formats.
+	 * 
+	 * @return a new GsonBuilder.
+	 */
+	static GsonBuilder newGsonBuilder() {
+		GsonBuilder builder = new GsonBuilder();
+
+		// Reads Unix times in seconds as calendars.
+		builder.registerTypeHierarchyAdapter(Calendar.class,
+				new CalendarFromTimestampJsonDeserializer());
+
+		// Reads the most common model objects without reflection.
+		builder.registerTypeAdapterFactory(new ModelTypeAdapterFactory());
+		return builder;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#fromJson(java
+	 * .lang.String, java.lang.reflect.Type)
+	 */
+	public <T> T fromJson(String json, Type typeOfT) {
+		return this.gson.fromJson(json, typeOfT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#fromJson(java
+	 * .io.Reader, java.lang.reflect.Type)
+	 */
+	public <T> T fromJson(Reader json, Type typeOfT) {
+		return this.gson.fromJson(json, typeOfT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#toJson(java
+	 * .lang.Object)
+	 */
+	public String toJson(Object src) {
+		return this.gson.toJson(src);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#toJson(java
+	 * .lang.Object, java.io.Writer)
+	 */
+	public void toJson(Object src, Writer writer) {
+		this.gson.toJson(src, writer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "GsonJsonCodec []";
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Engine which converts the Telegram objects from and to JSON. The model
+ * classes describe their JSON names through Gson annotations, so
+ * implementations must honor them. Implementations are shared by all the
+ * threads and must be thread-safe. The codec in use is set through
+ * {@link co.aurasphere.botmill.telegram.TelegramBotMillContext#setJsonCodec(JsonCodec)}.
+ *
+ * @author Donato Rimenti
+ * @see GsonJsonCodec
+ * @see StreamingJsonCodec
+ */
+public interface JsonCodec {
+
+	/**
+	 * Deserializes an object from a string.
+	 *
+	 * @param <T>
+	 *            the generic type.
+	 * @param json
+	 *            the string from which the object is to be deserialized.
+	 * @param typeOfT
+	 *            the type of the desired object, which can be a generic type.
+	 * @return an object of type T from the string. Returns null if json is
+	 *         null or empty.
+	 */
+	public <T> T fromJson(String json, Type typeOfT);
+
+	/**
+	 * Deserializes an object from a stream, without buffering it whole.
+	 *
+	 * @param <T>
+	 *            the generic type.
+	 * @param json
+	 *            the reader from which the object is to be deserialized.
+	 * @param typeOfT
+	 *            the type of the desired object, which can be a generic type.
+	 * @return an object of type T from the reader. Returns null if the reader
+	 *         is at the end of the stream.
+	 */
+	public <T> T fromJson(Reader json, Type typeOfT);
+
+	/**
+	 * Serializes an object into a string.
+	 *
+	 * @param src
+	 *            the object for which the JSON representation is to be
+	 *            created.
+	 * @return the JSON representation of src.
+	 */
+	public String toJson(Object src);
+
+	/**
+	 * Serializes an object into a stream. Implementations should write the
+	 * JSON as it's produced instead of building it in memory first.
+	 *
+	 * @param src
+	 *            the object for which the JSON representation is to be
+	 *            created.
+	 * @param writer
+	 *            the writer to which the JSON is written.
+	 * @throws IOException
+	 *             if the JSON couldn't be written.
+	 */
+	public default void toJson(Object src, Writer writer) throws IOException {
+		writer.write(toJson(src));
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import co.aurasphere.botmill.telegram.model.outcoming.response.TelegramBaseSendDataResponse;
+
+/**
+ * The JSON of a response serialized once, with slots where the chat ID and
+ * optionally the ID of the message replied to are written at each use.
+ * Rendering a template only copies its constant parts and writes the IDs,
+ * so it's meant for replies whose content never changes.
+ *
+ * @author Donato Rimenti
+ */
+public class JsonTemplate {
+
+	/**
+	 * The UTF-8 charset.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Placeholder for the chat ID while compiling a template.
+	 */
+	private static final String CHAT_ID_MARKER = "botmill-template-chat-id";
+
+	/**
+	 * Placeholder for the ID of the message replied to while compiling a
+	 * template.
+	 */
+	private static final int REPLY_TO_MARKER = Integer.MIN_VALUE;
+
+	/**
+	 * The constant parts of the JSON, one more than the slots.
+	 */
+	private final byte[][] segments;
+
+	/**
+	 * For each slot, true if it holds the chat ID, false if it holds the ID of
+	 * the message replied to.
+	 */
+	private final boolean[] chatIdSlots;
+
+	/**
+	 * Instantiates a new JsonTemplate.
+	 *
+	 * @param segments
+	 *            the {@link #segments}.
+	 * @param chatIdSlots
+	 *            the {@link #chatIdSlots}.
+	 */
+	private JsonTemplate(byte[][] segments, boolean[] chatIdSlots) {
+		this.segments = segments;
+		this.chatIdSlots = chatIdSlots;
+	}
+
+	/**
+	 * Serializes a response into a template. The chat ID and, if requested,
+	 * the ID of the message replied to of the prototype are overwritten.
+	 *
+	 * @param prototype
+	 *            the response holding the constant part of the JSON.
+	 * @param replyTo
+	 *            whether the template has a slot for the ID of the message
+	 *            replied to. If false, the one of the prototype is kept.
+	 * @return the compiled template.
+	 */
+	public static JsonTemplate compile(TelegramBaseSendDataResponse prototype,
+			boolean replyTo) {
+		prototype.setChatId(CHAT_ID_MARKER);
+		if (replyTo) {
+			prototype.setReplyToMessageId(REPLY_TO_MARKER);
+		}
+		byte[] json = JsonUtils.toJson(prototype).getBytes(UTF_8);
+
+		int chatIdStart = indexOf(json, "\"" + CHAT_ID_MARKER + "\"");
+		int chatIdEnd = chatIdStart + CHAT_ID_MARKER.length() + 2;
+		if (!replyTo) {
+			return new JsonTemplate(new byte[][] {
+					Arrays.copyOfRange(json, 0, chatIdStart),
+					Arrays.copyOfRange(json, chatIdEnd, json.length) },
+					new boolean[] { true });
+		}
+
+		String replyToKey = "\"reply_to_message_id\":";
+		int replyToStart = indexOf(json, replyToKey + REPLY_TO_MARKER)
+				+ replyToKey.length();
+		int replyToEnd = replyToStart
+				+ String.valueOf(REPLY_TO_MARKER).length();
+		boolean chatIdFirst = chatIdStart < replyToStart;
+		int firstStart = chatIdFirst ? chatIdStart : replyToStart;
+		int firstEnd = chatIdFirst ? chatIdEnd : replyToEnd;
+		int secondStart = chatIdFirst ? replyToStart : chatIdStart;
+		int secondEnd = chatIdFirst ? replyToEnd : chatIdEnd;
+		return new JsonTemplate(new byte[][] {
+				Arrays.copyOfRange(json, 0, firstStart),
+				Arrays.copyOfRange(json, firstEnd, secondStart),
+				Arrays.copyOfRange(json, secondEnd, json.length) },
+				new boolean[] { chatIdFirst, !chatIdFirst });
+	}
+
+	/**
+	 * Renders this template.
+	 *
+	 * @param chatId
+	 *            the chat ID to write.
+	 * @param replyToMessageId
+	 *            the ID of the message replied to, ignored if this template
+	 *            has no slot for it.
+	 * @return the UTF-8 JSON.
+	 */
+	public byte[] render(String chatId, int replyToMessageId) {
+		byte[] chatIdJson = encodeString(chatId);
+		String replyToJson = Integer.toString(replyToMessageId);
+
+		int length = 0;
+		for (byte[] segment : this.segments) {
+			length += segment.length;
+		}
+		for (boolean chatIdSlot : this.chatIdSlots) {
+			length += chatIdSlot ? chatIdJson.length : replyToJson.length();
+		}
+
+		byte[] json = new byte[length];
+		int position = 0;
+		for (int i = 0; i < this.segments.length; i++) {
+			byte[] segment = this.segments[i];
+			System.arraycopy(segment, 0, json, position, segment.length);
+			position += segment.length;
+			if (i == this.chatIdSlots.length) {
+				break;
+			}
+			if (this.chatIdSlots[i]) {
+				System.arraycopy(chatIdJson, 0, json, position,
+						chatIdJson.length);
+				position += chatIdJson.length;
+			} else {
+				// Digits and sign are ASCII.
+				for (int j = 0; j < replyToJson.length(); j++) {
+					json[position++] = (byte) replyToJson.charAt(j);
+				}
+			}
+		}
+		return json;
+	}
+
+	/**
+	 * Encodes a string as a JSON value. Chat IDs are numbers or channel
+	 * usernames, so they are copied as they are unless they need escaping.
+	 *
+	 * @param value
+	 *            the string to encode.
+	 * @return the UTF-8 JSON.
+	 */
+	private static byte[] encodeString(String value) {
+		if (value == null) {
+			return new byte[] { 'n', 'u', 'l', 'l' };
+		}
+		byte[] json = new byte[value.length() + 2];
+		json[0] = '"';
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c >= 0x7f || c == '"' || c == '\\') {
+				return JsonUtils.toJson(value).getBytes(UTF_8);
+			}
+			json[i + 1] = (byte) c;
+		}
+		json[json.length - 1] = '"';
+		return json;
+	}
+
+	/**
+	 * Finds the first occurrence of an ASCII string in a buffer.
+	 *
+	 * @param buffer
+	 *            the buffer to search.
+	 * @param target
+	 *            the string to find.
+	 * @return the position of the string.
+	 */
+	private static int indexOf(byte[] buffer, String target) {
+		outer: for (int i = 0; i <= buffer.length - target.length(); i++) {
+			for (int j = 0; j < target.length(); j++) {
+				if (buffer[i + j] != target.charAt(j)) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		throw new IllegalStateException("Placeholder " + target
+				+ " not found in the serialized template.");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < this.segments.length; i++) {
+			builder.append(new String(this.segments[i], UTF_8));
+			if (i < this.chatIdSlots.length) {
+				builder.append(this.chatIdSlots[i] ? "{chat_id}"
+						: "{reply_to_message_id}");
+			}
+		}
+		return "JsonTemplate [" + builder + "]";
+	}
+
+}
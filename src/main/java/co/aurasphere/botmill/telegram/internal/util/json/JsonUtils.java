@@ -23,23 +23,21 @@
  */
 package co.aurasphere.botmill.telegram.internal.util.json;
 
-import java.util.Calendar;
+import java.io.Reader;
+import java.lang.reflect.Type;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+
+import com.google.gson.JsonElement;
 
 /**
- * Utility class for handling JSON serialization and deserialization.
+ * Utility class for handling JSON serialization and deserialization through
+ * the {@link JsonCodec} set in the {@link TelegramBotMillContext}.
  * 
  * @author Donato Rimenti
  */
 public class JsonUtils {
 
-	/**
-	 * Gson which handles the JSON conversion.
-	 */
-	private static Gson gson;
-
 	/**
 	 * Instantiates a new JsonUtils.
 	 */
@@ -47,29 +45,12 @@ public class JsonUtils {
 	}
 
 	/**
-	 * Initializes the current Gson object if null and returns it. The Gson
-	 * object has custom adapters to manage datatypes according to Telegram
-	 * formats.
+	 * Gets the codec currently in use.
 	 * 
-	 * @return the current instance of Gson.
+	 * @return the current {@link JsonCodec}.
 	 */
-	private static Gson getGson() {
-		if (gson == null) {
-			// Creates the Gson object which will manage the information
-			// received
-			GsonBuilder builder = new GsonBuilder();
-
-//			// Serializes enums as lower-case.
-//			builder.registerTypeHierarchyAdapter(Enum.class,
-//					new EnumLowercaseSerializer());
-//
-//			// Serializes calendar in format YYYY-MM-DDThh:mm.
-			builder.registerTypeHierarchyAdapter(Calendar.class,
-					new CalendarFromTimestampJsonDeserializer());
-
-			gson = builder.create();
-		}
-		return gson;
+	private static JsonCodec getCodec() {
+		return TelegramBotMillContext.getInstance().getJsonCodec();
 	}
 
 	/**
@@ -83,10 +64,76 @@ public class JsonUtils {
 	 *            the type of the desired object.
 	 * @return an object of type T from the string. Returns null if json is
 	 *         null.
-	 * @see Gson#fromJson(String, Class)
+	 * @see JsonCodec#fromJson(String, Type)
 	 */
 	public static <T> T fromJson(String json, Class<T> T) {
-		return getGson().fromJson(json, T);
+		return getCodec().fromJson(json, T);
+	}
+
+	/**
+	 * From json.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param json
+	 *            the string from which the object is to be deserialized.
+	 * @param typeOfT
+	 *            the type of the desired object, which can be a generic type.
+	 * @return an object of type T from the string. Returns null if json is
+	 *         null.
+	 * @see JsonCodec#fromJson(String, Type)
+	 */
+	public static <T> T fromJson(String json, Type typeOfT) {
+		return getCodec().fromJson(json, typeOfT);
+	}
+
+	/**
+	 * From json, reading the JSON as a stream without buffering it whole.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param json
+	 *            the reader from which the object is to be deserialized.
+	 * @param T
+	 *            the type of the desired object.
+	 * @return an object of type T from the reader. Returns null if the reader
+	 *         is at the end of the stream.
+	 * @see JsonCodec#fromJson(Reader, Type)
+	 */
+	public static <T> T fromJson(Reader json, Class<T> T) {
+		return getCodec().fromJson(json, T);
+	}
+
+	/**
+	 * From json, reading the JSON as a stream without buffering it whole.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param json
+	 *            the reader from which the object is to be deserialized.
+	 * @param typeOfT
+	 *            the type of the desired object, which can be a generic type.
+	 * @return an object of type T from the reader. Returns null if the reader
+	 *         is at the end of the stream.
+	 * @see JsonCodec#fromJson(Reader, Type)
+	 */
+	public static <T> T fromJson(Reader json, Type typeOfT) {
+		return getCodec().fromJson(json, typeOfT);
+	}
+
+	/**
+	 * From json.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param json
+	 *            the tree from which the object is to be deserialized.
+	 * @param T
+	 *            the type of the desired object.
+	 * @return an object of type T from the tree. Returns null if json is null.
+	 */
+	public static <T> T fromJson(JsonElement json, Class<T> T) {
+		return json == null ? null : getCodec().<T> fromJson(json.toString(), T);
 	}
 
 	/**
@@ -96,10 +143,10 @@ public class JsonUtils {
 	 *            the object for which Json representation is to be created
 	 *            setting for Gson .
 	 * @return Json representation of src.
-	 * @see Gson#toJson(Object)
+	 * @see JsonCodec#toJson(Object)
 	 */
 	public static String toJson(Object src) {
-		return getGson().toJson(src);
+		return getCodec().toJson(src);
 	}
 
 	/*
@@ -0,0 +1,410 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * A JSON object kept as raw UTF-8 bytes, along with the position of the
+ * values of a fixed set of keys. Building the index only scans the bytes,
+ * without decoding or allocating anything but the index itself; each value
+ * is decoded only when requested. Used by the lazy model objects.
+ *
+ * @author Donato Rimenti
+ */
+public class RawJsonObject {
+
+	/**
+	 * The charset of the raw JSON.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The buffer which holds the object, possibly along with other data.
+	 */
+	private final byte[] raw;
+
+	/**
+	 * For each indexed key, the position of its value in {@link #raw} or -1
+	 * if the key is missing.
+	 */
+	private final int[] starts;
+
+	/**
+	 * For each indexed key, the position following its value in {@link #raw}.
+	 */
+	private final int[] ends;
+
+	/**
+	 * Indexes the object which starts at the given position.
+	 *
+	 * @param raw
+	 *            the buffer holding the object.
+	 * @param start
+	 *            the position of the object in the buffer.
+	 * @param keys
+	 *            the keys to index, as ASCII bytes. Each key is then referred
+	 *            to by its position in this array.
+	 * @throws JsonParseException
+	 *             if the buffer doesn't hold a valid object at the given
+	 *             position.
+	 */
+	public RawJsonObject(byte[] raw, int start, byte[][] keys) {
+		this.raw = raw;
+		this.starts = new int[keys.length];
+		this.ends = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			this.starts[i] = -1;
+		}
+		try {
+			index(start, keys);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new JsonParseException("Unexpected end of JSON.", e);
+		}
+	}
+
+	/**
+	 * Converts a list of keys to the form expected by the constructor.
+	 *
+	 * @param keys
+	 *            the keys.
+	 * @return the keys as ASCII bytes.
+	 */
+	public static byte[][] keys(String... keys) {
+		byte[][] bytes = new byte[keys.length][];
+		for (int i = 0; i < keys.length; i++) {
+			bytes[i] = keys[i].getBytes(UTF_8);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Checks if a key is present with a non-null value.
+	 *
+	 * @param key
+	 *            the index of the key.
+	 * @return true if the key has a value.
+	 */
+	public boolean has(int key) {
+		return this.starts[key] >= 0;
+	}
+
+	/**
+	 * Gets the position of the value of a key, used to index a nested object
+	 * sharing the same buffer.
+	 *
+	 * @param key
+	 *            the index of the key.
+	 * @return the position of the value or -1 if the key is missing.
+	 */
+	public int getStart(int key) {
+		return this.starts[key];
+	}
+
+	/**
+	 * Gets the {@link #raw} buffer.
+	 *
+	 * @return the {@link #raw} buffer.
+	 */
+	public byte[] getRaw() {
+		return this.raw;
+	}
+
+	/**
+	 * Decodes the value of a key as a string. Numbers are returned as they
+	 * appear in the JSON.
+	 *
+	 * @param key
+	 *            the index of the key.
+	 * @return the value or null if the key is missing.
+	 */
+	public String getString(int key) {
+		int start = this.starts[key];
+		if (start < 0) {
+			return null;
+		}
+		int end = this.ends[key];
+		if (this.raw[start] != '"') {
+			return new String(this.raw, start, end - start, UTF_8);
+		}
+		// Strings without escapes are decoded straight from the buffer.
+		for (int i = start + 1; i < end - 1; i++) {
+			if (this.raw[i] == '\\') {
+				return decode(key, String.class);
+			}
+		}
+		return new String(this.raw, start + 1, end - start - 2, UTF_8);
+	}
+
+	/**
+	 * Decodes the value of a key as an integral number.
+	 *
+	 * @param key
+	 *            the index of the key.
+	 * @return the value or 0 if the key is missing.
+	 */
+	public long getLong(int key) {
+		int start = this.starts[key];
+		if (start < 0) {
+			return 0;
+		}
+		int end = this.ends[key];
+		if (this.raw[start] == '"') {
+			// Quoted numbers are accepted, like Gson does.
+			start++;
+			end--;
+		}
+		boolean negative = this.raw[start] == '-';
+		long value = 0;
+		for (int i = negative ? start + 1 : start; i < end; i++) {
+			int digit = this.raw[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return decode(key, long.class);
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decodes the value of a key as a boolean.
+	 *
+	 * @param key
+	 *            the index of the key.
+	 * @return the value or false if the key is missing.
+	 */
+	public boolean getBoolean(int key) {
+		int start = this.starts[key];
+		return start >= 0 && this.raw[start] == 't';
+	}
+
+	/**
+	 * Decodes the value of a key through Gson.
+	 *
+	 * @param <T>
+	 *            the type of the value.
+	 * @param key
+	 *            the index of the key.
+	 * @param type
+	 *            the type of the value, which can be a generic type.
+	 * @return the value or null if the key is missing.
+	 */
+	public <T> T decode(int key, Type type) {
+		int start = this.starts[key];
+		if (start < 0) {
+			return null;
+		}
+		String json = new String(this.raw, start, this.ends[key] - start,
+				UTF_8);
+		return JsonUtils.fromJson(json, type);
+	}
+
+	/**
+	 * Scans the object, recording the position of the indexed keys.
+	 *
+	 * @param start
+	 *            the position of the object.
+	 * @param keys
+	 *            the keys to index.
+	 */
+	private void index(int start, byte[][] keys) {
+		int position = skipWhitespace(start);
+		expect(position, '{');
+		position = skipWhitespace(position + 1);
+		if (this.raw[position] == '}') {
+			return;
+		}
+		while (true) {
+			expect(position, '"');
+			int keyStart = position + 1;
+			position = skipString(position);
+			int keyEnd = position - 1;
+			position = skipWhitespace(position);
+			expect(position, ':');
+			int valueStart = skipWhitespace(position + 1);
+			int valueEnd = skipValue(valueStart);
+
+			int key = find(keys, keyStart, keyEnd);
+			if (key >= 0 && !isNull(valueStart)) {
+				this.starts[key] = valueStart;
+				this.ends[key] = valueEnd;
+			}
+
+			position = skipWhitespace(valueEnd);
+			if (this.raw[position] == '}') {
+				return;
+			}
+			expect(position, ',');
+			position = skipWhitespace(position + 1);
+		}
+	}
+
+	/**
+	 * Finds which indexed key matches a key of the object.
+	 *
+	 * @param keys
+	 *            the indexed keys.
+	 * @param start
+	 *            the position of the key.
+	 * @param end
+	 *            the position following the key.
+	 * @return the index of the key or -1 if it's not indexed.
+	 */
+	private int find(byte[][] keys, int start, int end) {
+		int length = end - start;
+		for (int i = 0; i < keys.length; i++) {
+			byte[] candidate = keys[i];
+			if (candidate.length != length) {
+				continue;
+			}
+			int j = 0;
+			while (j < length && candidate[j] == this.raw[start + j]) {
+				j++;
+			}
+			if (j == length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a value.
+	 *
+	 * @param position
+	 *            the position of the value.
+	 * @return the position following the value.
+	 */
+	private int skipValue(int position) {
+		byte first = this.raw[position];
+		if (first == '"') {
+			return skipString(position);
+		}
+		if (first == '{' || first == '[') {
+			int depth = 0;
+			do {
+				byte current = this.raw[position];
+				if (current == '"') {
+					position = skipString(position);
+					continue;
+				}
+				if (current == '{' || current == '[') {
+					depth++;
+				} else if (current == '}' || current == ']') {
+					depth--;
+				}
+				position++;
+			} while (depth > 0);
+			return position;
+		}
+		// Numbers, booleans and null.
+		while (position < this.raw.length) {
+			byte current = this.raw[position];
+			if (current == ',' || current == '}' || current == ']'
+					|| current <= ' ') {
+				break;
+			}
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Skips a string, including its quotes.
+	 *
+	 * @param position
+	 *            the position of the opening quote.
+	 * @return the position following the closing quote.
+	 */
+	private int skipString(int position) {
+		position++;
+		while (true) {
+			byte current = this.raw[position];
+			if (current == '\\') {
+				position += 2;
+			} else if (current == '"') {
+				return position + 1;
+			} else {
+				position++;
+			}
+		}
+	}
+
+	/**
+	 * Skips the whitespaces.
+	 *
+	 * @param position
+	 *            the starting position.
+	 * @return the position of the first non-whitespace character.
+	 */
+	private int skipWhitespace(int position) {
+		while (position < this.raw.length && this.raw[position] <= ' ') {
+			position++;
+		}
+		if (position >= this.raw.length) {
+			throw new JsonParseException("Unexpected end of JSON.");
+		}
+		return position;
+	}
+
+	/**
+	 * Checks that the expected character is found.
+	 *
+	 * @param position
+	 *            the position to check.
+	 * @param expected
+	 *            the expected character.
+	 */
+	private void expect(int position, char expected) {
+		if (this.raw[position] != expected) {
+			throw new JsonParseException("Expected '" + expected
+					+ "' at position " + position + ".");
+		}
+	}
+
+	/**
+	 * Checks if a value is null.
+	 *
+	 * @param position
+	 *            the position of the value.
+	 * @return true if the value is null.
+	 */
+	private boolean isNull(int position) {
+		return this.raw[position] == 'n';
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RawJsonObject [indexedKeys=" + starts.length + "]";
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * A {@link JsonCodec} which drives the Gson type adapters straight through
+ * the streaming API. Compared to {@link GsonJsonCodec}, the adapters are
+ * resolved once per type, the JSON is written into a buffer reused by each
+ * thread instead of a new synchronized StringWriter, and HTML characters are
+ * not escaped since Telegram doesn't need it. The objects read and written
+ * are the same, while the JSON produced may differ in the escaping of
+ * {@code <>&='}.
+ *
+ * @author Donato Rimenti
+ */
+public class StreamingJsonCodec implements JsonCodec {
+
+	/**
+	 * The largest buffer kept by a thread between two serializations, in
+	 * characters. Larger buffers are dropped once used.
+	 */
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+	/**
+	 * Gson which provides the type adapters.
+	 */
+	private final Gson gson;
+
+	/**
+	 * The type adapters resolved so far.
+	 */
+	private final ConcurrentMap<Type, TypeAdapter<?>> adapters;
+
+	/**
+	 * The buffer used by each thread for serialization.
+	 */
+	private final ThreadLocal<BufferWriter> buffers;
+
+	/**
+	 * Instantiates a new StreamingJsonCodec.
+	 */
+	public StreamingJsonCodec() {
+		this.gson = GsonJsonCodec.newGsonBuilder().disableHtmlEscaping()
+				.create();
+		this.adapters = new ConcurrentHashMap<Type, TypeAdapter<?>>();
+		this.buffers = new ThreadLocal<BufferWriter>();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#fromJson(java
+	 * .lang.String, java.lang.reflect.Type)
+	 */
+	public <T> T fromJson(String json, Type typeOfT) {
+		if (json == null) {
+			return null;
+		}
+		return fromJson(new StringReader(json), typeOfT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#fromJson(java
+	 * .io.Reader, java.lang.reflect.Type)
+	 */
+	public <T> T fromJson(Reader json, Type typeOfT) {
+		JsonReader reader = new JsonReader(json);
+		// Same leniency as Gson.
+		reader.setLenient(true);
+		boolean empty = true;
+		try {
+			reader.peek();
+			empty = false;
+			TypeAdapter<T> adapter = getAdapter(typeOfT);
+			T result = adapter.read(reader);
+			if (reader.peek() != JsonToken.END_DOCUMENT) {
+				throw new JsonIOException("JSON document was not fully consumed.");
+			}
+			return result;
+		} catch (EOFException e) {
+			// An empty document is read as null, like Gson does.
+			if (empty) {
+				return null;
+			}
+			throw new JsonSyntaxException(e);
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#toJson(java
+	 * .lang.Object)
+	 */
+	public String toJson(Object src) {
+		if (src == null) {
+			return "null";
+		}
+		BufferWriter buffer = this.buffers.get();
+		if (buffer == null) {
+			buffer = new BufferWriter();
+			this.buffers.set(buffer);
+		}
+		buffer.builder.setLength(0);
+		try {
+			toJson(src, buffer);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		String json = buffer.builder.toString();
+		if (buffer.builder.capacity() > MAX_RETAINED_BUFFER) {
+			this.buffers.remove();
+		}
+		return json;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.JsonCodec#toJson(java
+	 * .lang.Object, java.io.Writer)
+	 */
+	public void toJson(Object src, Writer writer) throws IOException {
+		JsonWriter jsonWriter = new JsonWriter(writer);
+		jsonWriter.setLenient(true);
+		jsonWriter.setSerializeNulls(false);
+		if (src == null) {
+			jsonWriter.nullValue();
+		} else {
+			TypeAdapter<Object> adapter = getAdapter(src.getClass());
+			adapter.write(jsonWriter, src);
+		}
+		jsonWriter.flush();
+	}
+
+	/**
+	 * Gets the type adapter for a type, resolving it on first use.
+	 *
+	 * @param <T>
+	 *            the generic type.
+	 * @param type
+	 *            the type to handle.
+	 * @return the type adapter.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> TypeAdapter<T> getAdapter(Type type) {
+		TypeAdapter<?> adapter = this.adapters.get(type);
+		if (adapter == null) {
+			adapter = this.gson.getAdapter(TypeToken.get(type));
+			this.adapters.putIfAbsent(type, adapter);
+		}
+		return (TypeAdapter<T>) adapter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "StreamingJsonCodec [adapters=" + adapters.size() + "]";
+	}
+
+	/**
+	 * Unsynchronized writer which appends to a reusable buffer.
+	 */
+	private static class BufferWriter extends Writer {
+
+		/**
+		 * The buffer written.
+		 */
+		private final StringBuilder builder = new StringBuilder(1024);
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#write(char[], int, int)
+		 */
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			this.builder.append(cbuf, off, len);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#write(int)
+		 */
+		@Override
+		public void write(int c) {
+			this.builder.append((char) c);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#write(java.lang.String, int, int)
+		 */
+		@Override
+		public void write(String str, int off, int len) {
+			this.builder.append(str, off, off + len);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#flush()
+		 */
+		@Override
+		public void flush() {
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#close()
+		 */
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
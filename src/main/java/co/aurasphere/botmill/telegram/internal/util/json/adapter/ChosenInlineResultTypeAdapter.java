@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+
+import co.aurasphere.botmill.telegram.model.Location;
+import co.aurasphere.botmill.telegram.model.User;
+import co.aurasphere.botmill.telegram.model.inline.ChosenInlineResult;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reflection-free adapter which reads a {@link ChosenInlineResult}.
+ *
+ * @author Donato Rimenti
+ */
+class ChosenInlineResultTypeAdapter extends ModelTypeAdapter<ChosenInlineResult> {
+
+	/**
+	 * The adapter for {@link User}.
+	 */
+	private final TypeAdapter<User> userAdapter;
+
+	/**
+	 * The adapter for {@link Location}.
+	 */
+	private final TypeAdapter<Location> locationAdapter;
+
+	/**
+	 * Instantiates a new ChosenInlineResultTypeAdapter.
+	 *
+	 * @param gson
+	 *            the Gson instance which provides the nested adapters.
+	 * @param delegate
+	 *            the reflective adapter, used for writing.
+	 */
+	ChosenInlineResultTypeAdapter(Gson gson, TypeAdapter<ChosenInlineResult> delegate) {
+		super(delegate);
+		this.userAdapter = gson.getAdapter(User.class);
+		this.locationAdapter = gson.getAdapter(Location.class);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #newInstance()
+	 */
+	@Override
+	protected ChosenInlineResult newInstance() {
+		return new ChosenInlineResult();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #readField(com.google.gson.stream.JsonReader, java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	protected boolean readField(JsonReader in, String name, ChosenInlineResult result)
+			throws IOException {
+		switch (name) {
+		case "result_id":
+			result.setResultId(in.nextString());
+			break;
+		case "from":
+			result.setFrom(this.userAdapter.read(in));
+			break;
+		case "location":
+			result.setLocation(this.locationAdapter.read(in));
+			break;
+		case "inline_message_id":
+			result.setInlineMessageId(in.nextString());
+			break;
+		case "query":
+			result.setQuery(in.nextString());
+			break;
+		default:
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ChosenInlineResultTypeAdapter []";
+	}
+
+}
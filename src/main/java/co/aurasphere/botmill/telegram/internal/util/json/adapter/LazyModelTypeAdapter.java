@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import co.aurasphere.botmill.telegram.model.LazyMessage;
+import co.aurasphere.botmill.telegram.model.update.LazyUpdate;
+
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Adapter for the lazily decoded model objects, {@link LazyUpdate} and
+ * {@link LazyMessage}. They are written by the adapter of the model class
+ * they extend, which decodes all their fields first, and read back as lazy
+ * objects over their raw JSON.
+ *
+ * @param <T>
+ *            the type of the lazy model object.
+ * @author Donato Rimenti
+ */
+class LazyModelTypeAdapter<T> extends TypeAdapter<T> {
+
+	/**
+	 * The charset of the raw JSON of the lazy objects.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The lazy class handled.
+	 */
+	private final Class<T> type;
+
+	/**
+	 * The adapter of the model class extended by {@link #type}, used for
+	 * writing.
+	 */
+	private final TypeAdapter<? super T> modelAdapter;
+
+	/**
+	 * The adapter which reads the raw JSON.
+	 */
+	private final TypeAdapter<JsonElement> jsonAdapter;
+
+	/**
+	 * Instantiates a new LazyModelTypeAdapter.
+	 *
+	 * @param type
+	 *            the {@link #type}.
+	 * @param modelAdapter
+	 *            the {@link #modelAdapter}.
+	 * @param jsonAdapter
+	 *            the {@link #jsonAdapter}.
+	 */
+	LazyModelTypeAdapter(Class<T> type, TypeAdapter<? super T> modelAdapter,
+			TypeAdapter<JsonElement> jsonAdapter) {
+		this.type = type;
+		this.modelAdapter = modelAdapter;
+		this.jsonAdapter = jsonAdapter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	public T read(JsonReader in) throws IOException {
+		JsonElement json = this.jsonAdapter.read(in);
+		if (json == null || json.isJsonNull()) {
+			return null;
+		}
+		byte[] raw = json.toString().getBytes(UTF_8);
+		if (this.type == LazyUpdate.class) {
+			return this.type.cast(new LazyUpdate(raw));
+		}
+		return this.type.cast(new LazyMessage(raw, 0));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter,
+	 * java.lang.Object)
+	 */
+	@Override
+	public void write(JsonWriter out, T value) throws IOException {
+		this.modelAdapter.write(out, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "LazyModelTypeAdapter [type=" + type + "]";
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+
+import co.aurasphere.botmill.telegram.model.Location;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reflection-free adapter which reads a {@link Location}.
+ *
+ * @author Donato Rimenti
+ */
+class LocationTypeAdapter extends ModelTypeAdapter<Location> {
+
+	/**
+	 * Instantiates a new LocationTypeAdapter.
+	 *
+	 * @param delegate
+	 *            the reflective adapter, used for writing.
+	 */
+	LocationTypeAdapter(TypeAdapter<Location> delegate) {
+		super(delegate);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #newInstance()
+	 */
+	@Override
+	protected Location newInstance() {
+		return new Location();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #readField(com.google.gson.stream.JsonReader, java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	protected boolean readField(JsonReader in, String name, Location location)
+			throws IOException {
+		switch (name) {
+		case "longitude":
+			location.setLongitude(in.nextDouble());
+			break;
+		case "latitude":
+			location.setLatitude(in.nextDouble());
+			break;
+		default:
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "LocationTypeAdapter []";
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+
+import co.aurasphere.botmill.telegram.model.MentionType;
+import co.aurasphere.botmill.telegram.model.MessageEntity;
+import co.aurasphere.botmill.telegram.model.User;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reflection-free adapter which reads a {@link MessageEntity}.
+ *
+ * @author Donato Rimenti
+ */
+class MessageEntityTypeAdapter extends ModelTypeAdapter<MessageEntity> {
+
+	/**
+	 * The adapter for {@link MentionType}.
+	 */
+	private final TypeAdapter<MentionType> mentionTypeAdapter;
+
+	/**
+	 * The adapter for {@link User}.
+	 */
+	private final TypeAdapter<User> userAdapter;
+
+	/**
+	 * Instantiates a new MessageEntityTypeAdapter.
+	 *
+	 * @param gson
+	 *            the Gson instance which provides the nested adapters.
+	 * @param delegate
+	 *            the reflective adapter, used for writing.
+	 */
+	MessageEntityTypeAdapter(Gson gson, TypeAdapter<MessageEntity> delegate) {
+		super(delegate);
+		this.mentionTypeAdapter = gson.getAdapter(MentionType.class);
+		this.userAdapter = gson.getAdapter(User.class);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #newInstance()
+	 */
+	@Override
+	protected MessageEntity newInstance() {
+		return new MessageEntity();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #readField(com.google.gson.stream.JsonReader, java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	protected boolean readField(JsonReader in, String name, MessageEntity entity)
+			throws IOException {
+		switch (name) {
+		case "type":
+			entity.setType(this.mentionTypeAdapter.read(in));
+			break;
+		case "offset":
+			entity.setOffset(in.nextInt());
+			break;
+		case "length":
+			entity.setLength(in.nextInt());
+			break;
+		case "url":
+			entity.setUrl(in.nextString());
+			break;
+		case "user":
+			entity.setUser(this.userAdapter.read(in));
+			break;
+		default:
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MessageEntityTypeAdapter []";
+	}
+
+}
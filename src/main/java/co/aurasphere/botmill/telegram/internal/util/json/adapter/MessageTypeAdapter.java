@@ -0,0 +1,307 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+
+import co.aurasphere.botmill.telegram.model.Audio;
+import co.aurasphere.botmill.telegram.model.Chat;
+import co.aurasphere.botmill.telegram.model.Contact;
+import co.aurasphere.botmill.telegram.model.Document;
+import co.aurasphere.botmill.telegram.model.LazyMessage;
+import co.aurasphere.botmill.telegram.model.Location;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.MessageEntity;
+import co.aurasphere.botmill.telegram.model.PhotoSize;
+import co.aurasphere.botmill.telegram.model.Sticker;
+import co.aurasphere.botmill.telegram.model.User;
+import co.aurasphere.botmill.telegram.model.Venue;
+import co.aurasphere.botmill.telegram.model.Video;
+import co.aurasphere.botmill.telegram.model.Voice;
+import co.aurasphere.botmill.telegram.model.game.Game;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reflection-free adapter which reads a {@link Message}.
+ *
+ * @author Donato Rimenti
+ */
+class MessageTypeAdapter extends ModelTypeAdapter<Message> {
+
+	/**
+	 * The adapter for {@link User}.
+	 */
+	private final TypeAdapter<User> userAdapter;
+
+	/**
+	 * The adapter for {@link Chat}.
+	 */
+	private final TypeAdapter<Chat> chatAdapter;
+
+	/**
+	 * The adapter for {@link MessageEntity}.
+	 */
+	private final TypeAdapter<MessageEntity> messageEntityAdapter;
+
+	/**
+	 * The adapter for {@link Audio}.
+	 */
+	private final TypeAdapter<Audio> audioAdapter;
+
+	/**
+	 * The adapter for {@link Document}.
+	 */
+	private final TypeAdapter<Document> documentAdapter;
+
+	/**
+	 * The adapter for {@link Game}.
+	 */
+	private final TypeAdapter<Game> gameAdapter;
+
+	/**
+	 * The adapter for {@link PhotoSize}.
+	 */
+	private final TypeAdapter<PhotoSize> photoSizeAdapter;
+
+	/**
+	 * The adapter for {@link Sticker}.
+	 */
+	private final TypeAdapter<Sticker> stickerAdapter;
+
+	/**
+	 * The adapter for {@link Video}.
+	 */
+	private final TypeAdapter<Video> videoAdapter;
+
+	/**
+	 * The adapter for {@link Voice}.
+	 */
+	private final TypeAdapter<Voice> voiceAdapter;
+
+	/**
+	 * The adapter for {@link Contact}.
+	 */
+	private final TypeAdapter<Contact> contactAdapter;
+
+	/**
+	 * The adapter for {@link Location}.
+	 */
+	private final TypeAdapter<Location> locationAdapter;
+
+	/**
+	 * The adapter for {@link Venue}.
+	 */
+	private final TypeAdapter<Venue> venueAdapter;
+
+	/**
+	 * Instantiates a new MessageTypeAdapter.
+	 *
+	 * @param gson
+	 *            the Gson instance which provides the nested adapters.
+	 * @param delegate
+	 *            the reflective adapter, used for writing.
+	 */
+	MessageTypeAdapter(Gson gson, TypeAdapter<Message> delegate) {
+		super(delegate);
+		this.userAdapter = gson.getAdapter(User.class);
+		this.chatAdapter = gson.getAdapter(Chat.class);
+		this.messageEntityAdapter = gson.getAdapter(MessageEntity.class);
+		this.audioAdapter = gson.getAdapter(Audio.class);
+		this.documentAdapter = gson.getAdapter(Document.class);
+		this.gameAdapter = gson.getAdapter(Game.class);
+		this.photoSizeAdapter = gson.getAdapter(PhotoSize.class);
+		this.stickerAdapter = gson.getAdapter(Sticker.class);
+		this.videoAdapter = gson.getAdapter(Video.class);
+		this.voiceAdapter = gson.getAdapter(Voice.class);
+		this.contactAdapter = gson.getAdapter(Contact.class);
+		this.locationAdapter = gson.getAdapter(Location.class);
+		this.venueAdapter = gson.getAdapter(Venue.class);
+	}
+
+	/**
+	 * Writes a {@link Message}, decoding first all the fields of a
+	 * {@link LazyMessage}, which would be missing otherwise.
+	 *
+	 * @param out
+	 *            the writer.
+	 * @param value
+	 *            the value to write.
+	 * @throws IOException
+	 *             if the value couldn't be written.
+	 */
+	@Override
+	public void write(JsonWriter out, Message value) throws IOException {
+		if (value instanceof LazyMessage) {
+			((LazyMessage) value).materialize();
+		}
+		super.write(out, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #newInstance()
+	 */
+	@Override
+	protected Message newInstance() {
+		return new Message();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #readField(com.google.gson.stream.JsonReader, java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	protected boolean readField(JsonReader in, String name, Message message)
+			throws IOException {
+		switch (name) {
+		case "message_id":
+			message.setMessageId(in.nextString());
+			break;
+		case "from":
+			message.setFrom(this.userAdapter.read(in));
+			break;
+		case "date":
+			message.setDateEpochSecond(in.nextLong());
+			break;
+		case "chat":
+			message.setChat(this.chatAdapter.read(in));
+			break;
+		case "forward_from":
+			message.setForwardFrom(this.userAdapter.read(in));
+			break;
+		case "forward_from_chat":
+			message.setForwardFromChat(this.chatAdapter.read(in));
+			break;
+		case "forward_from_message_id":
+			message.setForwardFromMessageId(in.nextString());
+			break;
+		case "forward_date":
+			message.setForwardDateEpochSecond(in.nextLong());
+			break;
+		case "reply_to_message":
+			message.setReplyToMessage(read(in));
+			break;
+		case "edit_date":
+			message.setEditDateEpochSecond(in.nextLong());
+			break;
+		case "text":
+			message.setText(in.nextString());
+			break;
+		case "entities":
+			message.setEntities(readList(in, this.messageEntityAdapter));
+			break;
+		case "audio":
+			message.setAudio(this.audioAdapter.read(in));
+			break;
+		case "document":
+			message.setDocument(this.documentAdapter.read(in));
+			break;
+		case "game":
+			message.setGame(this.gameAdapter.read(in));
+			break;
+		case "photo":
+			message.setPhoto(readList(in, this.photoSizeAdapter));
+			break;
+		case "sticker":
+			message.setSticker(this.stickerAdapter.read(in));
+			break;
+		case "video":
+			message.setVideo(this.videoAdapter.read(in));
+			break;
+		case "voice":
+			message.setVoice(this.voiceAdapter.read(in));
+			break;
+		case "caption":
+			message.setCaption(in.nextString());
+			break;
+		case "contact":
+			message.setContact(this.contactAdapter.read(in));
+			break;
+		case "location":
+			message.setLocation(this.locationAdapter.read(in));
+			break;
+		case "venue":
+			message.setVenue(this.venueAdapter.read(in));
+			break;
+		case "new_chat_member":
+			message.setNewChatMember(this.userAdapter.read(in));
+			break;
+		case "left_chat_member":
+			message.setLeftChatMember(this.userAdapter.read(in));
+			break;
+		case "new_chat_title":
+			message.setNewChatTitle(in.nextString());
+			break;
+		case "new_chat_photo":
+			message.setNewChatPhoto(readList(in, this.photoSizeAdapter));
+			break;
+		case "delete_chat_photo":
+			message.setDeleteChatPhoto(in.nextBoolean());
+			break;
+		case "group_chat_created":
+			message.setGroupChatCreated(in.nextBoolean());
+			break;
+		case "supergroup_chat_created":
+			message.setSupergroupChatCreated(in.nextBoolean());
+			break;
+		case "channel_chat_created":
+			message.setChannelChatCreated(in.nextBoolean());
+			break;
+		case "migrate_to_chat_id":
+			message.setMigrateToChatId(in.nextString());
+			break;
+		case "migrate_from_chat_id":
+			message.setMigrateFromChatId(in.nextString());
+			break;
+		case "pinned_message":
+			message.setPinnedMessage(read(in));
+			break;
+		default:
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MessageTypeAdapter []";
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Base class for the adapters which read the model objects received from
+ * Telegram without going through reflection: fields are matched by name and
+ * set through their setters. Unknown fields are skipped. Writing is delegated
+ * to the reflective adapter, since these objects are only ever sent back for
+ * debugging purposes.
+ *
+ * @param <T>
+ *            the type of the model object.
+ * @author Donato Rimenti
+ */
+abstract class ModelTypeAdapter<T> extends TypeAdapter<T> {
+
+	/**
+	 * The reflective adapter, used for writing.
+	 */
+	private final TypeAdapter<T> delegate;
+
+	/**
+	 * Instantiates a new ModelTypeAdapter.
+	 *
+	 * @param delegate
+	 *            the {@link #delegate}.
+	 */
+	ModelTypeAdapter(TypeAdapter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	public T read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		T instance = newInstance();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			// Null values leave the field to its default, like Gson does.
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (!readField(in, name, instance)) {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return instance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter,
+	 * java.lang.Object)
+	 */
+	@Override
+	public void write(JsonWriter out, T value) throws IOException {
+		this.delegate.write(out, value);
+	}
+
+	/**
+	 * Creates an empty model object.
+	 *
+	 * @return a new model object.
+	 */
+	protected abstract T newInstance();
+
+	/**
+	 * Reads the value of a field into a model object.
+	 *
+	 * @param in
+	 *            the reader, positioned on the value of the field.
+	 * @param name
+	 *            the name of the field.
+	 * @param instance
+	 *            the model object.
+	 * @return true if the value has been read, false if the field is unknown.
+	 * @throws IOException
+	 *             if the value can't be read.
+	 */
+	protected abstract boolean readField(JsonReader in, String name,
+			T instance) throws IOException;
+
+	/**
+	 * Reads a JSON array.
+	 *
+	 * @param <E>
+	 *            the type of the elements.
+	 * @param in
+	 *            the reader, positioned on the array.
+	 * @param elementAdapter
+	 *            the adapter which reads the elements.
+	 * @return the elements of the array.
+	 * @throws IOException
+	 *             if the array can't be read.
+	 */
+	protected static <E> List<E> readList(JsonReader in,
+			TypeAdapter<E> elementAdapter) throws IOException {
+		List<E> list = new ArrayList<E>();
+		in.beginArray();
+		while (in.hasNext()) {
+			list.add(elementAdapter.read(in));
+		}
+		in.endArray();
+		return list;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import co.aurasphere.botmill.telegram.model.CallbackQuery;
+import co.aurasphere.botmill.telegram.model.Chat;
+import co.aurasphere.botmill.telegram.model.LazyMessage;
+import co.aurasphere.botmill.telegram.model.Location;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.MessageEntity;
+import co.aurasphere.botmill.telegram.model.PhotoSize;
+import co.aurasphere.botmill.telegram.model.User;
+import co.aurasphere.botmill.telegram.model.inline.ChosenInlineResult;
+import co.aurasphere.botmill.telegram.model.inline.InlineQuery;
+import co.aurasphere.botmill.telegram.model.update.LazyUpdate;
+import co.aurasphere.botmill.telegram.model.update.Update;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Factory of the reflection-free adapters for the model objects found in
+ * almost every update: the update itself, messages, users, chats, entities,
+ * photos, callback and inline queries. The other model classes keep using
+ * the reflective adapters of Gson. Only the exact classes are handled, so
+ * subclasses of the model are not affected, except for the lazily decoded
+ * {@link LazyUpdate} and {@link LazyMessage}, which must be decoded before
+ * being written.
+ *
+ * @author Donato Rimenti
+ */
+public class ModelTypeAdapterFactory implements TypeAdapterFactory {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.google.gson.TypeAdapterFactory#create(com.google.gson.Gson,
+	 * com.google.gson.reflect.TypeToken)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> rawType = type.getRawType();
+		if (rawType == Update.class) {
+			return (TypeAdapter<T>) new UpdateTypeAdapter(gson,
+					delegate(gson, Update.class));
+		}
+		if (rawType == LazyUpdate.class) {
+			return (TypeAdapter<T>) new LazyModelTypeAdapter<LazyUpdate>(
+					LazyUpdate.class, gson.getAdapter(Update.class),
+					gson.getAdapter(JsonElement.class));
+		}
+		if (rawType == Message.class) {
+			return (TypeAdapter<T>) new MessageTypeAdapter(gson,
+					delegate(gson, Message.class));
+		}
+		if (rawType == LazyMessage.class) {
+			return (TypeAdapter<T>) new LazyModelTypeAdapter<LazyMessage>(
+					LazyMessage.class, gson.getAdapter(Message.class),
+					gson.getAdapter(JsonElement.class));
+		}
+		if (rawType == User.class) {
+			return (TypeAdapter<T>) new UserTypeAdapter(delegate(gson,
+					User.class));
+		}
+		if (rawType == Chat.class) {
+			return (TypeAdapter<T>) new ChatTypeAdapter(gson, delegate(gson,
+					Chat.class));
+		}
+		if (rawType == MessageEntity.class) {
+			return (TypeAdapter<T>) new MessageEntityTypeAdapter(gson,
+					delegate(gson, MessageEntity.class));
+		}
+		if (rawType == PhotoSize.class) {
+			return (TypeAdapter<T>) new PhotoSizeTypeAdapter(delegate(gson,
+					PhotoSize.class));
+		}
+		if (rawType == CallbackQuery.class) {
+			return (TypeAdapter<T>) new CallbackQueryTypeAdapter(gson,
+					delegate(gson, CallbackQuery.class));
+		}
+		if (rawType == InlineQuery.class) {
+			return (TypeAdapter<T>) new InlineQueryTypeAdapter(gson,
+					delegate(gson, InlineQuery.class));
+		}
+		if (rawType == ChosenInlineResult.class) {
+			return (TypeAdapter<T>) new ChosenInlineResultTypeAdapter(gson,
+					delegate(gson, ChosenInlineResult.class));
+		}
+		if (rawType == Location.class) {
+			return (TypeAdapter<T>) new LocationTypeAdapter(delegate(gson,
+					Location.class));
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the adapter Gson would use for a class without this factory.
+	 *
+	 * @param <T>
+	 *            the type of the class.
+	 * @param gson
+	 *            the Gson instance.
+	 * @param type
+	 *            the class.
+	 * @return the reflective adapter of the class.
+	 */
+	private <T> TypeAdapter<T> delegate(Gson gson, Class<T> type) {
+		return gson.getDelegateAdapter(this, TypeToken.get(type));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ModelTypeAdapterFactory []";
+	}
+
+}
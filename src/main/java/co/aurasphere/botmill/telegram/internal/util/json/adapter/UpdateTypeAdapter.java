@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.json.adapter;
+
+import java.io.IOException;
+
+import co.aurasphere.botmill.telegram.model.CallbackQuery;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.inline.ChosenInlineResult;
+import co.aurasphere.botmill.telegram.model.inline.InlineQuery;
+import co.aurasphere.botmill.telegram.model.update.LazyUpdate;
+import co.aurasphere.botmill.telegram.model.update.Update;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reflection-free adapter which reads a {@link Update}.
+ *
+ * @author Donato Rimenti
+ */
+class UpdateTypeAdapter extends ModelTypeAdapter<Update> {
+
+	/**
+	 * The adapter for {@link Message}.
+	 */
+	private final TypeAdapter<Message> messageAdapter;
+
+	/**
+	 * The adapter for {@link InlineQuery}.
+	 */
+	private final TypeAdapter<InlineQuery> inlineQueryAdapter;
+
+	/**
+	 * The adapter for {@link ChosenInlineResult}.
+	 */
+	private final TypeAdapter<ChosenInlineResult> chosenInlineResultAdapter;
+
+	/**
+	 * The adapter for {@link CallbackQuery}.
+	 */
+	private final TypeAdapter<CallbackQuery> callbackQueryAdapter;
+
+	/**
+	 * Instantiates a new UpdateTypeAdapter.
+	 *
+	 * @param gson
+	 *            the Gson instance which provides the nested adapters.
+	 * @param delegate
+	 *            the reflective adapter, used for writing.
+	 */
+	UpdateTypeAdapter(Gson gson, TypeAdapter<Update> delegate) {
+		super(delegate);
+		this.messageAdapter = gson.getAdapter(Message.class);
+		this.inlineQueryAdapter = gson.getAdapter(InlineQuery.class);
+		this.chosenInlineResultAdapter = gson.getAdapter(ChosenInlineResult.class);
+		this.callbackQueryAdapter = gson.getAdapter(CallbackQuery.class);
+	}
+
+	/**
+	 * Writes a {@link Update}, decoding first all the fields of a
+	 * {@link LazyUpdate}, which would be missing otherwise.
+	 *
+	 * @param out
+	 *            the writer.
+	 * @param value
+	 *            the value to write.
+	 * @throws IOException
+	 *             if the value couldn't be written.
+	 */
+	@Override
+	public void write(JsonWriter out, Update value) throws IOException {
+		if (value instanceof LazyUpdate) {
+			((LazyUpdate) value).materialize();
+		}
+		super.write(out, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #newInstance()
+	 */
+	@Override
+	protected Update newInstance() {
+		return new Update();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapter
+	 * #readField(com.google.gson.stream.JsonReader, java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	protected boolean readField(JsonReader in, String name, Update update)
+			throws IOException {
+		switch (name) {
+		case "update_id":
+			update.setUpdateId(in.nextString());
+			break;
+		case "message":
+			update.setMessage(this.messageAdapter.read(in));
+			break;
+		case "edited_message":
+			update.setEditedMessage(this.messageAdapter.read(in));
+			break;
+		case "channel_post":
+			update.setChannelPost(this.messageAdapter.read(in));
+			break;
+		case "edited_channel_post":
+			update.setEditedChannelPost(this.messageAdapter.read(in));
+			break;
+		case "inline_query":
+			update.setInlineQuery(this.inlineQueryAdapter.read(in));
+			break;
+		case "chosen_inline_result":
+			update.setChosenInlineResult(
+					this.chosenInlineResultAdapter.read(in));
+			break;
+		case "callback_query":
+			update.setCallbackQuery(this.callbackQueryAdapter.read(in));
+			break;
+		default:
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UpdateTypeAdapter []";
+	}
+
+}
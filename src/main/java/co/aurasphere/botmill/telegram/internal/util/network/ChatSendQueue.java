@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+
+/**
+ * Keeps the batches of requests queued for the same chat in order. The
+ * batches of a chat run one after the other on an executor, while the batches
+ * of different chats run in parallel. A thread about to send a request to a
+ * chat can wait for the batches queued before it, so that it doesn't overtake
+ * them.
+ *
+ * @author Donato Rimenti
+ */
+class ChatSendQueue {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(ChatSendQueue.class);
+
+	/**
+	 * The key used for the requests not addressed to a chat.
+	 */
+	private static final String NO_CHAT = "";
+
+	/**
+	 * The last batch queued for each chat which is not done yet, keyed by
+	 * chat ID.
+	 */
+	private final ConcurrentMap<String, CompletableFuture<Void>> tails;
+
+	/**
+	 * Instantiates a new ChatSendQueue.
+	 */
+	ChatSendQueue() {
+		this.tails = new ConcurrentHashMap<String, CompletableFuture<Void>>();
+	}
+
+	/**
+	 * Queues a batch after the ones already queued for the same chat. The
+	 * batch is run by the asynchronous executor of the
+	 * {@link TelegramBotMillContext}, or by the thread completing the previous
+	 * batch if the executor has been shut down meanwhile.
+	 *
+	 * @param chatId
+	 *            the chat of the batch, can be null.
+	 * @param batch
+	 *            the batch to run. Its errors are logged and don't stop the
+	 *            following batches.
+	 * @return a future which completes once the batch has run.
+	 */
+	CompletableFuture<Void> enqueue(String chatId, final Runnable batch) {
+		final String key = chatId != null ? chatId : NO_CHAT;
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		CompletableFuture<Void> previous = this.tails.put(key, done);
+		if (previous == null) {
+			previous = CompletableFuture.completedFuture(null);
+		}
+		previous.whenComplete(new BiConsumer<Void, Throwable>() {
+			public void accept(Void result, Throwable error) {
+				Runnable task = new Runnable() {
+					public void run() {
+						try {
+							batch.run();
+						} catch (RuntimeException e) {
+							logger.error("Error while sending a batch to chat "
+									+ key + ": ", e);
+						} finally {
+							tails.remove(key, done);
+							done.complete(null);
+						}
+					}
+				};
+				// A task submitted to an executor being shut down may be
+				// discarded, leaving the chat blocked.
+				ExecutorService executor = TelegramBotMillContext
+						.getInstance().getAsyncExecutor();
+				try {
+					if (!executor.isShutdown()) {
+						executor.execute(task);
+						return;
+					}
+				} catch (RejectedExecutionException e) {
+					// Runs the task below.
+				}
+				task.run();
+			}
+		});
+		return done;
+	}
+
+	/**
+	 * Waits until all the batches queued so far for a chat have run.
+	 *
+	 * @param chatId
+	 *            the chat, can be null.
+	 */
+	void await(String chatId) {
+		CompletableFuture<Void> tail = this.tails.get(chatId != null ? chatId
+				: NO_CHAT);
+		if (tail != null) {
+			tail.join();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ChatSendQueue [pendingChats=" + tails.size() + "]";
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import co.aurasphere.botmill.telegram.support.network.HttpClientOptions;
+
+/**
+ * Factory which builds the long-lived, pooled HTTP client used to communicate
+ * with Telegram.
+ *
+ * @author Donato Rimenti
+ */
+public class HttpClientFactory {
+
+	/**
+	 * Instantiates a new HttpClientFactory.
+	 */
+	private HttpClientFactory() {
+	}
+
+	/**
+	 * Builds a new pooled HTTP client. Connections are kept alive and reused
+	 * across requests, so that the TCP and TLS handshakes with Telegram are
+	 * paid only once per connection. Idle and expired connections are evicted
+	 * by a background thread owned by the client, which is stopped when the
+	 * client is closed.
+	 *
+	 * @param options
+	 *            the options of the client to build.
+	 * @return a new {@link CloseableHttpClient}.
+	 */
+	public static CloseableHttpClient create(HttpClientOptions options) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(options.getMaxConnectionsTotal());
+		connectionManager.setDefaultMaxPerRoute(options
+				.getMaxConnectionsPerRoute());
+		connectionManager.setValidateAfterInactivity(options
+				.getValidateAfterInactivity());
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(options.getConnectTimeout())
+				.setSocketTimeout(options.getSocketTimeout())
+				.setConnectionRequestTimeout(
+						options.getConnectionRequestTimeout()).build();
+
+		return HttpClients
+				.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(
+						new DefaultKeepAliveStrategy(options.getKeepAlive()))
+				.evictExpiredConnections()
+				.evictIdleConnections(options.getMaxIdleTime(),
+						TimeUnit.MILLISECONDS).build();
+	}
+
+	/**
+	 * Keep-alive strategy which honors the Keep-Alive header sent by the
+	 * server and falls back to a default duration otherwise.
+	 */
+	private static class DefaultKeepAliveStrategy implements
+			ConnectionKeepAliveStrategy {
+
+		/**
+		 * The keep-alive duration in milliseconds to use when the server
+		 * doesn't send one.
+		 */
+		private final long defaultKeepAlive;
+
+		/**
+		 * Instantiates a new DefaultKeepAliveStrategy.
+		 *
+		 * @param defaultKeepAlive
+		 *            the {@link #defaultKeepAlive}.
+		 */
+		public DefaultKeepAliveStrategy(long defaultKeepAlive) {
+			this.defaultKeepAlive = defaultKeepAlive;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * org.apache.http.conn.ConnectionKeepAliveStrategy#getKeepAliveDuration
+		 * (org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
+		 */
+		public long getKeepAliveDuration(HttpResponse response,
+				HttpContext context) {
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+					.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : this.defaultKeepAlive;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HttpClientFactory []";
+	}
+
+}
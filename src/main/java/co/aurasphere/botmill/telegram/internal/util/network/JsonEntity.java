@@ -0,0 +1,275 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+
+/**
+ * Entity which serializes an object as JSON straight into the HTTP body. The
+ * JSON is encoded into a pooled buffer when the client asks for the content
+ * length, then written to the connection and the buffer goes back to the
+ * pool. Compared to a {@link org.apache.http.entity.StringEntity}, neither a
+ * String nor a second byte array is created for each request, and the JSON is
+ * decoded again for logging only when debug is enabled.
+ *
+ * @author Donato Rimenti
+ */
+class JsonEntity extends AbstractHttpEntity {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(JsonEntity.class);
+
+	/**
+	 * The UTF-8 charset.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The maximum number of buffers kept in the pool.
+	 */
+	private static final int POOL_SIZE = 64;
+
+	/**
+	 * The largest buffer put back in the pool, in bytes. Larger buffers are
+	 * left to the garbage collector, so that a few big requests don't pin
+	 * memory.
+	 */
+	private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+	/**
+	 * The buffers not in use.
+	 */
+	private static final BlockingQueue<Buffer> pool = new ArrayBlockingQueue<Buffer>(
+			POOL_SIZE);
+
+	/**
+	 * The object to send.
+	 */
+	private final Object source;
+
+	/**
+	 * The JSON of the {@link #source}, null until the entity is serialized or
+	 * once it has been written.
+	 */
+	private Buffer json;
+
+	/**
+	 * Instantiates a new JsonEntity.
+	 *
+	 * @param source
+	 *            the {@link #source}.
+	 */
+	JsonEntity(Object source) {
+		this.source = source;
+		setContentType("application/json");
+	}
+
+	/**
+	 * Serializes the {@link #source} if not done yet.
+	 *
+	 * @return the buffer holding the JSON.
+	 * @throws IOException
+	 *             if the object couldn't be serialized.
+	 */
+	private Buffer serialize() throws IOException {
+		if (this.json == null) {
+			Buffer buffer = pool.poll();
+			if (buffer == null) {
+				buffer = new Buffer();
+			}
+			try {
+				TelegramBotMillContext.getInstance().getJsonCodec()
+						.toJson(this.source, buffer.writer);
+				buffer.writer.flush();
+			} catch (RuntimeException e) {
+				// The buffer is dropped since its writer may hold leftovers.
+				throw new IOException("Error during JSON message creation", e);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Request: {}", buffer.toString(UTF_8.name()));
+			}
+			this.json = buffer;
+		}
+		return this.json;
+	}
+
+	/**
+	 * Puts a buffer back in the pool.
+	 *
+	 * @param buffer
+	 *            the buffer to release.
+	 */
+	private static void release(Buffer buffer) {
+		if (buffer.capacity() <= MAX_POOLED_CAPACITY) {
+			buffer.reset();
+			pool.offer(buffer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.HttpEntity#isRepeatable()
+	 */
+	public boolean isRepeatable() {
+		// The object is serialized again if needed.
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.HttpEntity#getContentLength()
+	 */
+	public long getContentLength() {
+		try {
+			return serialize().size();
+		} catch (IOException e) {
+			logger.error("Error during JSON message creation: ", e);
+			// Unknown length, the error is raised again when writing.
+			return -1;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.HttpEntity#getContent()
+	 */
+	public InputStream getContent() throws IOException {
+		Buffer buffer = serialize();
+		return new ByteArrayInputStream(buffer.toByteArray());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.HttpEntity#writeTo(java.io.OutputStream)
+	 */
+	public void writeTo(OutputStream outstream) throws IOException {
+		Buffer buffer = serialize();
+		this.json = null;
+		try {
+			buffer.writeTo(outstream);
+			outstream.flush();
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.HttpEntity#isStreaming()
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.http.entity.AbstractHttpEntity#toString()
+	 */
+	@Override
+	public String toString() {
+		return "JsonEntity [source=" + source + "]";
+	}
+
+	/**
+	 * A reusable byte buffer with a UTF-8 writer over it. Not synchronized,
+	 * since a buffer is used by a single entity at a time.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+
+		/**
+		 * The writer which encodes the JSON into this buffer. It's kept with
+		 * the buffer since it holds a buffer of its own.
+		 */
+		private final Writer writer;
+
+		/**
+		 * Instantiates a new Buffer.
+		 */
+		Buffer() {
+			super(1024);
+			this.writer = new OutputStreamWriter(this, UTF_8);
+		}
+
+		/**
+		 * Gets the size of the underlying array.
+		 *
+		 * @return the capacity of this buffer.
+		 */
+		int capacity() {
+			return this.buf.length;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.ByteArrayOutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (this.count + len > this.buf.length) {
+				this.buf = Arrays.copyOf(this.buf,
+						Math.max(this.buf.length << 1, this.count + len));
+			}
+			System.arraycopy(b, off, this.buf, this.count, len);
+			this.count += len;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.ByteArrayOutputStream#writeTo(java.io.OutputStream)
+		 */
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(this.buf, 0, this.count);
+		}
+
+	}
+
+}
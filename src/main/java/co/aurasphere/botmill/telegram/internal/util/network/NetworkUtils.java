@@ -23,28 +23,43 @@
  */
 package co.aurasphere.botmill.telegram.internal.util.network;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
 import co.aurasphere.botmill.telegram.TelegramBotMillContext;
 import co.aurasphere.botmill.telegram.internal.util.json.JsonUtils;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+import co.aurasphere.botmill.telegram.model.Message;
 import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillBaseMethodDTO;
 import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
+import co.aurasphere.botmill.telegram.model.outcoming.response.PreparedResponse;
 import co.aurasphere.botmill.telegram.support.TelegramBotMillMonitor;
 
 /**
@@ -67,12 +82,34 @@ public class NetworkUtils {
 	private static final Logger logger = LoggerFactory
 			.getLogger(NetworkUtils.class);
 
+	/**
+	 * The UTF-8 charset.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	/**
 	 * The registered monitors to the {@link TelegramBotMillContext}.
 	 */
 	private static final List<TelegramBotMillMonitor> registeredMonitors = TelegramBotMillContext
 			.getInstance().getRegisteredMonitors();
 
+	/**
+	 * The type of the response to the methods which send a message.
+	 */
+	private static final Type MESSAGE_RESPONSE_TYPE = new TypeToken<ApiResponse<Message>>() {
+	}.getType();
+
+	/**
+	 * The type of a response whose result is left unparsed.
+	 */
+	private static final Type RAW_RESULT_RESPONSE_TYPE = new TypeToken<ApiResponse<JsonElement>>() {
+	}.getType();
+
+	/**
+	 * The queue which keeps the batches sent to the same chat in order.
+	 */
+	private static final ChatSendQueue chatSendQueue = new ChatSendQueue();
+
 	/**
 	 * POSTs a message as a JSON string to Telegram.
 	 * 
@@ -82,115 +119,398 @@ public class NetworkUtils {
 	 *            the Telegram method to call.
 	 */
 	public static void postJsonMessage(StringEntity input, TelegramMethod method) {
-		String botToken = TelegramBotMillContext.getInstance().getBotToken();
-		// If the page token is invalid, returns.
+		send(buildPost(input, method));
+	}
+
+	/**
+	 * POSTs a message as a JSON string to Telegram. If Telegram asks to retry
+	 * the request later, the retry is carried out asynchronously. The message
+	 * is sent after the batches already queued for the same chat through
+	 * {@link #postJsonMessages(List)}. If the target group has been migrated
+	 * to a supergroup, the chat ID of the input is replaced by the new one
+	 * before sending it again.
+	 * 
+	 * @param input
+	 *            the data to send.
+	 */
+	public static void postJsonMessage(TelegramBotMillBaseMethodDTO input) {
+		chatSendQueue.await(getChatId(input));
+		new OutboundRequest<JsonElement>(input, RAW_RESULT_RESPONSE_TYPE)
+				.sendSync();
+	}
+
+	/**
+	 * POSTs a batch of messages to Telegram without blocking the calling
+	 * thread. The messages to each chat are sent one at a time by a single
+	 * thread of the asynchronous executor, reusing the same pooled
+	 * connection, after the batches already queued for that chat. Each
+	 * message, retries included, is done before the next one is sent, so the
+	 * messages reach the chat in order even under flood control. The messages
+	 * to different chats are sent in parallel. If a target group has been
+	 * migrated to a supergroup, the chat ID of the message is replaced by the
+	 * new one before sending it again.
+	 * 
+	 * @param inputs
+	 *            the messages to send, in order.
+	 * @return a future which completes once all the messages are done, or
+	 *         completes exceptionally with the first error if any message
+	 *         couldn't be sent. A message rejected by Telegram, retries
+	 *         included, is reported as a {@link TelegramApiException}.
+	 */
+	public static CompletableFuture<Void> postJsonMessages(
+			List<? extends TelegramBotMillBaseMethodDTO> inputs) {
+		Map<String, List<TelegramBotMillBaseMethodDTO>> batches = new LinkedHashMap<String, List<TelegramBotMillBaseMethodDTO>>();
+		for (TelegramBotMillBaseMethodDTO input : inputs) {
+			String chatId = getChatId(input);
+			List<TelegramBotMillBaseMethodDTO> batch = batches.get(chatId);
+			if (batch == null) {
+				batch = new ArrayList<TelegramBotMillBaseMethodDTO>();
+				batches.put(chatId, batch);
+			}
+			batch.add(input);
+		}
+
+		CompletableFuture<?>[] sent = new CompletableFuture<?>[batches.size()];
+		int i = 0;
+		for (Map.Entry<String, List<TelegramBotMillBaseMethodDTO>> e : batches
+				.entrySet()) {
+			final List<TelegramBotMillBaseMethodDTO> batch = e.getValue();
+			final CompletableFuture<Void> batchSent = new CompletableFuture<Void>();
+			chatSendQueue.enqueue(e.getKey(), new Runnable() {
+				public void run() {
+					Throwable error = null;
+					try {
+						for (TelegramBotMillBaseMethodDTO input : batch) {
+							OutboundRequest<JsonElement> request = new OutboundRequest<JsonElement>(
+									input, RAW_RESULT_RESPONSE_TYPE);
+							request.sendBlocking();
+							if (error == null) {
+								error = errorOf(request.getFuture());
+							}
+						}
+					} catch (RuntimeException ex) {
+						error = ex;
+					} finally {
+						if (error != null) {
+							batchSent.completeExceptionally(error);
+						} else {
+							batchSent.complete(null);
+						}
+					}
+				}
+			});
+			sent[i++] = batchSent;
+		}
+		return CompletableFuture.allOf(sent);
+	}
+
+	/**
+	 * Gets the error of a request which is done: the error it completed
+	 * exceptionally with or, if Telegram didn't accept it, a
+	 * {@link TelegramApiException}.
+	 * 
+	 * @param future
+	 *            the future of the request.
+	 * @return the error of the request, null if it was successful.
+	 */
+	private static Throwable errorOf(
+			CompletableFuture<? extends ApiResponse<?>> future) {
+		ApiResponse<?> response;
+		try {
+			response = future.join();
+		} catch (CompletionException e) {
+			return e.getCause() != null ? e.getCause() : e;
+		} catch (CancellationException e) {
+			return e;
+		}
+		if (response == null) {
+			return new TelegramApiException(0,
+					"Unexpected response from Telegram.");
+		}
+		if (!response.isOk()) {
+			return new TelegramApiException(response.getErrorCode(),
+					response.getDescription());
+		}
+		return null;
+	}
+
+	/**
+	 * POSTs a message as a JSON string to Telegram without blocking the
+	 * calling thread. The request is sent by the executor held by the
+	 * {@link TelegramBotMillContext}. If the target group has been migrated
+	 * to a supergroup, the chat ID of the input is replaced by the new one
+	 * before sending it again. A retry still pending when the context is
+	 * shut down is discarded, completing the future with a
+	 * {@link CancellationException}.
+	 * 
+	 * @param input
+	 *            the message to send.
+	 * @return a future which completes with the response of Telegram, holding
+	 *         the sent {@link Message} if the request was successful, or
+	 *         completes exceptionally if the request couldn't be sent.
+	 */
+	public static CompletableFuture<ApiResponse<Message>> postJsonMessageAsync(
+			TelegramBotMillResponse input) {
+		return postJsonMessageAsync(input, MESSAGE_RESPONSE_TYPE);
+	}
+
+	/**
+	 * POSTs a message as a JSON string to Telegram without blocking the
+	 * calling thread. The request is sent by the executor held by the
+	 * {@link TelegramBotMillContext}. If the target group has been migrated
+	 * to a supergroup, the chat ID of the input is replaced by the new one
+	 * before sending it again. A retry still pending when the context is
+	 * shut down is discarded, completing the future with a
+	 * {@link CancellationException}.
+	 * 
+	 * @param <T>
+	 *            the type of the result of the called method.
+	 * @param input
+	 *            the data to send.
+	 * @param responseType
+	 *            the full type of the expected {@link ApiResponse}, usually
+	 *            obtained through a Gson {@link TypeToken}.
+	 * @return a future which completes with the response of Telegram or
+	 *         completes exceptionally if the request couldn't be sent.
+	 */
+	public static <T> CompletableFuture<ApiResponse<T>> postJsonMessageAsync(
+			TelegramBotMillBaseMethodDTO input, Type responseType) {
+		OutboundRequest<T> request = new OutboundRequest<T>(input,
+				responseType);
+		request.sendAsync();
+		return request.getFuture();
+	}
+
+	/**
+	 * Discards the requests waiting for a retry on the timer of the
+	 * {@link TelegramBotMillContext}, completing their futures exceptionally.
+	 * Called once the timer has been stopped, since those requests won't be
+	 * sent anymore.
+	 */
+	public static void discardPendingRetries() {
+		OutboundRequest.discardParkedRequests();
+	}
+
+	/**
+	 * Calls a Telegram method on the calling thread and parses its response.
+	 * The call bypasses the rate limiter and is not retried, so it's meant for
+	 * methods which don't send anything to a chat, like getUpdates.
+	 * 
+	 * @param <T>
+	 *            the type of the result of the called method.
+	 * @param input
+	 *            the data to send.
+	 * @param responseType
+	 *            the full type of the expected {@link ApiResponse}, usually
+	 *            obtained through a Gson {@link TypeToken}.
+	 * @return the response of Telegram.
+	 * @throws IOException
+	 *             if the request couldn't be sent.
+	 * @throws JsonParseException
+	 *             if the response is not a valid Telegram response.
+	 */
+	public static <T> ApiResponse<T> call(TelegramBotMillBaseMethodDTO input,
+			Type responseType) throws IOException {
+		RawResponse response = execute(buildPost(input), responseType);
+		if (response.getResponse() == null) {
+			throw new JsonParseException("Unexpected response from Telegram: "
+					+ response.getBody());
+		}
+		return response.getResponse();
+	}
+
+	/**
+	 * Gets the chat a request is addressed to, used to apply the per-chat
+	 * rate limits.
+	 * 
+	 * @param input
+	 *            the request.
+	 * @return the target chat ID or null if the request is not addressed to a
+	 *         chat.
+	 */
+	static String getChatId(TelegramBotMillBaseMethodDTO input) {
+		if (input instanceof TelegramBotMillResponse) {
+			return ((TelegramBotMillResponse) input).getChatId();
+		}
+		return null;
+	}
 
+	/**
+	 * Builds a POST request to a Telegram method.
+	 * 
+	 * @param input
+	 *            the data to send.
+	 * @return the request to send.
+	 */
+	static HttpPost buildPost(TelegramBotMillBaseMethodDTO input) {
+		if (input instanceof PreparedResponse) {
+			return buildPost(toByteArrayEntity((PreparedResponse) input),
+					input.getTelegramMethod());
+		}
+		return buildPost(new JsonEntity(input), input.getTelegramMethod());
+	}
+
+	/**
+	 * Builds a POST request to a Telegram method.
+	 * 
+	 * @param input
+	 *            the JSON data to send.
+	 * @param method
+	 *            the Telegram method to call.
+	 * @return the request to send.
+	 */
+	private static HttpPost buildPost(HttpEntity input, TelegramMethod method) {
+		String botToken = TelegramBotMillContext.getInstance().getBotToken();
 		HttpPost post = new HttpPost(BASE_TELEGRAM_ENDPOINT + botToken + "/"
 				+ method.getMethodName());
 		post.setEntity(input);
-		send(post);
+		return post;
 	}
 
 	/**
-	 * POSTs a message as a JSON string to Telegram.
+	 * Sends a request, logging any error.
 	 * 
-	 * @param input
-	 *            the data to send.
+	 * @param request
+	 *            the request to send
+	 * @return response the response or null if the request failed.
 	 */
-	public static void postJsonMessage(TelegramBotMillBaseMethodDTO input) {
-		StringEntity stringEntity = toStringEntity(input);
-		postJsonMessage(stringEntity, input.getTelegramMethod());
+	private static String send(HttpRequestBase request) {
+		try {
+			return execute(request, null).getBody();
+		} catch (IOException e) {
+			logger.error("Error during HTTP connection to Telegram: ", e);
+			return null;
+		}
 	}
 
 	/**
-	 * Sends a request.
+	 * Sends a request through the pooled HTTP client held by the
+	 * {@link TelegramBotMillContext}. The connection is released back to the
+	 * pool once the response has been read.
 	 * 
 	 * @param request
 	 *            the request to send
+	 * @param responseType
+	 *            the full type of the expected {@link ApiResponse}, or null to
+	 *            keep the body unparsed.
 	 * @return response the response.
+	 * @throws IOException
+	 *             if the request couldn't be sent.
 	 */
-	private static String send(HttpRequestBase request) {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+	static RawResponse execute(HttpRequestBase request, Type responseType)
+			throws IOException {
+		CloseableHttpClient httpClient = TelegramBotMillContext.getInstance()
+				.getHttpClient();
 		logger.debug(request.getRequestLine().toString());
-		HttpResponse httpResponse = null;
-		String response = null;
+		CloseableHttpResponse httpResponse = httpClient.execute(request);
 		try {
-			httpResponse = httpClient.execute(request);
-			response = logResponse(httpResponse);
-		} catch (Exception e) {
-			logger.error("Error during HTTP connection to Telegram: ", e);
+			return readResponse(httpResponse, responseType);
 		} finally {
-			try {
-				httpClient.close();
-			} catch (IOException e) {
-				logger.error("Error while closing HTTP connection: ", e);
-			}
+			// Makes sure the connection goes back to the pool.
+			EntityUtils.consumeQuietly(httpResponse.getEntity());
+			httpResponse.close();
 		}
-		return response;
 	}
 
 	/**
-	 * Logs the response before returning it.
+	 * Reads a response, logging it. Successful responses are parsed as UTF-8
+	 * while they're read, without building the body in memory first. The body
+	 * is kept as a string for errors, for debugging and when no type is
+	 * requested.
 	 *
 	 * @param response
-	 *            the response to log.
-	 * @return the string
+	 *            the response to read.
+	 * @param responseType
+	 *            the full type of the expected {@link ApiResponse}, or null to
+	 *            keep the body unparsed.
+	 * @return the response read.
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	private static String logResponse(HttpResponse response) throws IOException {
+	private static RawResponse readResponse(HttpResponse response,
+			Type responseType) throws IOException {
 		int statusCode = response.getStatusLine().getStatusCode();
-
-		// Logs the raw JSON for debug purposes.
-		String output = getResponseContent(response);
+		HttpEntity entity = response.getEntity();
 		logger.debug("HTTP Status Code: {}", statusCode);
-		logger.debug("Raw response: {}", output);
-
-		// If the status code is > 400 there was an error.
-		if (statusCode >= 400) {
-			logger.error("HTTP connection failed with error code {}.",
-					statusCode);
-			
-			// Tries to parse the object as an Update.
-			
-			// TODO
-			// Sends the callback to the registered network monitors.
-			for (TelegramBotMillMonitor monitor : registeredMonitors) {
-				// monitor.onError(errorMessage);
+
+		if (statusCode >= 400 || responseType == null || entity == null
+				|| logger.isDebugEnabled()) {
+			// Logs the raw JSON for debug purposes.
+			String output = entity != null ? EntityUtils.toString(entity,
+					UTF_8) : "";
+			logger.debug("Raw response: {}", output);
+			ApiResponse<?> parsed = null;
+			if (responseType != null) {
+				parsed = parse(output, responseType);
 			}
-		} else {
-			// TODO
-			// Sends the callback to the registered network monitors.
-			for (TelegramBotMillMonitor monitor : registeredMonitors) {
-				// monitor.onConfirmation(confirmationMessage);
+
+			// If the status code is > 400 there was an error.
+			if (statusCode >= 400) {
+				logger.error("HTTP connection failed with error code {}.",
+						statusCode);
+
+				// Tries to parse the object as a Telegram error.
+				ApiResponse<?> error = parsed != null ? parsed
+						: parse(output, RAW_RESULT_RESPONSE_TYPE);
+				if (error != null) {
+					logger.error("Telegram error {}: {}", error.getErrorCode(),
+							error.getDescription());
+				}
+
+				// TODO
+				// Sends the callback to the registered network monitors.
+				for (TelegramBotMillMonitor monitor : registeredMonitors) {
+					// monitor.onError(errorMessage);
+				}
+			} else {
+				if (responseType != null && parsed == null) {
+					logger.error("Unexpected response from Telegram: {}",
+							output);
+				}
+				notifyConfirmation();
 			}
+			return new RawResponse(statusCode, parsed, output);
+		}
+
+		notifyConfirmation();
+		Reader reader = new InputStreamReader(entity.getContent(), UTF_8);
+		try {
+			ApiResponse<?> parsed = JsonUtils.fromJson(reader, responseType);
+			return new RawResponse(statusCode, parsed, null);
+		} catch (JsonParseException e) {
+			logger.error("Unexpected response from Telegram: ", e);
+			return new RawResponse(statusCode, null, null);
+		}
+	}
+
+	/**
+	 * Sends the confirmation of a successful request to the registered
+	 * monitors.
+	 */
+	private static void notifyConfirmation() {
+		// TODO
+		// Sends the callback to the registered network monitors.
+		for (TelegramBotMillMonitor monitor : registeredMonitors) {
+			// monitor.onConfirmation(confirmationMessage);
 		}
-		return output;
 	}
 
 	/**
-	 * Utility method that converts an HttpResponse to a String.
+	 * Parses a response body.
 	 *
-	 * @param response
-	 *            the response to convert.
-	 * @return a String with the response content.
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @param output
+	 *            the response body.
+	 * @param responseType
+	 *            the full type of the expected {@link ApiResponse}.
+	 * @return the parsed response or null if the body is not a Telegram
+	 *         response.
 	 */
-	private static String getResponseContent(HttpResponse response)
-			throws IOException {
-		InputStream inputStream = response.getEntity().getContent();
-		BufferedInputStream bufferedInputStream = new BufferedInputStream(
-				inputStream);
-		InputStreamReader inputStreamReader = new InputStreamReader(
-				bufferedInputStream);
-		BufferedReader br = new BufferedReader(inputStreamReader);
-		StringBuilder builder = new StringBuilder();
-		String output = null;
-		while ((output = br.readLine()) != null) {
-			builder.append(output);
+	private static ApiResponse<?> parse(String output, Type responseType) {
+		try {
+			return JsonUtils.fromJson(output, responseType);
+		} catch (JsonParseException e) {
+			return null;
 		}
-		return builder.toString();
 	}
 
 	/**
@@ -223,48 +543,23 @@ public class NetworkUtils {
 	}
 
 	/**
-	 * Utility method that converts an object to its StringEntity
-	 * representation.
+	 * Utility method that wraps the JSON rendered by a
+	 * {@link PreparedResponse} into an entity, without serializing it again.
 	 * 
-	 * @param object
-	 *            the object to convert to a StringEntity.
-	 * @return a {@link StringEntity} object containing the object JSON.
+	 * @param response
+	 *            the response to convert.
+	 * @return a {@link ByteArrayEntity} containing the response JSON.
 	 */
-	private static StringEntity toStringEntity(Object object) {
-		StringEntity input = null;
-		try {
-			String json = JsonUtils.toJson(object);
-			input = new StringEntity(json, "UTF-8");
-			input.setContentType("application/json");
-			logger.debug("Request: {}", inputStreamToString(input.getContent()));
-		} catch (Exception e) {
-			logger.error("Error during JSON message creation: ", e);
+	private static ByteArrayEntity toByteArrayEntity(PreparedResponse response) {
+		byte[] json = response.toJsonBytes();
+		ByteArrayEntity input = new ByteArrayEntity(json);
+		input.setContentType("application/json");
+		if (logger.isDebugEnabled()) {
+			logger.debug("Request: {}", new String(json, UTF_8));
 		}
 		return input;
 	}
 
-	/**
-	 * Utility method which converts an InputStream to a String.
-	 *
-	 * @param stream
-	 *            the InputStream to convert.
-	 * @return a String with the InputStream content.
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
-	 */
-	private static String inputStreamToString(InputStream stream)
-			throws IOException {
-		ByteArrayOutputStream result = new ByteArrayOutputStream();
-		byte[] buffer = new byte[1024];
-		int length;
-		String resultString = null;
-		while ((length = stream.read(buffer)) != -1) {
-			result.write(buffer, 0, length);
-		}
-		resultString = result.toString("UTF-8");
-		return resultString;
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+import co.aurasphere.botmill.telegram.model.ResponseParameters;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillBaseMethodDTO;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
+import co.aurasphere.botmill.telegram.support.network.RetryOptions;
+
+/**
+ * A request to Telegram which takes care of its own retries. When Telegram
+ * asks to wait through {@code retry_after}, the request is parked on a timer
+ * and sent again once the delay has elapsed. When the target group has been
+ * migrated to a supergroup, the request is sent again to the new chat, whose
+ * ID replaces the one of the request data. Server and connection errors are
+ * retried with a jittered exponential backoff. No thread is held while a
+ * request waits for its next attempt.
+ *
+ * @param <T>
+ *            the type of the result of the called method.
+ * @author Donato Rimenti
+ */
+class OutboundRequest<T> implements Supplier<RawResponse> {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(OutboundRequest.class);
+
+	/**
+	 * The requests parked on the context timer, waiting for their next
+	 * attempt.
+	 */
+	private static final Set<OutboundRequest<?>> parkedRequests = Collections
+			.newSetFromMap(new ConcurrentHashMap<OutboundRequest<?>, Boolean>());
+
+	/**
+	 * The data to send.
+	 */
+	private final TelegramBotMillBaseMethodDTO input;
+
+	/**
+	 * The full type of the expected {@link ApiResponse}.
+	 */
+	private final Type responseType;
+
+	/**
+	 * The future completed with the final outcome of this request.
+	 */
+	private final CompletableFuture<ApiResponse<T>> future;
+
+	/**
+	 * Number of retries done so far.
+	 */
+	private int retries;
+
+	/**
+	 * Boolean that indicates whether the retries of this request are carried
+	 * out by the thread which sent it, which waits for them.
+	 */
+	private boolean blocking;
+
+	/**
+	 * Instantiates a new OutboundRequest.
+	 *
+	 * @param input
+	 *            the {@link #input}.
+	 * @param responseType
+	 *            the {@link #responseType}.
+	 */
+	OutboundRequest(TelegramBotMillBaseMethodDTO input, Type responseType) {
+		this.input = input;
+		this.responseType = responseType;
+		this.future = new CompletableFuture<ApiResponse<T>>();
+	}
+
+	/**
+	 * Gets the {@link #future}.
+	 *
+	 * @return the {@link #future}.
+	 */
+	CompletableFuture<ApiResponse<T>> getFuture() {
+		return this.future;
+	}
+
+	/**
+	 * Sends the request on the calling thread, waiting for the rate limits if
+	 * needed. If the request has to be retried, the retries are carried out
+	 * asynchronously so that the calling thread is released right away.
+	 */
+	void sendSync() {
+		OutboundScheduler scheduler = TelegramBotMillContext.getInstance()
+				.getOutboundScheduler();
+		RawResponse response = null;
+		Throwable error = null;
+		try {
+			if (scheduler != null) {
+				// Waits for the rate limits to allow this request.
+				scheduler.acquire(NetworkUtils.getChatId(this.input));
+			}
+			response = get();
+		} catch (InterruptedException e) {
+			logger.error("Interrupted while waiting to send a request: ", e);
+			Thread.currentThread().interrupt();
+			this.future.completeExceptionally(e);
+			return;
+		} catch (CompletionException e) {
+			error = e;
+		}
+		handle(response, error);
+	}
+
+	/**
+	 * Sends the request on the calling thread and waits for its outcome,
+	 * carrying out the retries on the calling thread as well. When this method
+	 * returns, the {@link #future} is done. This is meant for requests which
+	 * must reach Telegram before the next one is sent.
+	 */
+	void sendBlocking() {
+		this.blocking = true;
+		sendSync();
+	}
+
+	/**
+	 * Sends the request on the asynchronous executor, queuing it until the
+	 * rate limits allow it if needed.
+	 */
+	void sendAsync() {
+		TelegramBotMillContext context = TelegramBotMillContext.getInstance();
+		ExecutorService executor = context.getAsyncExecutor();
+		OutboundScheduler scheduler = context.getOutboundScheduler();
+		CompletableFuture<RawResponse> attempt;
+		if (scheduler != null) {
+			attempt = scheduler.schedule(NetworkUtils.getChatId(this.input),
+					this, executor);
+		} else {
+			attempt = CompletableFuture.supplyAsync(this, executor);
+		}
+		attempt.whenComplete(new BiConsumer<RawResponse, Throwable>() {
+			public void accept(RawResponse response, Throwable error) {
+				handle(response, error);
+			}
+		});
+	}
+
+	/**
+	 * Executes a single attempt of this request. The body is serialized at
+	 * each attempt since a retry may have changed the target chat, and the
+	 * response is parsed while it's read. On virtual threads, the attempt
+	 * waits for a permit first, so that only a limited number of requests
+	 * reach Telegram at the same time.
+	 *
+	 * @return the raw response.
+	 */
+	public RawResponse get() {
+		Semaphore permits = TelegramBotMillContext.getInstance()
+				.getRequestPermits();
+		if (permits != null) {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			}
+		}
+		try {
+			return NetworkUtils.execute(NetworkUtils.buildPost(this.input),
+					this.responseType);
+		} catch (IOException e) {
+			logger.error("Error during HTTP connection to Telegram: ", e);
+			throw new CompletionException(e);
+		} finally {
+			if (permits != null) {
+				permits.release();
+			}
+		}
+	}
+
+	/**
+	 * Handles the outcome of an attempt, either completing the
+	 * {@link #future} or scheduling a retry.
+	 *
+	 * @param raw
+	 *            the response received, null if the attempt failed.
+	 * @param error
+	 *            the error which made the attempt fail, if any.
+	 */
+	private void handle(RawResponse raw, Throwable error) {
+		RetryOptions options = TelegramBotMillContext.getInstance()
+				.getRetryOptions();
+		boolean canRetry = options.isEnabled()
+				&& this.retries < options.getMaxRetries();
+
+		if (error != null) {
+			Throwable cause = error;
+			if (error instanceof CompletionException && error.getCause() != null) {
+				cause = error.getCause();
+			}
+			if (canRetry && cause instanceof IOException) {
+				retryAfter(backoff(options));
+			} else {
+				this.future.completeExceptionally(cause);
+			}
+			return;
+		}
+
+		ApiResponse<T> response = raw.getResponse();
+
+		if (canRetry && response != null && !response.isOk()
+				&& response.getParameters() != null) {
+			ResponseParameters parameters = response.getParameters();
+			// Flood control: Telegram tells how long to wait.
+			if (parameters.getRetryAfter() > 0) {
+				logger.warn("Flood control exceeded, retrying in {} seconds.",
+						parameters.getRetryAfter());
+				retryAfter(TimeUnit.SECONDS.toMillis(parameters.getRetryAfter()));
+				return;
+			}
+			// The group has become a supergroup with a new ID.
+			if (parameters.getMigrateToChatId() != null
+					&& this.input instanceof TelegramBotMillResponse) {
+				logger.warn("Chat migrated to {}, sending the request again.",
+						parameters.getMigrateToChatId());
+				((TelegramBotMillResponse) this.input).setChatId(parameters
+						.getMigrateToChatId());
+				retryAfter(0);
+				return;
+			}
+		}
+
+		if (canRetry && raw.getStatusCode() >= 500) {
+			retryAfter(backoff(options));
+			return;
+		}
+		this.future.complete(response);
+	}
+
+	/**
+	 * Sends this request again after the given delay, parking it on the
+	 * context timer meanwhile. A blocking request waits for the delay on the
+	 * calling thread instead.
+	 *
+	 * @param delay
+	 *            the delay in milliseconds.
+	 */
+	private void retryAfter(long delay) {
+		this.retries++;
+		if (this.blocking) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.future.completeExceptionally(e);
+				return;
+			}
+			sendSync();
+			return;
+		}
+		if (delay <= 0) {
+			sendAsync();
+			return;
+		}
+		logger.debug("Retry {} of {} scheduled in {} ms.", this.retries,
+				this.input, delay);
+		parkedRequests.add(this);
+		try {
+			TelegramBotMillContext.getInstance().getScheduledExecutor()
+					.schedule(new Runnable() {
+						public void run() {
+							if (parkedRequests.remove(OutboundRequest.this)) {
+								sendAsync();
+							}
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			parkedRequests.remove(this);
+			this.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Completes exceptionally the requests parked on the context timer, which
+	 * won't be sent again since the timer has been stopped.
+	 */
+	static void discardParkedRequests() {
+		for (OutboundRequest<?> request : new ArrayList<OutboundRequest<?>>(
+				parkedRequests)) {
+			if (parkedRequests.remove(request)) {
+				logger.warn("Retry of {} discarded on shutdown.", request);
+				request.future.completeExceptionally(new CancellationException(
+						"The request has been discarded on shutdown before being retried."));
+			}
+		}
+	}
+
+	/**
+	 * Computes the backoff before the next retry: an exponentially growing
+	 * delay with a random jitter, so that failed requests don't all hit
+	 * Telegram again at the same time.
+	 *
+	 * @param options
+	 *            the retry options.
+	 * @return the backoff in milliseconds.
+	 */
+	private long backoff(RetryOptions options) {
+		long ceiling = options.getInitialBackoff() << Math.min(this.retries,
+				20);
+		ceiling = Math.max(Math.min(ceiling, options.getMaxBackoff()), 1);
+		return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "OutboundRequest [input=" + input + ", retries=" + retries + "]";
+	}
+
+}
@@ -0,0 +1,412 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import co.aurasphere.botmill.telegram.internal.util.concurrent.NamedThreadFactory;
+import co.aurasphere.botmill.telegram.support.network.RateLimitOptions;
+
+/**
+ * Scheduler which sits in front of the requests sent to Telegram and keeps
+ * them within the Telegram rate limits. It keeps a global token bucket plus
+ * one bucket for each chat the bot is talking to. Requests over the limit are
+ * queued until a slot is available, never dropped: asynchronous requests are
+ * parked on a timer without holding a thread, while synchronous ones wait on
+ * the calling thread.
+ *
+ * @author Donato Rimenti
+ */
+public class OutboundScheduler {
+
+	/**
+	 * How often idle chat buckets are discarded, in milliseconds.
+	 */
+	private static final long CLEANUP_PERIOD = 60000;
+
+	/**
+	 * The options of this scheduler.
+	 */
+	private final RateLimitOptions options;
+
+	/**
+	 * The bucket shared by all the requests.
+	 */
+	private final TokenBucket globalBucket;
+
+	/**
+	 * The buckets of each chat, keyed by chat ID.
+	 */
+	private final ConcurrentMap<String, TokenBucket> chatBuckets;
+
+	/**
+	 * Timer which holds the delayed asynchronous requests.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * The futures of the asynchronous requests parked on the {@link #timer}.
+	 */
+	private final Set<CompletableFuture<?>> waitingRequests;
+
+	/**
+	 * Number of requests currently waiting for a slot.
+	 */
+	private final AtomicInteger queueDepth;
+
+	/**
+	 * Number of requests which had to wait for a slot.
+	 */
+	private final AtomicLong delayedRequests;
+
+	/**
+	 * Total number of requests which went through this scheduler.
+	 */
+	private final AtomicLong totalRequests;
+
+	/**
+	 * Sum of the waiting times, in nanoseconds.
+	 */
+	private final AtomicLong totalWaitTime;
+
+	/**
+	 * Longest waiting time, in nanoseconds.
+	 */
+	private final AtomicLong maxWaitTime;
+
+	/**
+	 * Instantiates a new OutboundScheduler.
+	 *
+	 * @param options
+	 *            the {@link #options}.
+	 */
+	public OutboundScheduler(RateLimitOptions options) {
+		this.options = options;
+		this.globalBucket = new TokenBucket(options.getGlobalPermits(),
+				options.getGlobalPeriod());
+		this.chatBuckets = new ConcurrentHashMap<String, TokenBucket>();
+		ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(
+				1, new NamedThreadFactory("telegram-botmill-scheduler"));
+		scheduledExecutor.setRemoveOnCancelPolicy(true);
+		this.timer = scheduledExecutor;
+		this.waitingRequests = Collections
+				.newSetFromMap(new ConcurrentHashMap<CompletableFuture<?>, Boolean>());
+		this.queueDepth = new AtomicInteger();
+		this.delayedRequests = new AtomicLong();
+		this.totalRequests = new AtomicLong();
+		this.totalWaitTime = new AtomicLong();
+		this.maxWaitTime = new AtomicLong();
+
+		this.timer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictIdleBuckets();
+			}
+		}, CLEANUP_PERIOD, CLEANUP_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Waits on the calling thread until a request to the given chat can be
+	 * sent.
+	 *
+	 * @param chatId
+	 *            the ID of the target chat or null if the request is not
+	 *            addressed to a chat.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting.
+	 */
+	public void acquire(String chatId) throws InterruptedException {
+		long start = System.nanoTime();
+		long delay = reserve(chatId, start) - start;
+		if (delay <= 0) {
+			recordWait(0);
+			return;
+		}
+		this.queueDepth.incrementAndGet();
+		try {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		} finally {
+			this.queueDepth.decrementAndGet();
+			recordWait(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Schedules a request to the given chat, running it on the given executor
+	 * as soon as the rate limits allow it. No thread is held while the request
+	 * waits for its slot.
+	 *
+	 * @param <T>
+	 *            the type of the result of the request.
+	 * @param chatId
+	 *            the ID of the target chat or null if the request is not
+	 *            addressed to a chat.
+	 * @param task
+	 *            the request to run.
+	 * @param executor
+	 *            the executor which runs the request.
+	 * @return a future which completes with the outcome of the request.
+	 */
+	public <T> CompletableFuture<T> schedule(String chatId,
+			final Supplier<T> task, final Executor executor) {
+		final long start = System.nanoTime();
+		long delay = reserve(chatId, start) - start;
+		if (delay <= 0) {
+			recordWait(0);
+			return CompletableFuture.supplyAsync(task, executor);
+		}
+
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		this.queueDepth.incrementAndGet();
+		this.waitingRequests.add(future);
+		this.timer.schedule(new Runnable() {
+			public void run() {
+				if (!waitingRequests.remove(future)) {
+					return;
+				}
+				queueDepth.decrementAndGet();
+				recordWait(System.nanoTime() - start);
+				try {
+					CompletableFuture.supplyAsync(task, executor).whenComplete(
+							new Completer<T>(future));
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+		return future;
+	}
+
+	/**
+	 * Books a slot in the global bucket and in the bucket of the chat.
+	 *
+	 * @param chatId
+	 *            the target chat, can be null.
+	 * @param now
+	 *            the current time.
+	 * @return the time at which the request can be sent.
+	 */
+	private long reserve(String chatId, long now) {
+		long slot = now;
+		if (chatId != null && !chatId.isEmpty()) {
+			slot = getChatBucket(chatId).reserve(now);
+		}
+		// The global slot is booked after the chat one, so that a request
+		// waiting for its chat doesn't waste global capacity meanwhile.
+		return this.globalBucket.reserve(slot);
+	}
+
+	/**
+	 * Gets the bucket of a chat, creating it if needed. Chat IDs of groups,
+	 * supergroups and channels are negative (or channel usernames), while
+	 * private chat IDs are positive.
+	 *
+	 * @param chatId
+	 *            the chat ID.
+	 * @return the bucket of the chat.
+	 */
+	private TokenBucket getChatBucket(String chatId) {
+		TokenBucket bucket = this.chatBuckets.get(chatId);
+		if (bucket == null) {
+			boolean group = chatId.startsWith("-") || chatId.startsWith("@");
+			TokenBucket newBucket = group ? new TokenBucket(
+					this.options.getGroupChatPermits(),
+					this.options.getGroupChatPeriod()) : new TokenBucket(
+					this.options.getPrivateChatPermits(),
+					this.options.getPrivateChatPeriod());
+			bucket = this.chatBuckets.putIfAbsent(chatId, newBucket);
+			if (bucket == null) {
+				bucket = newBucket;
+			}
+		}
+		return bucket;
+	}
+
+	/**
+	 * Discards the buckets of the chats which have been idle long enough to be
+	 * full again, so that memory doesn't grow with the number of chats.
+	 */
+	private void evictIdleBuckets() {
+		long now = System.nanoTime();
+		Iterator<Entry<String, TokenBucket>> iterator = this.chatBuckets
+				.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<String, TokenBucket> entry = iterator.next();
+			if (entry.getValue().isIdle(now)) {
+				this.chatBuckets.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Updates the waiting time metrics.
+	 *
+	 * @param waitTime
+	 *            the time waited by a request, in nanoseconds.
+	 */
+	private void recordWait(long waitTime) {
+		this.totalRequests.incrementAndGet();
+		if (waitTime <= 0) {
+			return;
+		}
+		this.delayedRequests.incrementAndGet();
+		this.totalWaitTime.addAndGet(waitTime);
+		long max = this.maxWaitTime.get();
+		while (waitTime > max
+				&& !this.maxWaitTime.compareAndSet(max, waitTime)) {
+			max = this.maxWaitTime.get();
+		}
+	}
+
+	/**
+	 * Gets the number of requests currently waiting for a slot.
+	 *
+	 * @return the queue depth.
+	 */
+	public int getQueueDepth() {
+		return this.queueDepth.get();
+	}
+
+	/**
+	 * Gets the total number of requests which went through this scheduler.
+	 *
+	 * @return the total number of requests.
+	 */
+	public long getTotalRequests() {
+		return this.totalRequests.get();
+	}
+
+	/**
+	 * Gets the number of requests which had to wait for a slot.
+	 *
+	 * @return the number of delayed requests.
+	 */
+	public long getDelayedRequests() {
+		return this.delayedRequests.get();
+	}
+
+	/**
+	 * Gets the average waiting time of the delayed requests.
+	 *
+	 * @return the average waiting time in milliseconds.
+	 */
+	public long getAverageWaitTime() {
+		long delayed = this.delayedRequests.get();
+		if (delayed == 0) {
+			return 0;
+		}
+		return TimeUnit.NANOSECONDS.toMillis(this.totalWaitTime.get()
+				/ delayed);
+	}
+
+	/**
+	 * Gets the longest waiting time of a request.
+	 *
+	 * @return the longest waiting time in milliseconds.
+	 */
+	public long getMaxWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.maxWaitTime.get());
+	}
+
+	/**
+	 * Stops this scheduler. Requests still waiting for a slot are discarded,
+	 * completing their futures with a {@link CancellationException}.
+	 */
+	public void shutdown() {
+		this.timer.shutdownNow();
+		for (CompletableFuture<?> future : new ArrayList<CompletableFuture<?>>(
+				this.waitingRequests)) {
+			if (this.waitingRequests.remove(future)) {
+				this.queueDepth.decrementAndGet();
+				future.completeExceptionally(new CancellationException(
+						"The request has been discarded on shutdown while waiting for the rate limits."));
+			}
+		}
+	}
+
+	/**
+	 * Callback which propagates the outcome of a future to another one.
+	 *
+	 * @param <T>
+	 *            the type of the result.
+	 */
+	private static class Completer<T> implements BiConsumer<T, Throwable> {
+
+		/**
+		 * The future to complete.
+		 */
+		private final CompletableFuture<T> target;
+
+		/**
+		 * Instantiates a new Completer.
+		 *
+		 * @param target
+		 *            the {@link #target}.
+		 */
+		Completer(CompletableFuture<T> target) {
+			this.target = target;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.function.BiConsumer#accept(java.lang.Object,
+		 * java.lang.Object)
+		 */
+		public void accept(T result, Throwable error) {
+			if (error != null) {
+				this.target.completeExceptionally(error);
+			} else {
+				this.target.complete(result);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "OutboundScheduler [options=" + options + ", queueDepth="
+				+ queueDepth + ", chats=" + chatBuckets.size() + "]";
+	}
+
+}
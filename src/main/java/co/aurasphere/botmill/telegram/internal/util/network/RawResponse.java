@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+
+/**
+ * The HTTP response received from Telegram. The body is parsed while it's
+ * read, so the raw body is kept only when it's needed, like for errors.
+ *
+ * @author Donato Rimenti
+ */
+class RawResponse {
+
+	/**
+	 * The HTTP status code.
+	 */
+	private final int statusCode;
+
+	/**
+	 * The parsed response, null if the body wasn't a valid Telegram response
+	 * or wasn't parsed.
+	 */
+	private final ApiResponse<?> response;
+
+	/**
+	 * The response body, null if it wasn't retained.
+	 */
+	private final String body;
+
+	/**
+	 * Instantiates a new RawResponse.
+	 *
+	 * @param statusCode
+	 *            the {@link #statusCode}.
+	 * @param response
+	 *            the {@link #response}.
+	 * @param body
+	 *            the {@link #body}.
+	 */
+	RawResponse(int statusCode, ApiResponse<?> response, String body) {
+		this.statusCode = statusCode;
+		this.response = response;
+		this.body = body;
+	}
+
+	/**
+	 * Gets the {@link #statusCode}.
+	 *
+	 * @return the {@link #statusCode}.
+	 */
+	int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gets the {@link #response}.
+	 *
+	 * @param <T>
+	 *            the type of the result, the one requested when sending.
+	 * @return the {@link #response}.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> ApiResponse<T> getResponse() {
+		return (ApiResponse<T>) response;
+	}
+
+	/**
+	 * Gets the {@link #body}.
+	 *
+	 * @return the {@link #body}.
+	 */
+	String getBody() {
+		return body;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RawResponse [statusCode=" + statusCode + ", response="
+				+ response + ", body=" + body + "]";
+	}
+
+}
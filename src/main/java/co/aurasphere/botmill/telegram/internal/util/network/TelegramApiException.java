@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+/**
+ * Error raised when Telegram didn't accept a request, either answering with
+ * an error or with a response which couldn't be read.
+ *
+ * @author Donato Rimenti
+ */
+public class TelegramApiException extends RuntimeException {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The error code returned by Telegram, 0 if the response couldn't be
+	 * read.
+	 */
+	private final int errorCode;
+
+	/**
+	 * The description of the error returned by Telegram.
+	 */
+	private final String description;
+
+	/**
+	 * Instantiates a new TelegramApiException.
+	 *
+	 * @param errorCode
+	 *            the {@link #errorCode}.
+	 * @param description
+	 *            the {@link #description}.
+	 */
+	public TelegramApiException(int errorCode, String description) {
+		super("Telegram error " + errorCode + ": " + description);
+		this.errorCode = errorCode;
+		this.description = description;
+	}
+
+	/**
+	 * Gets the {@link #errorCode}.
+	 *
+	 * @return the {@link #errorCode}.
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Gets the {@link #description}.
+	 *
+	 * @return the {@link #description}.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+}
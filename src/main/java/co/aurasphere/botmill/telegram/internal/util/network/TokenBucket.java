@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket which hands out time slots instead of rejecting requests.
+ * Each call to {@link #reserve(long)} books the first free slot and returns
+ * when it starts, so callers can wait for their turn instead of being
+ * refused. Up to {@link #capacity} requests can be sent as a burst after a
+ * period of inactivity, then one every {@link #interval}.
+ *
+ * @author Donato Rimenti
+ */
+class TokenBucket {
+
+	/**
+	 * Nanoseconds between two permits once the burst is exhausted.
+	 */
+	private final long interval;
+
+	/**
+	 * How much earlier than its theoretical slot a request can be sent, which
+	 * allows bursts of up to {@link #capacity} requests.
+	 */
+	private final long tolerance;
+
+	/**
+	 * The maximum number of permits granted in a burst.
+	 */
+	private final int capacity;
+
+	/**
+	 * The theoretical time, in nanoseconds, at which the next permit would be
+	 * granted if there were no burst allowance.
+	 */
+	private long nextSlot;
+
+	/**
+	 * Instantiates a new TokenBucket.
+	 *
+	 * @param permits
+	 *            the number of permits granted in a period.
+	 * @param period
+	 *            the period in milliseconds.
+	 */
+	TokenBucket(int permits, long period) {
+		this.capacity = Math.max(permits, 1);
+		this.interval = TimeUnit.MILLISECONDS.toNanos(period) / this.capacity;
+		this.tolerance = (this.capacity - 1) * this.interval;
+		this.nextSlot = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Books the first free slot not earlier than the given time.
+	 *
+	 * @param notBefore
+	 *            the earliest time, as returned by {@link System#nanoTime()},
+	 *            at which the caller can use the slot.
+	 * @return the time, as returned by {@link System#nanoTime()}, at which the
+	 *         booked slot starts.
+	 */
+	synchronized long reserve(long notBefore) {
+		long base = this.nextSlot == Long.MIN_VALUE ? notBefore : Math.max(
+				this.nextSlot, notBefore);
+		this.nextSlot = base + this.interval;
+		return Math.max(notBefore, base - this.tolerance);
+	}
+
+	/**
+	 * Checks whether this bucket is full, meaning that it holds no booking
+	 * and can be discarded without affecting the rate limit.
+	 *
+	 * @param now
+	 *            the current time, as returned by {@link System#nanoTime()}.
+	 * @return true if the bucket is full.
+	 */
+	synchronized boolean isIdle(long now) {
+		return this.nextSlot == Long.MIN_VALUE || this.nextSlot - now <= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TokenBucket [capacity=" + capacity + ", interval=" + interval
+				+ "]";
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.util.time;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utility class for converting the Unix times used by Telegram, in seconds.
+ * A Unix time of 0 means that the date is missing.
+ * 
+ * @author Donato Rimenti
+ */
+public class UnixTimeUtils {
+
+	/**
+	 * Instantiates a new UnixTimeUtils.
+	 */
+	private UnixTimeUtils() {
+	}
+
+	/**
+	 * Converts a Unix time into a Calendar in the default time zone.
+	 *
+	 * @param epochSecond
+	 *            the Unix time in seconds.
+	 * @return a new Calendar or null if the Unix time is 0.
+	 */
+	public static Calendar toCalendar(long epochSecond) {
+		if (epochSecond == 0) {
+			return null;
+		}
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTimeInMillis(TimeUnit.SECONDS.toMillis(epochSecond));
+		return calendar;
+	}
+
+	/**
+	 * Converts a Unix time into an Instant.
+	 *
+	 * @param epochSecond
+	 *            the Unix time in seconds.
+	 * @return the Instant or null if the Unix time is 0.
+	 */
+	public static Instant toInstant(long epochSecond) {
+		if (epochSecond == 0) {
+			return null;
+		}
+		return Instant.ofEpochSecond(epochSecond);
+	}
+
+	/**
+	 * Converts a Calendar into a Unix time.
+	 *
+	 * @param calendar
+	 *            the Calendar to convert.
+	 * @return the Unix time in seconds or 0 if the Calendar is null.
+	 */
+	public static long toEpochSecond(Calendar calendar) {
+		if (calendar == null) {
+			return 0;
+		}
+		return TimeUnit.MILLISECONDS.toSeconds(calendar.getTimeInMillis());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UnixTimeUtils []";
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.model;
+
+import java.io.Serializable;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents the response returned by Telegram to every Bot API request. If
+ * {@link #ok} is true the request was successful and the outcome of the
+ * method is found in {@link #result}. Otherwise, {@link #description},
+ * {@link #errorCode} and {@link #parameters} describe the error.
+ *
+ * @param <T>
+ *            the type of the result of the called method.
+ * @author Donato Rimenti
+ * @see <a href= "https://core.telegram.org/bots/api#making-requests"
+ *      >Telegram Bot API making requests documentation</a>
+ */
+public class ApiResponse<T> implements Serializable {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * True if the request was successful.
+	 */
+	private boolean ok;
+
+	/**
+	 * Optional. The result of the request, present if {@link #ok} is true.
+	 */
+	private T result;
+
+	/**
+	 * Optional. A human-readable description of the result.
+	 */
+	private String description;
+
+	/**
+	 * Optional. The error code, present if {@link #ok} is false.
+	 */
+	@SerializedName("error_code")
+	private int errorCode;
+
+	/**
+	 * Optional. Information about why the request was unsuccessful, which
+	 * can be used to handle the error automatically.
+	 */
+	private ResponseParameters parameters;
+
+	/**
+	 * Gets the {@link #ok}.
+	 *
+	 * @return the {@link #ok}.
+	 */
+	public boolean isOk() {
+		return ok;
+	}
+
+	/**
+	 * Sets the {@link #ok}.
+	 *
+	 * @param ok
+	 *            the {@link #ok} to set.
+	 */
+	public void setOk(boolean ok) {
+		this.ok = ok;
+	}
+
+	/**
+	 * Gets the {@link #result}.
+	 *
+	 * @return the {@link #result}.
+	 */
+	public T getResult() {
+		return result;
+	}
+
+	/**
+	 * Sets the {@link #result}.
+	 *
+	 * @param result
+	 *            the {@link #result} to set.
+	 */
+	public void setResult(T result) {
+		this.result = result;
+	}
+
+	/**
+	 * Gets the {@link #description}.
+	 *
+	 * @return the {@link #description}.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Sets the {@link #description}.
+	 *
+	 * @param description
+	 *            the {@link #description} to set.
+	 */
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Gets the {@link #errorCode}.
+	 *
+	 * @return the {@link #errorCode}.
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Sets the {@link #errorCode}.
+	 *
+	 * @param errorCode
+	 *            the {@link #errorCode} to set.
+	 */
+	public void setErrorCode(int errorCode) {
+		this.errorCode = errorCode;
+	}
+
+	/**
+	 * Gets the {@link #parameters}.
+	 *
+	 * @return the {@link #parameters}.
+	 */
+	public ResponseParameters getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Sets the {@link #parameters}.
+	 *
+	 * @param parameters
+	 *            the {@link #parameters} to set.
+	 */
+	public void setParameters(ResponseParameters parameters) {
+		this.parameters = parameters;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ApiResponse [ok=" + ok + ", result=" + result
+				+ ", description=" + description + ", errorCode=" + errorCode
+				+ ", parameters=" + parameters + "]";
+	}
+
+}
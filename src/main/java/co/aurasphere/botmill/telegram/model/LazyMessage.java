@@ -0,0 +1,1242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.model;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import co.aurasphere.botmill.telegram.internal.util.json.RawJsonObject;
+import co.aurasphere.botmill.telegram.model.game.Game;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A {@link Message} which keeps its raw JSON and decodes each field only when
+ * it's first accessed. Bots which only look at a few fields, like the text
+ * and the chat, don't pay for decoding the rest of the message. Fields can
+ * still be set, in which case the raw value is ignored.
+ * 
+ * @author Donato Rimenti
+ */
+public class LazyMessage extends Message {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The indexed keys. The position of each key is used as its ID.
+	 */
+	private static final byte[][] KEYS = RawJsonObject.keys("message_id",
+			"from",
+			"date",
+			"chat",
+			"forward_from",
+			"forward_from_chat",
+			"forward_from_message_id",
+			"forward_date",
+			"reply_to_message",
+			"edit_date",
+			"text",
+			"entities",
+			"audio",
+			"document",
+			"game",
+			"photo",
+			"sticker",
+			"video",
+			"voice",
+			"caption",
+			"contact",
+			"location",
+			"venue",
+			"new_chat_member",
+			"left_chat_member",
+			"new_chat_title",
+			"new_chat_photo",
+			"delete_chat_photo",
+			"group_chat_created",
+			"supergroup_chat_created",
+			"channel_chat_created",
+			"migrate_to_chat_id",
+			"migrate_from_chat_id",
+			"pinned_message");
+
+	/**
+	 * ID of the "message_id" key.
+	 */
+	private static final int MESSAGE_ID = 0;
+
+	/**
+	 * ID of the "from" key.
+	 */
+	private static final int FROM = 1;
+
+	/**
+	 * ID of the "date" key.
+	 */
+	private static final int DATE = 2;
+
+	/**
+	 * ID of the "chat" key.
+	 */
+	private static final int CHAT = 3;
+
+	/**
+	 * ID of the "forward_from" key.
+	 */
+	private static final int FORWARD_FROM = 4;
+
+	/**
+	 * ID of the "forward_from_chat" key.
+	 */
+	private static final int FORWARD_FROM_CHAT = 5;
+
+	/**
+	 * ID of the "forward_from_message_id" key.
+	 */
+	private static final int FORWARD_FROM_MESSAGE_ID = 6;
+
+	/**
+	 * ID of the "forward_date" key.
+	 */
+	private static final int FORWARD_DATE = 7;
+
+	/**
+	 * ID of the "reply_to_message" key.
+	 */
+	private static final int REPLY_TO_MESSAGE = 8;
+
+	/**
+	 * ID of the "edit_date" key.
+	 */
+	private static final int EDIT_DATE = 9;
+
+	/**
+	 * ID of the "text" key.
+	 */
+	private static final int TEXT = 10;
+
+	/**
+	 * ID of the "entities" key.
+	 */
+	private static final int ENTITIES = 11;
+
+	/**
+	 * ID of the "audio" key.
+	 */
+	private static final int AUDIO = 12;
+
+	/**
+	 * ID of the "document" key.
+	 */
+	private static final int DOCUMENT = 13;
+
+	/**
+	 * ID of the "game" key.
+	 */
+	private static final int GAME = 14;
+
+	/**
+	 * ID of the "photo" key.
+	 */
+	private static final int PHOTO = 15;
+
+	/**
+	 * ID of the "sticker" key.
+	 */
+	private static final int STICKER = 16;
+
+	/**
+	 * ID of the "video" key.
+	 */
+	private static final int VIDEO = 17;
+
+	/**
+	 * ID of the "voice" key.
+	 */
+	private static final int VOICE = 18;
+
+	/**
+	 * ID of the "caption" key.
+	 */
+	private static final int CAPTION = 19;
+
+	/**
+	 * ID of the "contact" key.
+	 */
+	private static final int CONTACT = 20;
+
+	/**
+	 * ID of the "location" key.
+	 */
+	private static final int LOCATION = 21;
+
+	/**
+	 * ID of the "venue" key.
+	 */
+	private static final int VENUE = 22;
+
+	/**
+	 * ID of the "new_chat_member" key.
+	 */
+	private static final int NEW_CHAT_MEMBER = 23;
+
+	/**
+	 * ID of the "left_chat_member" key.
+	 */
+	private static final int LEFT_CHAT_MEMBER = 24;
+
+	/**
+	 * ID of the "new_chat_title" key.
+	 */
+	private static final int NEW_CHAT_TITLE = 25;
+
+	/**
+	 * ID of the "new_chat_photo" key.
+	 */
+	private static final int NEW_CHAT_PHOTO = 26;
+
+	/**
+	 * ID of the "delete_chat_photo" key.
+	 */
+	private static final int DELETE_CHAT_PHOTO = 27;
+
+	/**
+	 * ID of the "group_chat_created" key.
+	 */
+	private static final int GROUP_CHAT_CREATED = 28;
+
+	/**
+	 * ID of the "supergroup_chat_created" key.
+	 */
+	private static final int SUPERGROUP_CHAT_CREATED = 29;
+
+	/**
+	 * ID of the "channel_chat_created" key.
+	 */
+	private static final int CHANNEL_CHAT_CREATED = 30;
+
+	/**
+	 * ID of the "migrate_to_chat_id" key.
+	 */
+	private static final int MIGRATE_TO_CHAT_ID = 31;
+
+	/**
+	 * ID of the "migrate_from_chat_id" key.
+	 */
+	private static final int MIGRATE_FROM_CHAT_ID = 32;
+
+	/**
+	 * ID of the "pinned_message" key.
+	 */
+	private static final int PINNED_MESSAGE = 33;
+
+	/**
+	 * The type of the message entities.
+	 */
+	private static final Type ENTITIES_TYPE = new TypeToken<List<MessageEntity>>() {
+	}.getType();
+
+	/**
+	 * The type of the photo sizes.
+	 */
+	private static final Type PHOTOS_TYPE = new TypeToken<List<PhotoSize>>() {
+	}.getType();
+
+	/**
+	 * The raw JSON of this message, null once deserialized through Java
+	 * serialization, which materializes all the fields first.
+	 */
+	private transient RawJsonObject json;
+
+	/**
+	 * Bit mask of the keys already decoded or set.
+	 */
+	private transient long decoded;
+
+	/**
+	 * Instantiates a new LazyMessage.
+	 *
+	 * @param raw
+	 *            the buffer holding the message.
+	 * @param start
+	 *            the position of the message in the buffer.
+	 */
+	public LazyMessage(byte[] raw, int start) {
+		this.json = new RawJsonObject(raw, start, KEYS);
+	}
+
+	/**
+	 * Checks if a key still has to be decoded, marking it as decoded.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 * @return true if the key has to be decoded.
+	 */
+	private boolean pending(int key) {
+		long bit = 1L << key;
+		if (this.json == null || (this.decoded & bit) != 0) {
+			return false;
+		}
+		this.decoded |= bit;
+		return this.json.has(key);
+	}
+
+	/**
+	 * Marks a key as set, so that its raw value is ignored.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 */
+	private void set(int key) {
+		this.decoded |= 1L << key;
+	}
+
+	/**
+	 * Decodes a nested message.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 * @return the nested message, lazy as well.
+	 */
+	private Message message(int key) {
+		return new LazyMessage(this.json.getRaw(), this.json.getStart(key));
+	}
+
+	/**
+	 * Decodes all the fields not decoded yet. Needed before handing this message
+	 * to code which reads its fields directly, like Gson serialization.
+	 */
+	public synchronized void materialize() {
+		getMessageId();
+		getFrom();
+		getDateEpochSecond();
+		getChat();
+		getForwardFrom();
+		getForwardFromChat();
+		getForwardFromMessageId();
+		getForwardDateEpochSecond();
+		getReplyToMessage();
+		getEditDateEpochSecond();
+		getText();
+		getEntities();
+		getAudio();
+		getDocument();
+		getGame();
+		getPhoto();
+		getSticker();
+		getVideo();
+		getVoice();
+		getCaption();
+		getContact();
+		getLocation();
+		getVenue();
+		getNewChatMember();
+		getLeftChatMember();
+		getNewChatTitle();
+		getNewChatPhoto();
+		isDeleteChatPhoto();
+		isGroupChatCreated();
+		isSupergroupChatCreated();
+		isChannelChatCreated();
+		getMigrateToChatId();
+		getMigrateFromChatId();
+		getPinnedMessage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getMessageId()
+	 */
+	@Override
+	public synchronized String getMessageId() {
+		if (pending(MESSAGE_ID)) {
+			super.setMessageId(this.json.getString(MESSAGE_ID));
+		}
+		return super.getMessageId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setMessageId(String)
+	 */
+	@Override
+	public synchronized void setMessageId(String messageId) {
+		set(MESSAGE_ID);
+		super.setMessageId(messageId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getFrom()
+	 */
+	@Override
+	public synchronized User getFrom() {
+		if (pending(FROM)) {
+			super.setFrom(this.json.decode(FROM, User.class));
+		}
+		return super.getFrom();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setFrom(User)
+	 */
+	@Override
+	public synchronized void setFrom(User from) {
+		set(FROM);
+		super.setFrom(from);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getDateEpochSecond()
+	 */
+	@Override
+	public synchronized long getDateEpochSecond() {
+		if (pending(DATE)) {
+			super.setDateEpochSecond(this.json.getLong(DATE));
+		}
+		return super.getDateEpochSecond();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setDateEpochSecond(long)
+	 */
+	@Override
+	public synchronized void setDateEpochSecond(long date) {
+		set(DATE);
+		super.setDateEpochSecond(date);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getChat()
+	 */
+	@Override
+	public synchronized Chat getChat() {
+		if (pending(CHAT)) {
+			super.setChat(this.json.decode(CHAT, Chat.class));
+		}
+		return super.getChat();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setChat(Chat)
+	 */
+	@Override
+	public synchronized void setChat(Chat chat) {
+		set(CHAT);
+		super.setChat(chat);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getForwardFrom()
+	 */
+	@Override
+	public synchronized User getForwardFrom() {
+		if (pending(FORWARD_FROM)) {
+			super.setForwardFrom(this.json.decode(FORWARD_FROM, User.class));
+		}
+		return super.getForwardFrom();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setForwardFrom(User)
+	 */
+	@Override
+	public synchronized void setForwardFrom(User forwardFrom) {
+		set(FORWARD_FROM);
+		super.setForwardFrom(forwardFrom);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getForwardFromChat()
+	 */
+	@Override
+	public synchronized Chat getForwardFromChat() {
+		if (pending(FORWARD_FROM_CHAT)) {
+			super.setForwardFromChat(
+					this.json.decode(FORWARD_FROM_CHAT, Chat.class));
+		}
+		return super.getForwardFromChat();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setForwardFromChat(Chat)
+	 */
+	@Override
+	public synchronized void setForwardFromChat(Chat forwardFromChat) {
+		set(FORWARD_FROM_CHAT);
+		super.setForwardFromChat(forwardFromChat);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getForwardFromMessageId()
+	 */
+	@Override
+	public synchronized String getForwardFromMessageId() {
+		if (pending(FORWARD_FROM_MESSAGE_ID)) {
+			super.setForwardFromMessageId(
+					this.json.getString(FORWARD_FROM_MESSAGE_ID));
+		}
+		return super.getForwardFromMessageId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setForwardFromMessageId(String)
+	 */
+	@Override
+	public synchronized void setForwardFromMessageId(String forwardFromMessageId) {
+		set(FORWARD_FROM_MESSAGE_ID);
+		super.setForwardFromMessageId(forwardFromMessageId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getForwardDateEpochSecond()
+	 */
+	@Override
+	public synchronized long getForwardDateEpochSecond() {
+		if (pending(FORWARD_DATE)) {
+			super.setForwardDateEpochSecond(this.json.getLong(FORWARD_DATE));
+		}
+		return super.getForwardDateEpochSecond();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setForwardDateEpochSecond(long)
+	 */
+	@Override
+	public synchronized void setForwardDateEpochSecond(long forwardDate) {
+		set(FORWARD_DATE);
+		super.setForwardDateEpochSecond(forwardDate);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getReplyToMessage()
+	 */
+	@Override
+	public synchronized Message getReplyToMessage() {
+		if (pending(REPLY_TO_MESSAGE)) {
+			super.setReplyToMessage(message(REPLY_TO_MESSAGE));
+		}
+		return super.getReplyToMessage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setReplyToMessage(Message)
+	 */
+	@Override
+	public synchronized void setReplyToMessage(Message replyToMessage) {
+		set(REPLY_TO_MESSAGE);
+		super.setReplyToMessage(replyToMessage);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getEditDateEpochSecond()
+	 */
+	@Override
+	public synchronized long getEditDateEpochSecond() {
+		if (pending(EDIT_DATE)) {
+			super.setEditDateEpochSecond(this.json.getLong(EDIT_DATE));
+		}
+		return super.getEditDateEpochSecond();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setEditDateEpochSecond(long)
+	 */
+	@Override
+	public synchronized void setEditDateEpochSecond(long editDate) {
+		set(EDIT_DATE);
+		super.setEditDateEpochSecond(editDate);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getText()
+	 */
+	@Override
+	public synchronized String getText() {
+		if (pending(TEXT)) {
+			super.setText(this.json.getString(TEXT));
+		}
+		return super.getText();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setText(String)
+	 */
+	@Override
+	public synchronized void setText(String text) {
+		set(TEXT);
+		super.setText(text);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getEntities()
+	 */
+	@Override
+	public synchronized List<MessageEntity> getEntities() {
+		if (pending(ENTITIES)) {
+			super.setEntities(
+					this.json.decode(ENTITIES, ENTITIES_TYPE));
+		}
+		return super.getEntities();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setEntities(List)
+	 */
+	@Override
+	public synchronized void setEntities(List<MessageEntity> entities) {
+		set(ENTITIES);
+		super.setEntities(entities);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getAudio()
+	 */
+	@Override
+	public synchronized Audio getAudio() {
+		if (pending(AUDIO)) {
+			super.setAudio(this.json.decode(AUDIO, Audio.class));
+		}
+		return super.getAudio();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setAudio(Audio)
+	 */
+	@Override
+	public synchronized void setAudio(Audio audio) {
+		set(AUDIO);
+		super.setAudio(audio);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getDocument()
+	 */
+	@Override
+	public synchronized Document getDocument() {
+		if (pending(DOCUMENT)) {
+			super.setDocument(this.json.decode(DOCUMENT, Document.class));
+		}
+		return super.getDocument();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setDocument(Document)
+	 */
+	@Override
+	public synchronized void setDocument(Document document) {
+		set(DOCUMENT);
+		super.setDocument(document);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getGame()
+	 */
+	@Override
+	public synchronized Game getGame() {
+		if (pending(GAME)) {
+			super.setGame(this.json.decode(GAME, Game.class));
+		}
+		return super.getGame();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setGame(Game)
+	 */
+	@Override
+	public synchronized void setGame(Game game) {
+		set(GAME);
+		super.setGame(game);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getPhoto()
+	 */
+	@Override
+	public synchronized List<PhotoSize> getPhoto() {
+		if (pending(PHOTO)) {
+			super.setPhoto(
+					this.json.decode(PHOTO, PHOTOS_TYPE));
+		}
+		return super.getPhoto();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setPhoto(List)
+	 */
+	@Override
+	public synchronized void setPhoto(List<PhotoSize> photo) {
+		set(PHOTO);
+		super.setPhoto(photo);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getSticker()
+	 */
+	@Override
+	public synchronized Sticker getSticker() {
+		if (pending(STICKER)) {
+			super.setSticker(this.json.decode(STICKER, Sticker.class));
+		}
+		return super.getSticker();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setSticker(Sticker)
+	 */
+	@Override
+	public synchronized void setSticker(Sticker sticker) {
+		set(STICKER);
+		super.setSticker(sticker);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getVideo()
+	 */
+	@Override
+	public synchronized Video getVideo() {
+		if (pending(VIDEO)) {
+			super.setVideo(this.json.decode(VIDEO, Video.class));
+		}
+		return super.getVideo();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setVideo(Video)
+	 */
+	@Override
+	public synchronized void setVideo(Video video) {
+		set(VIDEO);
+		super.setVideo(video);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getVoice()
+	 */
+	@Override
+	public synchronized Voice getVoice() {
+		if (pending(VOICE)) {
+			super.setVoice(this.json.decode(VOICE, Voice.class));
+		}
+		return super.getVoice();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setVoice(Voice)
+	 */
+	@Override
+	public synchronized void setVoice(Voice voice) {
+		set(VOICE);
+		super.setVoice(voice);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getCaption()
+	 */
+	@Override
+	public synchronized String getCaption() {
+		if (pending(CAPTION)) {
+			super.setCaption(this.json.getString(CAPTION));
+		}
+		return super.getCaption();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setCaption(String)
+	 */
+	@Override
+	public synchronized void setCaption(String caption) {
+		set(CAPTION);
+		super.setCaption(caption);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getContact()
+	 */
+	@Override
+	public synchronized Contact getContact() {
+		if (pending(CONTACT)) {
+			super.setContact(this.json.decode(CONTACT, Contact.class));
+		}
+		return super.getContact();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setContact(Contact)
+	 */
+	@Override
+	public synchronized void setContact(Contact contact) {
+		set(CONTACT);
+		super.setContact(contact);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getLocation()
+	 */
+	@Override
+	public synchronized Location getLocation() {
+		if (pending(LOCATION)) {
+			super.setLocation(this.json.decode(LOCATION, Location.class));
+		}
+		return super.getLocation();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setLocation(Location)
+	 */
+	@Override
+	public synchronized void setLocation(Location location) {
+		set(LOCATION);
+		super.setLocation(location);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getVenue()
+	 */
+	@Override
+	public synchronized Venue getVenue() {
+		if (pending(VENUE)) {
+			super.setVenue(this.json.decode(VENUE, Venue.class));
+		}
+		return super.getVenue();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setVenue(Venue)
+	 */
+	@Override
+	public synchronized void setVenue(Venue venue) {
+		set(VENUE);
+		super.setVenue(venue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getNewChatMember()
+	 */
+	@Override
+	public synchronized User getNewChatMember() {
+		if (pending(NEW_CHAT_MEMBER)) {
+			super.setNewChatMember(
+					this.json.decode(NEW_CHAT_MEMBER, User.class));
+		}
+		return super.getNewChatMember();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setNewChatMember(User)
+	 */
+	@Override
+	public synchronized void setNewChatMember(User newChatMember) {
+		set(NEW_CHAT_MEMBER);
+		super.setNewChatMember(newChatMember);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getLeftChatMember()
+	 */
+	@Override
+	public synchronized User getLeftChatMember() {
+		if (pending(LEFT_CHAT_MEMBER)) {
+			super.setLeftChatMember(
+					this.json.decode(LEFT_CHAT_MEMBER, User.class));
+		}
+		return super.getLeftChatMember();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setLeftChatMember(User)
+	 */
+	@Override
+	public synchronized void setLeftChatMember(User leftChatMember) {
+		set(LEFT_CHAT_MEMBER);
+		super.setLeftChatMember(leftChatMember);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getNewChatTitle()
+	 */
+	@Override
+	public synchronized String getNewChatTitle() {
+		if (pending(NEW_CHAT_TITLE)) {
+			super.setNewChatTitle(this.json.getString(NEW_CHAT_TITLE));
+		}
+		return super.getNewChatTitle();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setNewChatTitle(String)
+	 */
+	@Override
+	public synchronized void setNewChatTitle(String newChatTitle) {
+		set(NEW_CHAT_TITLE);
+		super.setNewChatTitle(newChatTitle);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getNewChatPhoto()
+	 */
+	@Override
+	public synchronized List<PhotoSize> getNewChatPhoto() {
+		if (pending(NEW_CHAT_PHOTO)) {
+			super.setNewChatPhoto(
+					this.json.decode(NEW_CHAT_PHOTO, PHOTOS_TYPE));
+		}
+		return super.getNewChatPhoto();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setNewChatPhoto(List)
+	 */
+	@Override
+	public synchronized void setNewChatPhoto(List<PhotoSize> newChatPhoto) {
+		set(NEW_CHAT_PHOTO);
+		super.setNewChatPhoto(newChatPhoto);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#isDeleteChatPhoto()
+	 */
+	@Override
+	public synchronized boolean isDeleteChatPhoto() {
+		if (pending(DELETE_CHAT_PHOTO)) {
+			super.setDeleteChatPhoto(this.json.getBoolean(DELETE_CHAT_PHOTO));
+		}
+		return super.isDeleteChatPhoto();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setDeleteChatPhoto(boolean)
+	 */
+	@Override
+	public synchronized void setDeleteChatPhoto(boolean deleteChatPhoto) {
+		set(DELETE_CHAT_PHOTO);
+		super.setDeleteChatPhoto(deleteChatPhoto);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#isGroupChatCreated()
+	 */
+	@Override
+	public synchronized boolean isGroupChatCreated() {
+		if (pending(GROUP_CHAT_CREATED)) {
+			super.setGroupChatCreated(this.json.getBoolean(GROUP_CHAT_CREATED));
+		}
+		return super.isGroupChatCreated();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setGroupChatCreated(boolean)
+	 */
+	@Override
+	public synchronized void setGroupChatCreated(boolean groupChatCreated) {
+		set(GROUP_CHAT_CREATED);
+		super.setGroupChatCreated(groupChatCreated);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#isSupergroupChatCreated()
+	 */
+	@Override
+	public synchronized boolean isSupergroupChatCreated() {
+		if (pending(SUPERGROUP_CHAT_CREATED)) {
+			super.setSupergroupChatCreated(
+					this.json.getBoolean(SUPERGROUP_CHAT_CREATED));
+		}
+		return super.isSupergroupChatCreated();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setSupergroupChatCreated(boolean)
+	 */
+	@Override
+	public synchronized void setSupergroupChatCreated(boolean supergroupChatCreated) {
+		set(SUPERGROUP_CHAT_CREATED);
+		super.setSupergroupChatCreated(supergroupChatCreated);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#isChannelChatCreated()
+	 */
+	@Override
+	public synchronized boolean isChannelChatCreated() {
+		if (pending(CHANNEL_CHAT_CREATED)) {
+			super.setChannelChatCreated(
+					this.json.getBoolean(CHANNEL_CHAT_CREATED));
+		}
+		return super.isChannelChatCreated();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setChannelChatCreated(boolean)
+	 */
+	@Override
+	public synchronized void setChannelChatCreated(boolean channelChatCreated) {
+		set(CHANNEL_CHAT_CREATED);
+		super.setChannelChatCreated(channelChatCreated);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getMigrateToChatId()
+	 */
+	@Override
+	public synchronized String getMigrateToChatId() {
+		if (pending(MIGRATE_TO_CHAT_ID)) {
+			super.setMigrateToChatId(this.json.getString(MIGRATE_TO_CHAT_ID));
+		}
+		return super.getMigrateToChatId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setMigrateToChatId(String)
+	 */
+	@Override
+	public synchronized void setMigrateToChatId(String migrateToChatId) {
+		set(MIGRATE_TO_CHAT_ID);
+		super.setMigrateToChatId(migrateToChatId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getMigrateFromChatId()
+	 */
+	@Override
+	public synchronized String getMigrateFromChatId() {
+		if (pending(MIGRATE_FROM_CHAT_ID)) {
+			super.setMigrateFromChatId(
+					this.json.getString(MIGRATE_FROM_CHAT_ID));
+		}
+		return super.getMigrateFromChatId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setMigrateFromChatId(String)
+	 */
+	@Override
+	public synchronized void setMigrateFromChatId(String migrateFromChatId) {
+		set(MIGRATE_FROM_CHAT_ID);
+		super.setMigrateFromChatId(migrateFromChatId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#getPinnedMessage()
+	 */
+	@Override
+	public synchronized Message getPinnedMessage() {
+		if (pending(PINNED_MESSAGE)) {
+			super.setPinnedMessage(message(PINNED_MESSAGE));
+		}
+		return super.getPinnedMessage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#setPinnedMessage(Message)
+	 */
+	@Override
+	public synchronized void setPinnedMessage(Message pinnedMessage) {
+		set(PINNED_MESSAGE);
+		super.setPinnedMessage(pinnedMessage);
+	}
+
+	/**
+	 * Decodes all the fields before serializing this message.
+	 *
+	 * @return this message.
+	 */
+	private Object writeReplace() {
+		materialize();
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		materialize();
+		if (obj instanceof LazyMessage) {
+			((LazyMessage) obj).materialize();
+		}
+		return super.equals(obj);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.Message#toString()
+	 */
+	@Override
+	public String toString() {
+		materialize();
+		return super.toString();
+	}
+
+}
@@ -4,14 +4,16 @@
 package co.aurasphere.botmill.telegram.model;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.List;
 
 import javax.validation.Valid;
-import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Min;
 
 import org.hibernate.validator.constraints.NotBlank;
 
+import co.aurasphere.botmill.telegram.internal.util.time.UnixTimeUtils;
 import co.aurasphere.botmill.telegram.model.game.Game;
 
 import com.google.gson.annotations.SerializedName;
@@ -43,11 +45,10 @@ public class Message implements Serializable {
 	private User from;
 
 	/**
-	 * Date the message was sent in Unix time.
+	 * Date the message was sent in Unix time, in seconds.
 	 */
-	// TODO: Check deserialization from integer (use facebot deserializer).
-	@NotNull
-	private Calendar date;
+	@Min(1)
+	private long date;
 
 	/**
 	 * Conversation the message belongs to.
@@ -80,11 +81,10 @@ public class Message implements Serializable {
 
 	/**
 	 * Optional. For forwarded messages, date the original message was sent in
-	 * Unix time.
+	 * Unix time, in seconds.
 	 */
-	// TODO: Check deserialization from integer (use facebot deserializer).
 	@SerializedName("forward_date")
-	private Calendar forwardDate;
+	private long forwardDate;
 
 	/**
 	 * Optional. For replies, the original message. Note that the Message object
@@ -96,11 +96,10 @@ public class Message implements Serializable {
 	private Message replyToMessage;
 
 	/**
-	 * Optional. Date the message was last edited in Unix time.
+	 * Optional. Date the message was last edited in Unix time, in seconds.
 	 */
-	// TODO: Check deserialization from integer (use facebot deserializer).
 	@SerializedName("edit_date")
-	private Calendar editDate;
+	private long editDate;
 
 	/**
 	 * Optional. For text messages, the actual UTF-8 text of the message, 0-4096
@@ -311,12 +310,39 @@ public class Message implements Serializable {
 		this.from = from;
 	}
 
+	/**
+	 * Gets the {@link #date} as a Calendar, created at each call.
+	 *
+	 * @return the {@link #date} or null if not set.
+	 */
+	public Calendar getDate() {
+		return UnixTimeUtils.toCalendar(getDateEpochSecond());
+	}
+
+	/**
+	 * Sets the {@link #date} from a Calendar, truncated to the second.
+	 *
+	 * @param date the {@link #date} to set.
+	 */
+	public void setDate(Calendar date) {
+		setDateEpochSecond(UnixTimeUtils.toEpochSecond(date));
+	}
+
+	/**
+	 * Gets the {@link #date} as an Instant.
+	 *
+	 * @return the {@link #date} or null if not set.
+	 */
+	public Instant getDateInstant() {
+		return UnixTimeUtils.toInstant(getDateEpochSecond());
+	}
+
 	/**
 	 * Gets the {@link #date}.
 	 *
 	 * @return the {@link #date}.
 	 */
-	public Calendar getDate() {
+	public long getDateEpochSecond() {
 		return date;
 	}
 
@@ -325,7 +351,7 @@ public class Message implements Serializable {
 	 *
 	 * @param date the {@link #date} to set.
 	 */
-	public void setDate(Calendar date) {
+	public void setDateEpochSecond(long date) {
 		this.date = date;
 	}
 
@@ -401,12 +427,39 @@ public class Message implements Serializable {
 		this.forwardFromMessageId = forwardFromMessageId;
 	}
 
+	/**
+	 * Gets the {@link #forwardDate} as a Calendar, created at each call.
+	 *
+	 * @return the {@link #forwardDate} or null if not set.
+	 */
+	public Calendar getForwardDate() {
+		return UnixTimeUtils.toCalendar(getForwardDateEpochSecond());
+	}
+
+	/**
+	 * Sets the {@link #forwardDate} from a Calendar, truncated to the second.
+	 *
+	 * @param forwardDate the {@link #forwardDate} to set.
+	 */
+	public void setForwardDate(Calendar forwardDate) {
+		setForwardDateEpochSecond(UnixTimeUtils.toEpochSecond(forwardDate));
+	}
+
+	/**
+	 * Gets the {@link #forwardDate} as an Instant.
+	 *
+	 * @return the {@link #forwardDate} or null if not set.
+	 */
+	public Instant getForwardDateInstant() {
+		return UnixTimeUtils.toInstant(getForwardDateEpochSecond());
+	}
+
 	/**
 	 * Gets the {@link #forwardDate}.
 	 *
 	 * @return the {@link #forwardDate}.
 	 */
-	public Calendar getForwardDate() {
+	public long getForwardDateEpochSecond() {
 		return forwardDate;
 	}
 
@@ -415,7 +468,7 @@ public class Message implements Serializable {
 	 *
 	 * @param forwardDate the {@link #forwardDate} to set.
 	 */
-	public void setForwardDate(Calendar forwardDate) {
+	public void setForwardDateEpochSecond(long forwardDate) {
 		this.forwardDate = forwardDate;
 	}
 
@@ -437,12 +490,39 @@ public class Message implements Serializable {
 		this.replyToMessage = replyToMessage;
 	}
 
+	/**
+	 * Gets the {@link #editDate} as a Calendar, created at each call.
+	 *
+	 * @return the {@link #editDate} or null if not set.
+	 */
+	public Calendar getEditDate() {
+		return UnixTimeUtils.toCalendar(getEditDateEpochSecond());
+	}
+
+	/**
+	 * Sets the {@link #editDate} from a Calendar, truncated to the second.
+	 *
+	 * @param editDate the {@link #editDate} to set.
+	 */
+	public void setEditDate(Calendar editDate) {
+		setEditDateEpochSecond(UnixTimeUtils.toEpochSecond(editDate));
+	}
+
+	/**
+	 * Gets the {@link #editDate} as an Instant.
+	 *
+	 * @return the {@link #editDate} or null if not set.
+	 */
+	public Instant getEditDateInstant() {
+		return UnixTimeUtils.toInstant(getEditDateEpochSecond());
+	}
+
 	/**
 	 * Gets the {@link #editDate}.
 	 *
 	 * @return the {@link #editDate}.
 	 */
-	public Calendar getEditDate() {
+	public long getEditDateEpochSecond() {
 		return editDate;
 	}
 
@@ -451,7 +531,7 @@ public class Message implements Serializable {
 	 *
 	 * @param editDate the {@link #editDate} to set.
 	 */
-	public void setEditDate(Calendar editDate) {
+	public void setEditDateEpochSecond(long editDate) {
 		this.editDate = editDate;
 	}
 
@@ -897,12 +977,10 @@ public class Message implements Serializable {
 		result = prime * result + ((caption == null) ? 0 : caption.hashCode());
 		result = prime * result + (channelChatCreated ? 1231 : 1237);
 		result = prime * result + ((chat == null) ? 0 : chat.hashCode());
-		result = prime * result + ((date == null) ? 0 : date.hashCode());
+		result = prime * result + (int) (date ^ (date >>> 32));
 		result = prime * result + (deleteChatPhoto ? 1231 : 1237);
-		result = prime * result
-				+ ((editDate == null) ? 0 : editDate.hashCode());
-		result = prime * result
-				+ ((forwardDate == null) ? 0 : forwardDate.hashCode());
+		result = prime * result + (int) (editDate ^ (editDate >>> 32));
+		result = prime * result + (int) (forwardDate ^ (forwardDate >>> 32));
 		result = prime * result
 				+ ((forwardFrom == null) ? 0 : forwardFrom.hashCode());
 		result = prime * result
@@ -960,22 +1038,13 @@ public class Message implements Serializable {
 				return false;
 		} else if (!chat.equals(other.chat))
 			return false;
-		if (date == null) {
-			if (other.date != null)
-				return false;
-		} else if (!date.equals(other.date))
+		if (date != other.date)
 			return false;
 		if (deleteChatPhoto != other.deleteChatPhoto)
 			return false;
-		if (editDate == null) {
-			if (other.editDate != null)
-				return false;
-		} else if (!editDate.equals(other.editDate))
+		if (editDate != other.editDate)
 			return false;
-		if (forwardDate == null) {
-			if (other.forwardDate != null)
-				return false;
-		} else if (!forwardDate.equals(other.forwardDate))
+		if (forwardDate != other.forwardDate)
 			return false;
 		if (forwardFrom == null) {
 			if (other.forwardFrom != null)
@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.model.outcoming.response;
+
+import co.aurasphere.botmill.telegram.internal.util.json.JsonTemplate;
+import co.aurasphere.botmill.telegram.internal.util.network.TelegramMethod;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A response whose JSON was serialized in advance into a
+ * {@link JsonTemplate}. Only the chat ID and the ID of the message replied to
+ * are written when the response is sent.
+ * 
+ * @author Donato Rimenti
+ */
+public class PreparedResponse extends TelegramBotMillResponse {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The template holding the rest of the JSON.
+	 */
+	private final transient JsonTemplate template;
+
+	/**
+	 * If the message is a reply, ID of the original message. Ignored if the
+	 * {@link #template} has no slot for it.
+	 */
+	@SerializedName("reply_to_message_id")
+	private int replyToMessageId;
+
+	/**
+	 * Instantiates a new PreparedResponse.
+	 *
+	 * @param template
+	 *            the {@link #template}.
+	 * @param telegramMethod
+	 *            the method to call.
+	 * @param chatId
+	 *            the {@link #chatId}.
+	 * @param replyToMessageId
+	 *            the {@link #replyToMessageId}.
+	 */
+	public PreparedResponse(JsonTemplate template,
+			TelegramMethod telegramMethod, String chatId, int replyToMessageId) {
+		this.template = template;
+		this.telegramMethod = telegramMethod;
+		this.chatId = chatId;
+		this.replyToMessageId = replyToMessageId;
+	}
+
+	/**
+	 * Renders the JSON of this response.
+	 *
+	 * @return the UTF-8 JSON.
+	 */
+	public byte[] toJsonBytes() {
+		return this.template.render(this.chatId, this.replyToMessageId);
+	}
+
+	/**
+	 * Gets the {@link #template}.
+	 *
+	 * @return the {@link #template}.
+	 */
+	public JsonTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Gets the {@link #replyToMessageId}.
+	 *
+	 * @return the {@link #replyToMessageId}.
+	 */
+	public int getReplyToMessageId() {
+		return replyToMessageId;
+	}
+
+	/**
+	 * Sets the {@link #replyToMessageId}.
+	 *
+	 * @param replyToMessageId
+	 *            the {@link #replyToMessageId} to set.
+	 */
+	public void setReplyToMessageId(int replyToMessageId) {
+		this.replyToMessageId = replyToMessageId;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse
+	 * #hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + replyToMessageId;
+		result = prime * result
+				+ ((template == null) ? 0 : template.hashCode());
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse
+	 * #equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PreparedResponse other = (PreparedResponse) obj;
+		if (replyToMessageId != other.replyToMessageId)
+			return false;
+		if (template != other.template)
+			return false;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse
+	 * #toString()
+	 */
+	@Override
+	public String toString() {
+		return "PreparedResponse [template=" + template
+				+ ", replyToMessageId=" + replyToMessageId + ", chatId="
+				+ chatId + "]";
+	}
+
+}
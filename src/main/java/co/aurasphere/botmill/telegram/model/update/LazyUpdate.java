@@ -0,0 +1,395 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.model.update;
+
+import co.aurasphere.botmill.telegram.internal.util.json.RawJsonObject;
+import co.aurasphere.botmill.telegram.model.CallbackQuery;
+import co.aurasphere.botmill.telegram.model.LazyMessage;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.inline.ChosenInlineResult;
+import co.aurasphere.botmill.telegram.model.inline.InlineQuery;
+
+/**
+ * An {@link Update} which keeps the raw UTF-8 bytes it was received as, along
+ * with the position of its fields, and decodes each field only when it's
+ * first accessed. Messages are decoded as {@link LazyMessage}, so only the
+ * fields a bot actually reads are ever decoded. Fields can still be set, in
+ * which case the raw value is ignored.
+ * 
+ * @author Donato Rimenti
+ */
+public class LazyUpdate extends Update {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The indexed keys. The position of each key is used as its ID.
+	 */
+	private static final byte[][] KEYS = RawJsonObject.keys("update_id",
+			"message",
+			"edited_message",
+			"channel_post",
+			"edited_channel_post",
+			"inline_query",
+			"chosen_inline_result",
+			"callback_query");
+
+	/**
+	 * ID of the "update_id" key.
+	 */
+	private static final int UPDATE_ID = 0;
+
+	/**
+	 * ID of the "message" key.
+	 */
+	private static final int MESSAGE = 1;
+
+	/**
+	 * ID of the "edited_message" key.
+	 */
+	private static final int EDITED_MESSAGE = 2;
+
+	/**
+	 * ID of the "channel_post" key.
+	 */
+	private static final int CHANNEL_POST = 3;
+
+	/**
+	 * ID of the "edited_channel_post" key.
+	 */
+	private static final int EDITED_CHANNEL_POST = 4;
+
+	/**
+	 * ID of the "inline_query" key.
+	 */
+	private static final int INLINE_QUERY = 5;
+
+	/**
+	 * ID of the "chosen_inline_result" key.
+	 */
+	private static final int CHOSEN_INLINE_RESULT = 6;
+
+	/**
+	 * ID of the "callback_query" key.
+	 */
+	private static final int CALLBACK_QUERY = 7;
+
+	/**
+	 * The raw JSON of this update, null once deserialized through Java
+	 * serialization, which materializes all the fields first.
+	 */
+	private transient RawJsonObject json;
+
+	/**
+	 * Bit mask of the keys already decoded or set.
+	 */
+	private transient int decoded;
+
+	/**
+	 * Instantiates a new LazyUpdate. Only the update ID is decoded right away.
+	 *
+	 * @param raw
+	 *            the raw JSON of the update, as UTF-8 bytes. The array must
+	 *            not be modified afterwards.
+	 * @throws com.google.gson.JsonParseException
+	 *             if the bytes are not a valid JSON object.
+	 */
+	public LazyUpdate(byte[] raw) {
+		this.json = new RawJsonObject(raw, 0, KEYS);
+		super.setUpdateId(this.json.getString(UPDATE_ID));
+	}
+
+	/**
+	 * Checks if a key still has to be decoded, marking it as decoded.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 * @return true if the key has to be decoded.
+	 */
+	private boolean pending(int key) {
+		int bit = 1 << key;
+		if (this.json == null || (this.decoded & bit) != 0) {
+			return false;
+		}
+		this.decoded |= bit;
+		return this.json.has(key);
+	}
+
+	/**
+	 * Marks a key as set, so that its raw value is ignored.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 */
+	private void set(int key) {
+		this.decoded |= 1 << key;
+	}
+
+	/**
+	 * Decodes a message.
+	 *
+	 * @param key
+	 *            the ID of the key.
+	 * @return the message, lazy as well.
+	 */
+	private Message message(int key) {
+		return new LazyMessage(this.json.getRaw(), this.json.getStart(key));
+	}
+
+	/**
+	 * Decodes all the fields not decoded yet. Needed before handing this update
+	 * to code which reads its fields directly, like Gson serialization.
+	 */
+	public synchronized void materialize() {
+		getMessage();
+		getEditedMessage();
+		getChannelPost();
+		getEditedChannelPost();
+		getInlineQuery();
+		getChosenInlineResult();
+		getCallbackQuery();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getMessage()
+	 */
+	@Override
+	public synchronized Message getMessage() {
+		if (pending(MESSAGE)) {
+			super.setMessage(message(MESSAGE));
+		}
+		return super.getMessage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setMessage(Message)
+	 */
+	@Override
+	public synchronized void setMessage(Message message) {
+		set(MESSAGE);
+		super.setMessage(message);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getEditedMessage()
+	 */
+	@Override
+	public synchronized Message getEditedMessage() {
+		if (pending(EDITED_MESSAGE)) {
+			super.setEditedMessage(message(EDITED_MESSAGE));
+		}
+		return super.getEditedMessage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setEditedMessage(Message)
+	 */
+	@Override
+	public synchronized void setEditedMessage(Message editedMessage) {
+		set(EDITED_MESSAGE);
+		super.setEditedMessage(editedMessage);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getChannelPost()
+	 */
+	@Override
+	public synchronized Message getChannelPost() {
+		if (pending(CHANNEL_POST)) {
+			super.setChannelPost(message(CHANNEL_POST));
+		}
+		return super.getChannelPost();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setChannelPost(Message)
+	 */
+	@Override
+	public synchronized void setChannelPost(Message channelPost) {
+		set(CHANNEL_POST);
+		super.setChannelPost(channelPost);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getEditedChannelPost()
+	 */
+	@Override
+	public synchronized Message getEditedChannelPost() {
+		if (pending(EDITED_CHANNEL_POST)) {
+			super.setEditedChannelPost(message(EDITED_CHANNEL_POST));
+		}
+		return super.getEditedChannelPost();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setEditedChannelPost(Message)
+	 */
+	@Override
+	public synchronized void setEditedChannelPost(Message editedChannelPost) {
+		set(EDITED_CHANNEL_POST);
+		super.setEditedChannelPost(editedChannelPost);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getInlineQuery()
+	 */
+	@Override
+	public synchronized InlineQuery getInlineQuery() {
+		if (pending(INLINE_QUERY)) {
+			super.setInlineQuery(
+					this.json.decode(INLINE_QUERY, InlineQuery.class));
+		}
+		return super.getInlineQuery();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setInlineQuery(InlineQuery)
+	 */
+	@Override
+	public synchronized void setInlineQuery(InlineQuery inlineQuery) {
+		set(INLINE_QUERY);
+		super.setInlineQuery(inlineQuery);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getChosenInlineResult()
+	 */
+	@Override
+	public synchronized ChosenInlineResult getChosenInlineResult() {
+		if (pending(CHOSEN_INLINE_RESULT)) {
+			super.setChosenInlineResult(
+					this.json.decode(CHOSEN_INLINE_RESULT, ChosenInlineResult.class));
+		}
+		return super.getChosenInlineResult();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setChosenInlineResult(ChosenInlineResult)
+	 */
+	@Override
+	public synchronized void setChosenInlineResult(ChosenInlineResult chosenInlineResult) {
+		set(CHOSEN_INLINE_RESULT);
+		super.setChosenInlineResult(chosenInlineResult);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#getCallbackQuery()
+	 */
+	@Override
+	public synchronized CallbackQuery getCallbackQuery() {
+		if (pending(CALLBACK_QUERY)) {
+			super.setCallbackQuery(
+					this.json.decode(CALLBACK_QUERY, CallbackQuery.class));
+		}
+		return super.getCallbackQuery();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#setCallbackQuery(CallbackQuery)
+	 */
+	@Override
+	public synchronized void setCallbackQuery(CallbackQuery callbackQuery) {
+		set(CALLBACK_QUERY);
+		super.setCallbackQuery(callbackQuery);
+	}
+
+	/**
+	 * Decodes all the fields before serializing this update.
+	 *
+	 * @return this update.
+	 */
+	private Object writeReplace() {
+		materialize();
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * co.aurasphere.botmill.telegram.model.update.Update#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		materialize();
+		if (obj instanceof LazyUpdate) {
+			((LazyUpdate) obj).materialize();
+		}
+		return super.equals(obj);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see co.aurasphere.botmill.telegram.model.update.Update#toString()
+	 */
+	@Override
+	public String toString() {
+		materialize();
+		return super.toString();
+	}
+
+}
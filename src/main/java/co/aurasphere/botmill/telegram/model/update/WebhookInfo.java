@@ -24,9 +24,12 @@
 package co.aurasphere.botmill.telegram.model.update;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.List;
 
+import co.aurasphere.botmill.telegram.internal.util.time.UnixTimeUtils;
+
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -60,13 +63,12 @@ public class WebhookInfo implements Serializable {
 	@SerializedName("pending_update_count")
 	private int pendingUpdateCount;
 
-	// TODO: check if this works
 	/**
-	 * Optional. Unix time for the most recent error that happened when trying
-	 * to deliver an update via webhook.
+	 * Optional. Unix time in seconds for the most recent error that happened
+	 * when trying to deliver an update via webhook.
 	 */
 	@SerializedName("last_error_date")
-	private Calendar lastErrorDate;
+	private long lastErrorDate;
 
 	/**
 	 * Optional. Error message in human-readable format for the most recent
@@ -143,12 +145,39 @@ public class WebhookInfo implements Serializable {
 		this.pendingUpdateCount = pendingUpdateCount;
 	}
 
+	/**
+	 * Gets the {@link #lastErrorDate} as a Calendar, created at each call.
+	 *
+	 * @return the {@link #lastErrorDate} or null if not set.
+	 */
+	public Calendar getLastErrorDate() {
+		return UnixTimeUtils.toCalendar(getLastErrorDateEpochSecond());
+	}
+
+	/**
+	 * Sets the {@link #lastErrorDate} from a Calendar, truncated to the second.
+	 *
+	 * @param lastErrorDate the {@link #lastErrorDate} to set.
+	 */
+	public void setLastErrorDate(Calendar lastErrorDate) {
+		setLastErrorDateEpochSecond(UnixTimeUtils.toEpochSecond(lastErrorDate));
+	}
+
+	/**
+	 * Gets the {@link #lastErrorDate} as an Instant.
+	 *
+	 * @return the {@link #lastErrorDate} or null if not set.
+	 */
+	public Instant getLastErrorDateInstant() {
+		return UnixTimeUtils.toInstant(getLastErrorDateEpochSecond());
+	}
+
 	/**
 	 * Gets the {@link #lastErrorDate}.
 	 *
 	 * @return the {@link #lastErrorDate}.
 	 */
-	public Calendar getLastErrorDate() {
+	public long getLastErrorDateEpochSecond() {
 		return lastErrorDate;
 	}
 
@@ -157,7 +186,7 @@ public class WebhookInfo implements Serializable {
 	 *
 	 * @param lastErrorDate the {@link #lastErrorDate} to set.
 	 */
-	public void setLastErrorDate(Calendar lastErrorDate) {
+	public void setLastErrorDateEpochSecond(long lastErrorDate) {
 		this.lastErrorDate = lastErrorDate;
 	}
 
@@ -223,8 +252,7 @@ public class WebhookInfo implements Serializable {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (hasCustomCertificate ? 1231 : 1237);
-		result = prime * result
-				+ ((lastErrorDate == null) ? 0 : lastErrorDate.hashCode());
+		result = prime * result + (int) (lastErrorDate ^ (lastErrorDate >>> 32));
 		result = prime
 				* result
 				+ ((lastErrorMessage == null) ? 0 : lastErrorMessage.hashCode());
@@ -248,10 +276,7 @@ public class WebhookInfo implements Serializable {
 		WebhookInfo other = (WebhookInfo) obj;
 		if (hasCustomCertificate != other.hasCustomCertificate)
 			return false;
-		if (lastErrorDate == null) {
-			if (other.lastErrorDate != null)
-				return false;
-		} else if (!lastErrorDate.equals(other.lastErrorDate))
+		if (lastErrorDate != other.lastErrorDate)
 			return false;
 		if (lastErrorMessage == null) {
 			if (other.lastErrorMessage != null)
@@ -23,6 +23,11 @@
  */
 package co.aurasphere.botmill.telegram.support;
 
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
 
 /**
  * Base interface for monitoring raw data from BotMill framework and Facebook
@@ -84,16 +89,18 @@ public interface TelegramBotMillMonitor {
 //	 */
 //	public void onGetReceived(HttpServletRequest request);
 //
-//	/**
-//	 * Callback processed each time there is a validation error on the response
-//	 * produced by the bots.
-//	 * 
-//	 * @param response
-//	 *            the invalid response produced by the bot.
-//	 * @param constraintViolations
-//	 *            the constraint violations for the current response.
-//	 */
-//	public void onValidationError(TelegramBotMillResponse response,
-//			Set<ConstraintViolation<TelegramBotMillResponse>> constraintViolations);
-//
+	/**
+	 * Callback processed each time there is a validation error on the response
+	 * produced by the bots. The default implementation does nothing.
+	 * 
+	 * @param response
+	 *            the invalid response produced by the bot.
+	 * @param constraintViolations
+	 *            the constraint violations for the current response.
+	 */
+	default void onValidationError(
+			TelegramBotMillResponse response,
+			Set<ConstraintViolation<TelegramBotMillResponse>> constraintViolations) {
+	}
+
 }
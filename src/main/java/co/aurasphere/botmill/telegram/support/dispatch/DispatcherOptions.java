@@ -0,0 +1,284 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.dispatch;
+
+import java.io.Serializable;
+
+/**
+ * Options for the update dispatcher, which processes the incoming updates on
+ * a set of worker lanes. Updates of the same chat always go to the same lane,
+ * so they are processed in order, while updates of different chats are
+ * processed in parallel. The dispatcher is disabled by default, in which case
+ * updates are processed by the thread which received them.
+ *
+ * @author Donato Rimenti
+ */
+public class DispatcherOptions implements Serializable {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Boolean that indicates whether the dispatcher is enabled or not.
+	 */
+	private boolean enabled;
+
+	/**
+	 * The number of lanes, each served by its own thread. Defaults to the
+	 * number of available processors.
+	 */
+	private int lanes;
+
+	/**
+	 * The maximum number of updates waiting in a single lane.
+	 */
+	private int laneQueueCapacity;
+
+	/**
+	 * What to do when the queue of a lane is full.
+	 */
+	private SaturationPolicy saturationPolicy;
+
+	/**
+	 * Boolean that indicates whether the webhook servlet acknowledges an update
+	 * as soon as it has been queued instead of waiting for it to be processed.
+	 * Telegram doesn't send the next update to a connection until the previous
+	 * one has been acknowledged, so this decouples the webhook throughput from
+	 * the time spent replying. It only applies when the dispatcher is enabled
+	 * or virtual threads are used: otherwise, the updates are processed by the
+	 * servlet before being acknowledged and this option is ignored.
+	 */
+	private boolean immediateAck;
+
+	/**
+	 * The HTTP status returned to Telegram when an update can't be queued, so
+	 * that it will be delivered again later. Usually 503 or 429.
+	 */
+	private int rejectedStatusCode;
+
+	/**
+	 * How the action frames triggered by the same update are run by bots
+	 * which don't stop at the first one. Unlike the other options, this one
+	 * applies even if the dispatcher is disabled.
+	 */
+	private FrameExecution frameExecution;
+
+	/**
+	 * The maximum number of threads running action frames concurrently when
+	 * the {@link #frameExecution} is not {@link FrameExecution#SEQUENTIAL}.
+	 * When they are all busy, the frames are run by the thread processing the
+	 * update.
+	 */
+	private int framePoolSize;
+
+	/**
+	 * Instantiates a new DispatcherOptions with the default values.
+	 */
+	public DispatcherOptions() {
+		this.enabled = false;
+		this.lanes = Runtime.getRuntime().availableProcessors();
+		this.laneQueueCapacity = 1000;
+		this.saturationPolicy = SaturationPolicy.BLOCK;
+		this.immediateAck = false;
+		this.rejectedStatusCode = 503;
+		this.frameExecution = FrameExecution.SEQUENTIAL;
+		this.framePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+	}
+
+	/**
+	 * Checks if the dispatcher is enabled.
+	 *
+	 * @return true, if the dispatcher is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the {@link #enabled}.
+	 *
+	 * @param enabled
+	 *            the {@link #enabled} to set.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the {@link #lanes}.
+	 *
+	 * @return the {@link #lanes}.
+	 */
+	public int getLanes() {
+		return lanes;
+	}
+
+	/**
+	 * Sets the {@link #lanes}.
+	 *
+	 * @param lanes
+	 *            the {@link #lanes} to set.
+	 */
+	public void setLanes(int lanes) {
+		this.lanes = lanes;
+	}
+
+	/**
+	 * Gets the {@link #laneQueueCapacity}.
+	 *
+	 * @return the {@link #laneQueueCapacity}.
+	 */
+	public int getLaneQueueCapacity() {
+		return laneQueueCapacity;
+	}
+
+	/**
+	 * Sets the {@link #laneQueueCapacity}.
+	 *
+	 * @param laneQueueCapacity
+	 *            the {@link #laneQueueCapacity} to set.
+	 */
+	public void setLaneQueueCapacity(int laneQueueCapacity) {
+		this.laneQueueCapacity = laneQueueCapacity;
+	}
+
+	/**
+	 * Gets the {@link #saturationPolicy}.
+	 *
+	 * @return the {@link #saturationPolicy}.
+	 */
+	public SaturationPolicy getSaturationPolicy() {
+		return saturationPolicy;
+	}
+
+	/**
+	 * Sets the {@link #saturationPolicy}.
+	 *
+	 * @param saturationPolicy
+	 *            the {@link #saturationPolicy} to set.
+	 */
+	public void setSaturationPolicy(SaturationPolicy saturationPolicy) {
+		this.saturationPolicy = saturationPolicy;
+	}
+
+	/**
+	 * Checks if the updates are acknowledged as soon as they are queued.
+	 *
+	 * @return true, if the updates are acknowledged as soon as they are
+	 *         queued.
+	 */
+	public boolean isImmediateAck() {
+		return immediateAck;
+	}
+
+	/**
+	 * Sets the {@link #immediateAck}. It requires the dispatcher to be
+	 * enabled through {@link #setEnabled(boolean)}, otherwise a warning is
+	 * logged and the updates are acknowledged once processed. When enabling
+	 * it, consider using the {@link SaturationPolicy#REJECT} policy, so that a
+	 * full lane is reported to Telegram instead of holding the request.
+	 *
+	 * @param immediateAck
+	 *            the {@link #immediateAck} to set.
+	 */
+	public void setImmediateAck(boolean immediateAck) {
+		this.immediateAck = immediateAck;
+	}
+
+	/**
+	 * Gets the {@link #rejectedStatusCode}.
+	 *
+	 * @return the {@link #rejectedStatusCode}.
+	 */
+	public int getRejectedStatusCode() {
+		return rejectedStatusCode;
+	}
+
+	/**
+	 * Sets the {@link #rejectedStatusCode}.
+	 *
+	 * @param rejectedStatusCode
+	 *            the {@link #rejectedStatusCode} to set.
+	 */
+	public void setRejectedStatusCode(int rejectedStatusCode) {
+		this.rejectedStatusCode = rejectedStatusCode;
+	}
+
+	/**
+	 * Gets the {@link #frameExecution}.
+	 *
+	 * @return the {@link #frameExecution}.
+	 */
+	public FrameExecution getFrameExecution() {
+		return frameExecution;
+	}
+
+	/**
+	 * Sets the {@link #frameExecution}.
+	 *
+	 * @param frameExecution
+	 *            the {@link #frameExecution} to set.
+	 */
+	public void setFrameExecution(FrameExecution frameExecution) {
+		this.frameExecution = frameExecution;
+	}
+
+	/**
+	 * Gets the {@link #framePoolSize}.
+	 *
+	 * @return the {@link #framePoolSize}.
+	 */
+	public int getFramePoolSize() {
+		return framePoolSize;
+	}
+
+	/**
+	 * Sets the {@link #framePoolSize}. This must be called before the first
+	 * update is received.
+	 *
+	 * @param framePoolSize
+	 *            the {@link #framePoolSize} to set.
+	 */
+	public void setFramePoolSize(int framePoolSize) {
+		this.framePoolSize = framePoolSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "DispatcherOptions [enabled=" + enabled + ", lanes=" + lanes
+				+ ", laneQueueCapacity=" + laneQueueCapacity
+				+ ", saturationPolicy=" + saturationPolicy + ", immediateAck="
+				+ immediateAck + ", rejectedStatusCode=" + rejectedStatusCode
+				+ ", frameExecution=" + frameExecution + ", framePoolSize="
+				+ framePoolSize + "]";
+	}
+
+}
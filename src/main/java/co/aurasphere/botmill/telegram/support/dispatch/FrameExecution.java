@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.dispatch;
+
+import co.aurasphere.botmill.core.BotMillPolicy;
+
+/**
+ * Enum that represents how a bot runs the action frames triggered by the same
+ * update when its policy is not {@link BotMillPolicy#FIRST_ONLY}. In all the
+ * modes, a bot returns from processing an update only after all the triggered
+ * frames are done, so the next update of the chat is never processed before.
+ * 
+ * @author Donato Rimenti
+ */
+public enum FrameExecution {
+
+	/**
+	 * The frames are run one after the other by the thread processing the
+	 * update.
+	 */
+	SEQUENTIAL,
+
+	/**
+	 * The frames are run concurrently, so their replies may reach Telegram in
+	 * any order.
+	 */
+	PARALLEL,
+
+	/**
+	 * The responses of the frames are built concurrently, but they are sent
+	 * by the thread processing the update one at a time, in the order of the
+	 * frames and of their replies, whatever their
+	 * {@link co.aurasphere.botmill.telegram.autoreply.SendMode}. Replies whose
+	 * class overrides
+	 * {@link co.aurasphere.botmill.telegram.autoreply.AutoReply#reply(co.aurasphere.botmill.telegram.model.update.Update)}
+	 * are not built in advance: they are sent in their turn by calling it on
+	 * the thread processing the update.
+	 */
+	PARALLEL_ORDERED;
+
+}
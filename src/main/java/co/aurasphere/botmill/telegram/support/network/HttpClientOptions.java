@@ -0,0 +1,353 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.network;
+
+import java.io.Serializable;
+
+/**
+ * Options for the pooled HTTP client used by Telegram BotMill to communicate
+ * with Telegram. These options are read when the client is first created by
+ * the {@link co.aurasphere.botmill.telegram.TelegramBotMillContext}, so they
+ * need to be set before the first request is sent.
+ *
+ * @author Donato Rimenti
+ */
+public class HttpClientOptions implements Serializable {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The maximum number of connections kept in the pool.
+	 */
+	private int maxConnectionsTotal;
+
+	/**
+	 * The maximum number of connections kept in the pool for a single route.
+	 * Since Telegram BotMill only talks to api.telegram.org, this is the
+	 * effective limit of concurrent requests.
+	 */
+	private int maxConnectionsPerRoute;
+
+	/**
+	 * Timeout in milliseconds until a connection is established.
+	 */
+	private int connectTimeout;
+
+	/**
+	 * Timeout in milliseconds while waiting for data on an open connection. It
+	 * must be greater than the long polling timeout used with getUpdates.
+	 */
+	private int socketTimeout;
+
+	/**
+	 * Timeout in milliseconds while waiting for a connection from the pool.
+	 */
+	private int connectionRequestTimeout;
+
+	/**
+	 * How long in milliseconds a connection is kept alive when the server
+	 * doesn't specify it through the Keep-Alive header.
+	 */
+	private long keepAlive;
+
+	/**
+	 * How long in milliseconds a connection can stay idle in the pool before
+	 * being evicted.
+	 */
+	private long maxIdleTime;
+
+	/**
+	 * Period of inactivity in milliseconds after which a pooled connection is
+	 * revalidated before being reused.
+	 */
+	private int validateAfterInactivity;
+
+	/**
+	 * The number of threads used to send requests asynchronously.
+	 */
+	private int asyncPoolSize;
+
+	/**
+	 * The maximum number of asynchronous requests waiting for a thread. When
+	 * the queue is full, the request is sent by the calling thread instead.
+	 */
+	private int asyncQueueCapacity;
+
+	/**
+	 * The maximum number of requests sent to Telegram at the same time when
+	 * running on virtual threads, which don't bound the concurrency by
+	 * themselves. Requests beyond the limit wait for a permit.
+	 *
+	 * @see co.aurasphere.botmill.telegram.TelegramBotMillContext#setVirtualThreadsEnabled(boolean)
+	 */
+	private int maxConcurrentRequests;
+
+	/**
+	 * Instantiates a new HttpClientOptions with the default values.
+	 */
+	public HttpClientOptions() {
+		this.maxConnectionsTotal = 100;
+		this.maxConnectionsPerRoute = 50;
+		this.connectTimeout = 10000;
+		this.socketTimeout = 60000;
+		this.connectionRequestTimeout = 10000;
+		this.keepAlive = 60000;
+		this.maxIdleTime = 30000;
+		this.validateAfterInactivity = 2000;
+		this.asyncPoolSize = 20;
+		this.asyncQueueCapacity = 1000;
+		this.maxConcurrentRequests = 30;
+	}
+
+	/**
+	 * Gets the {@link #maxConnectionsTotal}.
+	 *
+	 * @return the {@link #maxConnectionsTotal}.
+	 */
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	/**
+	 * Sets the {@link #maxConnectionsTotal}.
+	 *
+	 * @param maxConnectionsTotal
+	 *            the {@link #maxConnectionsTotal} to set.
+	 */
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	/**
+	 * Gets the {@link #maxConnectionsPerRoute}.
+	 *
+	 * @return the {@link #maxConnectionsPerRoute}.
+	 */
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Sets the {@link #maxConnectionsPerRoute}.
+	 *
+	 * @param maxConnectionsPerRoute
+	 *            the {@link #maxConnectionsPerRoute} to set.
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Gets the {@link #connectTimeout}.
+	 *
+	 * @return the {@link #connectTimeout}.
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Sets the {@link #connectTimeout}.
+	 *
+	 * @param connectTimeout
+	 *            the {@link #connectTimeout} to set.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Gets the {@link #socketTimeout}.
+	 *
+	 * @return the {@link #socketTimeout}.
+	 */
+	public int getSocketTimeout() {
+		return socketTimeout;
+	}
+
+	/**
+	 * Sets the {@link #socketTimeout}.
+	 *
+	 * @param socketTimeout
+	 *            the {@link #socketTimeout} to set.
+	 */
+	public void setSocketTimeout(int socketTimeout) {
+		this.socketTimeout = socketTimeout;
+	}
+
+	/**
+	 * Gets the {@link #connectionRequestTimeout}.
+	 *
+	 * @return the {@link #connectionRequestTimeout}.
+	 */
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	/**
+	 * Sets the {@link #connectionRequestTimeout}.
+	 *
+	 * @param connectionRequestTimeout
+	 *            the {@link #connectionRequestTimeout} to set.
+	 */
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	/**
+	 * Gets the {@link #keepAlive}.
+	 *
+	 * @return the {@link #keepAlive}.
+	 */
+	public long getKeepAlive() {
+		return keepAlive;
+	}
+
+	/**
+	 * Sets the {@link #keepAlive}.
+	 *
+	 * @param keepAlive
+	 *            the {@link #keepAlive} to set.
+	 */
+	public void setKeepAlive(long keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Gets the {@link #maxIdleTime}.
+	 *
+	 * @return the {@link #maxIdleTime}.
+	 */
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * Sets the {@link #maxIdleTime}.
+	 *
+	 * @param maxIdleTime
+	 *            the {@link #maxIdleTime} to set.
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Gets the {@link #validateAfterInactivity}.
+	 *
+	 * @return the {@link #validateAfterInactivity}.
+	 */
+	public int getValidateAfterInactivity() {
+		return validateAfterInactivity;
+	}
+
+	/**
+	 * Sets the {@link #validateAfterInactivity}.
+	 *
+	 * @param validateAfterInactivity
+	 *            the {@link #validateAfterInactivity} to set.
+	 */
+	public void setValidateAfterInactivity(int validateAfterInactivity) {
+		this.validateAfterInactivity = validateAfterInactivity;
+	}
+
+	/**
+	 * Gets the {@link #asyncPoolSize}.
+	 *
+	 * @return the {@link #asyncPoolSize}.
+	 */
+	public int getAsyncPoolSize() {
+		return asyncPoolSize;
+	}
+
+	/**
+	 * Sets the {@link #asyncPoolSize}.
+	 *
+	 * @param asyncPoolSize
+	 *            the {@link #asyncPoolSize} to set.
+	 */
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
+	/**
+	 * Gets the {@link #asyncQueueCapacity}.
+	 *
+	 * @return the {@link #asyncQueueCapacity}.
+	 */
+	public int getAsyncQueueCapacity() {
+		return asyncQueueCapacity;
+	}
+
+	/**
+	 * Sets the {@link #asyncQueueCapacity}.
+	 *
+	 * @param asyncQueueCapacity
+	 *            the {@link #asyncQueueCapacity} to set.
+	 */
+	public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	/**
+	 * Gets the {@link #maxConcurrentRequests}.
+	 *
+	 * @return the {@link #maxConcurrentRequests}.
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/**
+	 * Sets the {@link #maxConcurrentRequests}.
+	 *
+	 * @param maxConcurrentRequests
+	 *            the {@link #maxConcurrentRequests} to set.
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HttpClientOptions [maxConnectionsTotal=" + maxConnectionsTotal
+				+ ", maxConnectionsPerRoute=" + maxConnectionsPerRoute
+				+ ", connectTimeout=" + connectTimeout + ", socketTimeout="
+				+ socketTimeout + ", connectionRequestTimeout="
+				+ connectionRequestTimeout + ", keepAlive=" + keepAlive
+				+ ", maxIdleTime=" + maxIdleTime + ", validateAfterInactivity="
+				+ validateAfterInactivity + ", asyncPoolSize=" + asyncPoolSize
+				+ ", asyncQueueCapacity=" + asyncQueueCapacity
+				+ ", maxConcurrentRequests=" + maxConcurrentRequests + "]";
+	}
+
+}
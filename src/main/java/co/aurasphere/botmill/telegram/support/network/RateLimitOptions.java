@@ -0,0 +1,247 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.network;
+
+import java.io.Serializable;
+
+/**
+ * Options for the outbound rate limiter, which keeps the bot within the
+ * limits enforced by Telegram. The defaults follow the limits documented by
+ * Telegram: about 30 messages per second overall, 1 message per second to
+ * the same private chat and 20 messages per minute to the same group.
+ * Requests over the limit are delayed, never dropped. The rate limiter is
+ * disabled by default.
+ *
+ * @author Donato Rimenti
+ * @see <a href=
+ *      "https://core.telegram.org/bots/faq#my-bot-is-hitting-limits-how-do-i-avoid-this"
+ *      >Telegram bot limits FAQ</a>
+ */
+public class RateLimitOptions implements Serializable {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Boolean that indicates whether the rate limiter is enabled or not.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of messages sent by the bot in a
+	 * {@link #globalPeriod}.
+	 */
+	private int globalPermits;
+
+	/**
+	 * Period in milliseconds of the {@link #globalPermits}.
+	 */
+	private long globalPeriod;
+
+	/**
+	 * Maximum number of messages sent to the same private chat in a
+	 * {@link #privateChatPeriod}.
+	 */
+	private int privateChatPermits;
+
+	/**
+	 * Period in milliseconds of the {@link #privateChatPermits}.
+	 */
+	private long privateChatPeriod;
+
+	/**
+	 * Maximum number of messages sent to the same group, supergroup or
+	 * channel in a {@link #groupChatPeriod}.
+	 */
+	private int groupChatPermits;
+
+	/**
+	 * Period in milliseconds of the {@link #groupChatPermits}.
+	 */
+	private long groupChatPeriod;
+
+	/**
+	 * Instantiates a new RateLimitOptions with the default Telegram limits.
+	 */
+	public RateLimitOptions() {
+		this.enabled = false;
+		this.globalPermits = 30;
+		this.globalPeriod = 1000;
+		this.privateChatPermits = 1;
+		this.privateChatPeriod = 1000;
+		this.groupChatPermits = 20;
+		this.groupChatPeriod = 60000;
+	}
+
+	/**
+	 * Checks if the rate limiter is enabled.
+	 *
+	 * @return true, if the rate limiter is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the {@link #enabled}.
+	 *
+	 * @param enabled
+	 *            the {@link #enabled} to set.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the {@link #globalPermits}.
+	 *
+	 * @return the {@link #globalPermits}.
+	 */
+	public int getGlobalPermits() {
+		return globalPermits;
+	}
+
+	/**
+	 * Sets the {@link #globalPermits}.
+	 *
+	 * @param globalPermits
+	 *            the {@link #globalPermits} to set.
+	 */
+	public void setGlobalPermits(int globalPermits) {
+		this.globalPermits = globalPermits;
+	}
+
+	/**
+	 * Gets the {@link #globalPeriod}.
+	 *
+	 * @return the {@link #globalPeriod}.
+	 */
+	public long getGlobalPeriod() {
+		return globalPeriod;
+	}
+
+	/**
+	 * Sets the {@link #globalPeriod}.
+	 *
+	 * @param globalPeriod
+	 *            the {@link #globalPeriod} to set.
+	 */
+	public void setGlobalPeriod(long globalPeriod) {
+		this.globalPeriod = globalPeriod;
+	}
+
+	/**
+	 * Gets the {@link #privateChatPermits}.
+	 *
+	 * @return the {@link #privateChatPermits}.
+	 */
+	public int getPrivateChatPermits() {
+		return privateChatPermits;
+	}
+
+	/**
+	 * Sets the {@link #privateChatPermits}.
+	 *
+	 * @param privateChatPermits
+	 *            the {@link #privateChatPermits} to set.
+	 */
+	public void setPrivateChatPermits(int privateChatPermits) {
+		this.privateChatPermits = privateChatPermits;
+	}
+
+	/**
+	 * Gets the {@link #privateChatPeriod}.
+	 *
+	 * @return the {@link #privateChatPeriod}.
+	 */
+	public long getPrivateChatPeriod() {
+		return privateChatPeriod;
+	}
+
+	/**
+	 * Sets the {@link #privateChatPeriod}.
+	 *
+	 * @param privateChatPeriod
+	 *            the {@link #privateChatPeriod} to set.
+	 */
+	public void setPrivateChatPeriod(long privateChatPeriod) {
+		this.privateChatPeriod = privateChatPeriod;
+	}
+
+	/**
+	 * Gets the {@link #groupChatPermits}.
+	 *
+	 * @return the {@link #groupChatPermits}.
+	 */
+	public int getGroupChatPermits() {
+		return groupChatPermits;
+	}
+
+	/**
+	 * Sets the {@link #groupChatPermits}.
+	 *
+	 * @param groupChatPermits
+	 *            the {@link #groupChatPermits} to set.
+	 */
+	public void setGroupChatPermits(int groupChatPermits) {
+		this.groupChatPermits = groupChatPermits;
+	}
+
+	/**
+	 * Gets the {@link #groupChatPeriod}.
+	 *
+	 * @return the {@link #groupChatPeriod}.
+	 */
+	public long getGroupChatPeriod() {
+		return groupChatPeriod;
+	}
+
+	/**
+	 * Sets the {@link #groupChatPeriod}.
+	 *
+	 * @param groupChatPeriod
+	 *            the {@link #groupChatPeriod} to set.
+	 */
+	public void setGroupChatPeriod(long groupChatPeriod) {
+		this.groupChatPeriod = groupChatPeriod;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RateLimitOptions [enabled=" + enabled + ", globalPermits="
+				+ globalPermits + ", globalPeriod=" + globalPeriod
+				+ ", privateChatPermits=" + privateChatPermits
+				+ ", privateChatPeriod=" + privateChatPeriod
+				+ ", groupChatPermits=" + groupChatPermits
+				+ ", groupChatPeriod=" + groupChatPeriod + "]";
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.network;
+
+import java.io.Serializable;
+
+/**
+ * Options for the automatic retry of the requests rejected by Telegram. A
+ * request is retried when Telegram asks to wait through the
+ * {@code retry_after} parameter, when the target group has been migrated to
+ * a supergroup, when Telegram answers with a server error or when the
+ * connection fails. Server and connection errors are retried with a jittered
+ * exponential backoff.
+ *
+ * @author Donato Rimenti
+ */
+public class RetryOptions implements Serializable {
+
+	/**
+	 * The serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Boolean that indicates whether the failed requests are retried or not.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of retries of a single request.
+	 */
+	private int maxRetries;
+
+	/**
+	 * The backoff in milliseconds before the first retry of a server or
+	 * connection error. It doubles at every further retry.
+	 */
+	private long initialBackoff;
+
+	/**
+	 * The maximum backoff in milliseconds between two retries of a server or
+	 * connection error.
+	 */
+	private long maxBackoff;
+
+	/**
+	 * Instantiates a new RetryOptions with the default values.
+	 */
+	public RetryOptions() {
+		this.enabled = true;
+		this.maxRetries = 3;
+		this.initialBackoff = 500;
+		this.maxBackoff = 30000;
+	}
+
+	/**
+	 * Checks if the retries are enabled.
+	 *
+	 * @return true, if the retries are enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the {@link #enabled}.
+	 *
+	 * @param enabled
+	 *            the {@link #enabled} to set.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the {@link #maxRetries}.
+	 *
+	 * @return the {@link #maxRetries}.
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Sets the {@link #maxRetries}.
+	 *
+	 * @param maxRetries
+	 *            the {@link #maxRetries} to set.
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Gets the {@link #initialBackoff}.
+	 *
+	 * @return the {@link #initialBackoff}.
+	 */
+	public long getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	/**
+	 * Sets the {@link #initialBackoff}.
+	 *
+	 * @param initialBackoff
+	 *            the {@link #initialBackoff} to set.
+	 */
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Gets the {@link #maxBackoff}.
+	 *
+	 * @return the {@link #maxBackoff}.
+	 */
+	public long getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	/**
+	 * Sets the {@link #maxBackoff}.
+	 *
+	 * @param maxBackoff
+	 *            the {@link #maxBackoff} to set.
+	 */
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RetryOptions [enabled=" + enabled + ", maxRetries="
+				+ maxRetries + ", initialBackoff=" + initialBackoff
+				+ ", maxBackoff=" + maxBackoff + "]";
+	}
+
+}
@@ -23,22 +23,60 @@
  */
 package co.aurasphere.botmill.telegram.support.query;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
 import co.aurasphere.botmill.telegram.internal.util.network.TelegramMethod;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
 import co.aurasphere.botmill.telegram.model.User;
 import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillBaseMethodDTO;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
 /**
  * Service class that handles methods for retrieving data from Telegram.
  * 
  * @author Donato Rimenti
  */
 public class QueryService {
-	
-	public static User getMe(){
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(QueryService.class);
+
+	/**
+	 * The type of the response to getMe.
+	 */
+	private static final Type USER_RESPONSE_TYPE = new TypeToken<ApiResponse<User>>() {
+	}.getType();
+
+	/**
+	 * Gets basic information about the bot.
+	 * 
+	 * @return the bot user or null if the request failed.
+	 */
+	public static User getMe() {
 		TelegramBotMillBaseMethodDTO request = new TelegramBotMillBaseMethodDTO();
 		request.setTelegramMethod(TelegramMethod.GET_ME);
-		NetworkUtils.get(url);
+		try {
+			ApiResponse<User> response = NetworkUtils.call(request,
+					USER_RESPONSE_TYPE);
+			if (response.isOk()) {
+				return response.getResult();
+			}
+		} catch (IOException e) {
+			logger.error("Error while getting the bot information: ", e);
+		} catch (JsonParseException e) {
+			logger.error("Unexpected response to getMe: ", e);
+		}
+		return null;
 	}
 
 }
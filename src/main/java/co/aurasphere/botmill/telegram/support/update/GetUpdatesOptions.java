@@ -23,19 +23,163 @@
  */
 package co.aurasphere.botmill.telegram.support.update;
 
-import java.io.Serializable;
+import java.util.List;
+
+import co.aurasphere.botmill.telegram.internal.util.network.TelegramMethod;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillBaseMethodDTO;
+
+import com.google.gson.annotations.SerializedName;
 
 /**
  * Class that contains options for retrieving updates from Telegram.
  * 
  * @author Donato Rimenti
  */
-public class GetUpdatesOptions implements Serializable {
+public class GetUpdatesOptions extends TelegramBotMillBaseMethodDTO {
 
 	/**
 	 * The serial version UID.
 	 */
 	private static final long serialVersionUID = 1L;
 
-	// TODO:
+	/**
+	 * Identifier of the first update to be returned. Must be greater by one
+	 * than the highest among the identifiers of previously received updates.
+	 * By default, updates starting with the earliest unconfirmed update are
+	 * returned. An update is considered confirmed as soon as getUpdates is
+	 * called with an offset higher than its update_id.
+	 */
+	private Long offset;
+
+	/**
+	 * Limits the number of updates to be retrieved. Values between 1 and 100
+	 * are accepted. Defaults to 100.
+	 */
+	private Integer limit;
+
+	/**
+	 * Timeout in seconds for long polling. Defaults to 0, i.e. usual short
+	 * polling. Should be positive, short polling should be used for testing
+	 * purposes only. It must be lower than the socket timeout of the HTTP
+	 * client.
+	 */
+	private Integer timeout;
+
+	/**
+	 * List of the update types you want your bot to receive, for example
+	 * "message" or "callback_query". Specify an empty list to receive all
+	 * updates regardless of type.
+	 */
+	@SerializedName("allowed_updates")
+	private List<String> allowedUpdates;
+
+	/**
+	 * Instantiates a new GetUpdatesOptions.
+	 */
+	public GetUpdatesOptions() {
+		this.telegramMethod = TelegramMethod.GET_UPDATES;
+	}
+
+	/**
+	 * Instantiates a new GetUpdatesOptions copying the values of another one.
+	 *
+	 * @param options
+	 *            the options to copy.
+	 */
+	public GetUpdatesOptions(GetUpdatesOptions options) {
+		this();
+		this.offset = options.offset;
+		this.limit = options.limit;
+		this.timeout = options.timeout;
+		this.allowedUpdates = options.allowedUpdates;
+	}
+
+	/**
+	 * Gets the {@link #offset}.
+	 *
+	 * @return the {@link #offset}.
+	 */
+	public Long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Sets the {@link #offset}.
+	 *
+	 * @param offset
+	 *            the {@link #offset} to set.
+	 */
+	public void setOffset(Long offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * Gets the {@link #limit}.
+	 *
+	 * @return the {@link #limit}.
+	 */
+	public Integer getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Sets the {@link #limit}.
+	 *
+	 * @param limit
+	 *            the {@link #limit} to set.
+	 */
+	public void setLimit(Integer limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the {@link #timeout}.
+	 *
+	 * @return the {@link #timeout}.
+	 */
+	public Integer getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the {@link #timeout}.
+	 *
+	 * @param timeout
+	 *            the {@link #timeout} to set.
+	 */
+	public void setTimeout(Integer timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Gets the {@link #allowedUpdates}.
+	 *
+	 * @return the {@link #allowedUpdates}.
+	 */
+	public List<String> getAllowedUpdates() {
+		return allowedUpdates;
+	}
+
+	/**
+	 * Sets the {@link #allowedUpdates}.
+	 *
+	 * @param allowedUpdates
+	 *            the {@link #allowedUpdates} to set.
+	 */
+	public void setAllowedUpdates(List<String> allowedUpdates) {
+		this.allowedUpdates = allowedUpdates;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "GetUpdatesOptions [offset=" + offset + ", limit=" + limit
+				+ ", timeout=" + timeout + ", allowedUpdates=" + allowedUpdates
+				+ "]";
+	}
+
 }
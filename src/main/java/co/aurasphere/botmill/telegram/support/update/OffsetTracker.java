@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.update;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the updates fetched through long polling which are still
+ * being processed, in order to compute the offset to acknowledge to Telegram.
+ * Since Telegram confirms all the updates with an ID lower than the offset,
+ * the offset never goes past the oldest update still being processed, so that
+ * no update is lost if the bot is stopped abruptly.
+ *
+ * @author Donato Rimenti
+ */
+class OffsetTracker {
+
+	/**
+	 * The IDs of the updates fetched and not processed yet.
+	 */
+	private final TreeSet<Long> inFlight;
+
+	/**
+	 * The ID following the highest update fetched so far. Updates with a lower
+	 * ID have already been fetched and are ignored when received again.
+	 */
+	private long nextUpdateId;
+
+	/**
+	 * The lowest ID among the updates which have been fetched but couldn't be
+	 * processed. They will be received again on the next start.
+	 */
+	private long abandonedUpdateId;
+
+	/**
+	 * Instantiates a new OffsetTracker.
+	 *
+	 * @param initialOffset
+	 *            the offset to start from, can be null.
+	 */
+	OffsetTracker(Long initialOffset) {
+		this.inFlight = new TreeSet<Long>();
+		this.nextUpdateId = initialOffset != null ? initialOffset : 0;
+		this.abandonedUpdateId = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Restores the state saved in a journal: the updates not processed yet are
+	 * marked as being processed and the updates up to the highest recorded
+	 * one are ignored when received again.
+	 *
+	 * @param pendingUpdateIds
+	 *            the IDs of the updates not processed yet.
+	 * @param nextUpdateId
+	 *            the ID following the highest recorded update.
+	 */
+	synchronized void restore(Collection<Long> pendingUpdateIds,
+			long nextUpdateId) {
+		this.inFlight.addAll(pendingUpdateIds);
+		this.nextUpdateId = Math.max(this.nextUpdateId, nextUpdateId);
+	}
+
+	/**
+	 * Marks an update as being processed.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 * @return true if the update has to be processed, false if it was already
+	 *         fetched by a previous poll.
+	 */
+	synchronized boolean begin(long updateId) {
+		if (updateId < this.nextUpdateId) {
+			return false;
+		}
+		this.nextUpdateId = updateId + 1;
+		this.inFlight.add(updateId);
+		return true;
+	}
+
+	/**
+	 * Marks an update as processed.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 */
+	synchronized void complete(long updateId) {
+		this.inFlight.remove(updateId);
+		notifyAll();
+	}
+
+	/**
+	 * Marks an update as not processed, so that it won't be acknowledged.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 */
+	synchronized void abandon(long updateId) {
+		this.inFlight.remove(updateId);
+		this.abandonedUpdateId = Math.min(this.abandonedUpdateId, updateId);
+		notifyAll();
+	}
+
+	/**
+	 * Gets the offset to send to Telegram: the ID of the oldest update not
+	 * processed yet or, if all the updates have been processed, the ID
+	 * following the highest one.
+	 *
+	 * @return the offset.
+	 */
+	synchronized long getOffset() {
+		long offset = this.nextUpdateId;
+		if (!this.inFlight.isEmpty()) {
+			offset = Math.min(offset, this.inFlight.first());
+		}
+		return Math.min(offset, this.abandonedUpdateId);
+	}
+
+	/**
+	 * Gets the number of updates being processed.
+	 *
+	 * @return the number of updates being processed.
+	 */
+	synchronized int getInFlight() {
+		return this.inFlight.size();
+	}
+
+	/**
+	 * Waits until an update is processed, {@link #wakeUp()} is called or the
+	 * timeout elapses.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds.
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted.
+	 */
+	synchronized void awaitProgress(long timeout) throws InterruptedException {
+		if (timeout > 0) {
+			wait(timeout);
+		}
+	}
+
+	/**
+	 * Waits until all the updates have been processed or the timeout elapses.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds.
+	 * @return true if all the updates have been processed.
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted.
+	 */
+	synchronized boolean awaitIdle(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!this.inFlight.isEmpty()) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+		return true;
+	}
+
+	/**
+	 * Wakes up the threads waiting on this tracker.
+	 */
+	synchronized void wakeUp() {
+		notifyAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "OffsetTracker [inFlight=" + inFlight.size() + ", offset="
+				+ getOffset() + "]";
+	}
+
+}
@@ -0,0 +1,556 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.update;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal which makes long polling crash-safe. It records the
+ * updates fetched from Telegram along with their raw JSON, the updates which
+ * have been processed and the offset acknowledged to Telegram, so that after
+ * a restart the updates not processed yet are replayed and the ones already
+ * processed are not processed again.
+ * <p>
+ * The journal is made of two memory-mapped files used alternately: records
+ * are appended to the current file and, when it's full, the live state is
+ * compacted into the other one. Records are forced to disk in batches by
+ * {@link #commit(long)}, which is called before each poll, so an update is
+ * always on disk before Telegram is told it can be forgotten.
+ *
+ * @author Donato Rimenti
+ */
+public class UpdateJournal implements Closeable {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(UpdateJournal.class);
+
+	/**
+	 * The default size in bytes of each journal file.
+	 */
+	public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+	/**
+	 * The size of the file header: generation, checksum and padding.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * The size of a record without its payload: length, type, update ID and
+	 * checksum.
+	 */
+	private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+
+	/**
+	 * Record of an update fetched from Telegram, holding its raw JSON.
+	 */
+	private static final byte BEGIN = 1;
+
+	/**
+	 * Record of an update processed by the bots.
+	 */
+	private static final byte COMPLETE = 2;
+
+	/**
+	 * Record of the offset acknowledged to Telegram.
+	 */
+	private static final byte COMMIT = 3;
+
+	/**
+	 * An empty payload.
+	 */
+	private static final byte[] NO_PAYLOAD = new byte[0];
+
+	/**
+	 * The two journal files.
+	 */
+	private final FileChannel[] channels;
+
+	/**
+	 * The memory mappings of the {@link #channels}.
+	 */
+	private final MappedByteBuffer[] buffers;
+
+	/**
+	 * The index of the file records are appended to.
+	 */
+	private int current;
+
+	/**
+	 * The generation of the current file, increased at each compaction. The
+	 * file with the highest valid generation is the current one.
+	 */
+	private long generation;
+
+	/**
+	 * The updates fetched and not processed yet, with their raw JSON.
+	 */
+	private final TreeMap<Long, byte[]> pending;
+
+	/**
+	 * The last offset acknowledged to Telegram.
+	 */
+	private long committedOffset;
+
+	/**
+	 * The highest update ID recorded.
+	 */
+	private long highestUpdateId;
+
+	/**
+	 * Boolean that indicates whether there are records not forced to disk.
+	 */
+	private boolean dirty;
+
+	/**
+	 * Used to compute the checksums.
+	 */
+	private final CRC32 checksum;
+
+	/**
+	 * Scratch buffer used to compute the checksums.
+	 */
+	private final byte[] scratch;
+
+	/**
+	 * Instantiates a new UpdateJournal, mapping its files.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @param capacity
+	 *            the size in bytes of each journal file.
+	 * @throws IOException
+	 *             if the files can't be mapped.
+	 */
+	private UpdateJournal(File directory, int capacity) throws IOException {
+		this.channels = new FileChannel[2];
+		this.buffers = new MappedByteBuffer[2];
+		for (int i = 0; i < 2; i++) {
+			File file = new File(directory, "updates-" + i + ".journal");
+			this.channels[i] = new RandomAccessFile(file, "rw").getChannel();
+			long size = Math.max(this.channels[i].size(), capacity);
+			this.buffers[i] = this.channels[i].map(
+					FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		this.pending = new TreeMap<Long, byte[]>();
+		this.committedOffset = 0;
+		this.highestUpdateId = -1;
+		this.checksum = new CRC32();
+		this.scratch = new byte[17];
+	}
+
+	/**
+	 * Opens the journal stored in a directory, creating it if needed, with the
+	 * default capacity.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @return the opened journal.
+	 * @throws IOException
+	 *             if the journal can't be opened.
+	 */
+	public static UpdateJournal open(File directory) throws IOException {
+		return open(directory, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens the journal stored in a directory, creating it if needed, and
+	 * reads back its state.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @param capacity
+	 *            the size in bytes of each journal file. Must be large enough
+	 *            to hold all the updates in flight at once.
+	 * @return the opened journal.
+	 * @throws IOException
+	 *             if the journal can't be opened.
+	 */
+	public static UpdateJournal open(File directory, int capacity)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create the journal directory "
+					+ directory);
+		}
+		UpdateJournal journal = new UpdateJournal(directory, capacity);
+		journal.recover();
+		return journal;
+	}
+
+	/**
+	 * Records an update fetched from Telegram.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 * @param payload
+	 *            the raw JSON of the update.
+	 */
+	public synchronized void begin(long updateId, byte[] payload) {
+		if (append(BEGIN, updateId, payload)) {
+			this.pending.put(updateId, payload);
+		}
+		this.highestUpdateId = Math.max(this.highestUpdateId, updateId);
+	}
+
+	/**
+	 * Records an update processed by the bots.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 */
+	public synchronized void complete(long updateId) {
+		if (this.pending.remove(updateId) != null) {
+			append(COMPLETE, updateId, NO_PAYLOAD);
+		}
+	}
+
+	/**
+	 * Records the offset about to be acknowledged to Telegram and forces all
+	 * the records to disk.
+	 *
+	 * @param offset
+	 *            the offset.
+	 */
+	public synchronized void commit(long offset) {
+		if (offset != this.committedOffset
+				&& append(COMMIT, offset, NO_PAYLOAD)) {
+			this.committedOffset = offset;
+		}
+		if (this.dirty) {
+			this.buffers[this.current].force();
+			this.dirty = false;
+		}
+	}
+
+	/**
+	 * Gets the updates fetched and not processed before the journal was
+	 * opened, sorted by ID.
+	 *
+	 * @return the IDs of the pending updates with their raw JSON.
+	 */
+	public synchronized SortedMap<Long, byte[]> getPendingUpdates() {
+		return new TreeMap<Long, byte[]>(this.pending);
+	}
+
+	/**
+	 * Gets the {@link #committedOffset}.
+	 *
+	 * @return the {@link #committedOffset}.
+	 */
+	public synchronized long getCommittedOffset() {
+		return this.committedOffset;
+	}
+
+	/**
+	 * Gets the {@link #highestUpdateId}.
+	 *
+	 * @return the {@link #highestUpdateId} or -1 if the journal is empty.
+	 */
+	public synchronized long getHighestUpdateId() {
+		return this.highestUpdateId;
+	}
+
+	/**
+	 * Forces the pending records to disk and closes the journal files.
+	 *
+	 * @throws IOException
+	 *             if the files can't be closed.
+	 */
+	public synchronized void close() throws IOException {
+		if (this.dirty) {
+			this.buffers[this.current].force();
+			this.dirty = false;
+		}
+		for (FileChannel channel : this.channels) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads back the state of the journal from the file with the highest
+	 * valid generation. Reading stops at the first record which is torn or
+	 * left over from a previous generation.
+	 */
+	private void recover() {
+		long[] generations = { readHeader(0), readHeader(1) };
+		if (generations[0] < 0 && generations[1] < 0) {
+			this.current = 0;
+			this.generation = 1;
+			writeHeader(this.buffers[0], this.generation);
+			this.buffers[0].position(HEADER_SIZE);
+			this.buffers[0].force();
+			return;
+		}
+		this.current = generations[0] >= generations[1] ? 0 : 1;
+		this.generation = generations[this.current];
+		MappedByteBuffer buffer = this.buffers[this.current];
+		buffer.position(HEADER_SIZE);
+
+		int records = 0;
+		while (buffer.remaining() >= RECORD_OVERHEAD) {
+			int start = buffer.position();
+			int length = buffer.getInt(start);
+			if (length < 0 || length > buffer.remaining() - RECORD_OVERHEAD) {
+				break;
+			}
+			byte type = buffer.get(start + 4);
+			long updateId = buffer.getLong(start + 5);
+			byte[] payload = new byte[length];
+			buffer.position(start + 13);
+			buffer.get(payload);
+			int expected = buffer.getInt();
+			if (type < BEGIN || type > COMMIT
+					|| expected != checksum(type, updateId, payload)) {
+				buffer.position(start);
+				break;
+			}
+			apply(type, updateId, payload);
+			records++;
+		}
+		logger.info(
+				"Journal recovered: {} records, offset {}, {} updates to replay.",
+				records, this.committedOffset, this.pending.size());
+	}
+
+	/**
+	 * Applies a record read back from the journal to the state.
+	 *
+	 * @param type
+	 *            the type of the record.
+	 * @param updateId
+	 *            the update ID or offset held by the record.
+	 * @param payload
+	 *            the payload of the record.
+	 */
+	private void apply(byte type, long updateId, byte[] payload) {
+		switch (type) {
+		case BEGIN:
+			this.pending.put(updateId, payload);
+			this.highestUpdateId = Math.max(this.highestUpdateId, updateId);
+			break;
+		case COMPLETE:
+			this.pending.remove(updateId);
+			this.highestUpdateId = Math.max(this.highestUpdateId, updateId);
+			break;
+		default:
+			this.committedOffset = updateId;
+		}
+	}
+
+	/**
+	 * Appends a record to the current file, compacting the journal if the
+	 * file is full.
+	 *
+	 * @param type
+	 *            the type of the record.
+	 * @param updateId
+	 *            the update ID or offset held by the record.
+	 * @param payload
+	 *            the payload of the record.
+	 * @return true if the record has been appended, false if it doesn't fit
+	 *         in the journal.
+	 */
+	private boolean append(byte type, long updateId, byte[] payload) {
+		int size = RECORD_OVERHEAD + payload.length;
+		if (this.buffers[this.current].remaining() < size) {
+			compact();
+			if (this.buffers[this.current].remaining() < size) {
+				logger.error(
+						"Journal full, record of update {} not written. Increase the journal capacity.",
+						updateId);
+				return false;
+			}
+		}
+		write(this.buffers[this.current], type, updateId, payload);
+		this.dirty = true;
+		return true;
+	}
+
+	/**
+	 * Writes the live state to the other file with a new generation and
+	 * switches to it. The header is written last, so the other file becomes
+	 * the current one only once it's complete on disk.
+	 */
+	private void compact() {
+		int next = 1 - this.current;
+		long nextGeneration = this.generation + 1;
+		MappedByteBuffer buffer = this.buffers[next];
+		long previousGeneration = this.generation;
+		this.generation = nextGeneration;
+		buffer.position(HEADER_SIZE);
+		write(buffer, COMMIT, this.committedOffset, NO_PAYLOAD);
+		// Keeps track of the highest ID so that processed updates are still
+		// recognized when Telegram sends them again.
+		if (this.highestUpdateId >= 0
+				&& !this.pending.containsKey(this.highestUpdateId)) {
+			write(buffer, COMPLETE, this.highestUpdateId, NO_PAYLOAD);
+		}
+		for (Map.Entry<Long, byte[]> entry : this.pending.entrySet()) {
+			if (buffer.remaining() < RECORD_OVERHEAD
+					+ entry.getValue().length) {
+				logger.error("Journal too small to hold all the updates in flight.");
+				this.generation = previousGeneration;
+				return;
+			}
+			write(buffer, BEGIN, entry.getKey(), entry.getValue());
+		}
+		buffer.force();
+		writeHeader(buffer, nextGeneration);
+		buffer.force();
+		this.buffers[this.current].force();
+		this.current = next;
+		this.dirty = false;
+		logger.debug("Journal compacted, generation {}.", nextGeneration);
+	}
+
+	/**
+	 * Writes a record at the current position of a buffer.
+	 *
+	 * @param buffer
+	 *            the buffer to write to.
+	 * @param type
+	 *            the type of the record.
+	 * @param updateId
+	 *            the update ID or offset held by the record.
+	 * @param payload
+	 *            the payload of the record.
+	 */
+	private void write(MappedByteBuffer buffer, byte type, long updateId,
+			byte[] payload) {
+		buffer.putInt(payload.length);
+		buffer.put(type);
+		buffer.putLong(updateId);
+		buffer.put(payload);
+		buffer.putInt(checksum(type, updateId, payload));
+	}
+
+	/**
+	 * Computes the checksum of a record. The generation of the file is part
+	 * of the checksum, so that records left over from a previous generation
+	 * are not read back.
+	 *
+	 * @param type
+	 *            the type of the record.
+	 * @param updateId
+	 *            the update ID or offset held by the record.
+	 * @param payload
+	 *            the payload of the record.
+	 * @return the checksum.
+	 */
+	private int checksum(byte type, long updateId, byte[] payload) {
+		putLong(this.scratch, 0, this.generation);
+		this.scratch[8] = type;
+		putLong(this.scratch, 9, updateId);
+		this.checksum.reset();
+		this.checksum.update(this.scratch, 0, this.scratch.length);
+		this.checksum.update(payload, 0, payload.length);
+		return (int) this.checksum.getValue();
+	}
+
+	/**
+	 * Reads the generation of a file.
+	 *
+	 * @param index
+	 *            the index of the file.
+	 * @return the generation of the file or -1 if its header is not valid.
+	 */
+	private long readHeader(int index) {
+		MappedByteBuffer buffer = this.buffers[index];
+		long fileGeneration = buffer.getLong(0);
+		int expected = buffer.getInt(8);
+		return fileGeneration > 0 && expected == headerChecksum(fileGeneration) ? fileGeneration
+				: -1;
+	}
+
+	/**
+	 * Writes the header of a file.
+	 *
+	 * @param buffer
+	 *            the buffer of the file.
+	 * @param fileGeneration
+	 *            the generation of the file.
+	 */
+	private void writeHeader(MappedByteBuffer buffer, long fileGeneration) {
+		buffer.putLong(0, fileGeneration);
+		buffer.putInt(8, headerChecksum(fileGeneration));
+	}
+
+	/**
+	 * Computes the checksum of a file header.
+	 *
+	 * @param fileGeneration
+	 *            the generation of the file.
+	 * @return the checksum.
+	 */
+	private int headerChecksum(long fileGeneration) {
+		putLong(this.scratch, 0, fileGeneration);
+		this.checksum.reset();
+		this.checksum.update(this.scratch, 0, 8);
+		return (int) this.checksum.getValue();
+	}
+
+	/**
+	 * Writes a long in big-endian order into an array.
+	 *
+	 * @param array
+	 *            the array.
+	 * @param offset
+	 *            the offset to write at.
+	 * @param value
+	 *            the value to write.
+	 */
+	private static void putLong(byte[] array, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			array[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "UpdateJournal [generation=" + generation + ", committedOffset="
+				+ committedOffset + ", pending=" + pending.size()
+				+ ", highestUpdateId=" + highestUpdateId + "]";
+	}
+
+}
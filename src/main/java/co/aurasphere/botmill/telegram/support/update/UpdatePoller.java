@@ -0,0 +1,437 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.update;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.aurasphere.botmill.telegram.TelegramBotMillContext;
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDispatcher;
+import co.aurasphere.botmill.telegram.internal.util.json.JsonUtils;
+import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.support.network.RetryOptions;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Receives the updates from Telegram through long polling, as an alternative
+ * to webhooks for bots which can't be reached from the Internet. A dedicated
+ * thread fetches the updates and hands them over to the update dispatcher,
+ * then immediately polls again while the previous updates are still being
+ * processed. An update is acknowledged to Telegram only once it has been
+ * processed by all the registered bots. An {@link UpdateJournal} can be used
+ * to resume from the same point after a restart.
+ * 
+ * @author Donato Rimenti
+ */
+public class UpdatePoller {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(UpdatePoller.class);
+
+	/**
+	 * The charset of the raw updates recorded in the journal.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The default long polling timeout in seconds.
+	 */
+	private static final int DEFAULT_TIMEOUT = 30;
+
+	/**
+	 * How long in milliseconds to wait for the updates being processed when
+	 * stopping.
+	 */
+	private static final long STOP_TIMEOUT = 30000;
+
+	/**
+	 * The options used for each poll. The offset is managed by the poller.
+	 */
+	private final GetUpdatesOptions options;
+
+	/**
+	 * Keeps track of the offset to acknowledge.
+	 */
+	private final OffsetTracker tracker;
+
+	/**
+	 * The journal which makes the poller crash-safe, can be null.
+	 */
+	private final UpdateJournal journal;
+
+	/**
+	 * Boolean that indicates whether the poller is running or not.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The thread which polls Telegram.
+	 */
+	private Thread pollerThread;
+
+	/**
+	 * Instantiates a new UpdatePoller.
+	 *
+	 * @param options
+	 *            the options used to poll Telegram. If no timeout is set, a
+	 *            30 seconds long polling timeout is used.
+	 */
+	public UpdatePoller(GetUpdatesOptions options) {
+		this(options, null);
+	}
+
+	/**
+	 * Instantiates a new UpdatePoller which records the updates in a journal.
+	 * The offset is then resumed from the journal, and the updates which were
+	 * not processed when the journal was last used are replayed on start.
+	 *
+	 * @param options
+	 *            the options used to poll Telegram. If no timeout is set, a
+	 *            30 seconds long polling timeout is used.
+	 * @param journal
+	 *            the journal, can be null. It's not closed by the poller.
+	 */
+	public UpdatePoller(GetUpdatesOptions options, UpdateJournal journal) {
+		this.journal = journal;
+		this.options = new GetUpdatesOptions(options);
+		if (this.options.getTimeout() == null) {
+			this.options.setTimeout(DEFAULT_TIMEOUT);
+		}
+		this.tracker = new OffsetTracker(options.getOffset());
+	}
+
+	/**
+	 * Starts polling Telegram on a new thread.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the poller has already been started.
+	 */
+	public synchronized void start() {
+		if (this.pollerThread != null) {
+			throw new IllegalStateException("Poller already started.");
+		}
+		this.running = true;
+		this.pollerThread = new Thread(new Runnable() {
+			public void run() {
+				poll();
+			}
+		}, "telegram-botmill-poller");
+		this.pollerThread.start();
+	}
+
+	/**
+	 * Stops polling Telegram and waits until the updates already fetched have
+	 * been processed and acknowledged. The running poll, if any, is allowed to
+	 * complete, so this can take up to the long polling timeout.
+	 */
+	public void stop() {
+		Thread thread;
+		synchronized (this) {
+			thread = this.pollerThread;
+		}
+		this.running = false;
+		this.tracker.wakeUp();
+		if (thread == null || thread == Thread.currentThread()) {
+			return;
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Checks if the poller is running.
+	 *
+	 * @return true, if the poller is running.
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Gets the offset which will be acknowledged with the next poll.
+	 *
+	 * @return the offset.
+	 */
+	public long getOffset() {
+		return this.tracker.getOffset();
+	}
+
+	/**
+	 * Gets the number of updates fetched and not yet processed.
+	 *
+	 * @return the number of updates being processed.
+	 */
+	public int getInFlight() {
+		return this.tracker.getInFlight();
+	}
+
+	/**
+	 * The polling loop, run until the poller is stopped.
+	 */
+	private void poll() {
+		TelegramBotMillContext context = TelegramBotMillContext.getInstance();
+		UpdateDispatcher dispatcher = context.getUpdateDispatcher();
+		UpdateDispatcher ownDispatcher = null;
+		if (dispatcher == null) {
+			// The poller always needs workers in order to keep polling while
+			// the updates are processed.
+			ownDispatcher = new UpdateDispatcher(context.getDispatcherOptions());
+			dispatcher = ownDispatcher;
+		}
+
+		long pollTimeout = TimeUnit.SECONDS.toMillis(this.options.getTimeout());
+		int failures = 0;
+		try {
+			if (this.journal != null) {
+				replay(dispatcher);
+			}
+			while (this.running) {
+				GetUpdatesOptions request = new GetUpdatesOptions(this.options);
+				request.setOffset(this.tracker.getOffset());
+				if (this.journal != null) {
+					// Makes sure the fetched updates are on disk before
+					// Telegram is told it can forget them.
+					this.journal.commit(request.getOffset());
+				}
+				int received;
+				int accepted = 0;
+				if (this.journal == null) {
+					List<Update> updates = UpdateService.getUpdates(request);
+					received = updates != null ? updates.size() : -1;
+					for (int i = 0; i < received; i++) {
+						if (accept(dispatcher, updates.get(i), null)) {
+							accepted++;
+						}
+					}
+				} else {
+					List<JsonElement> updates = UpdateService
+							.getRawUpdates(request);
+					received = updates != null ? updates.size() : -1;
+					for (int i = 0; i < received; i++) {
+						JsonElement json = updates.get(i);
+						if (accept(dispatcher,
+								JsonUtils.fromJson(json, Update.class), json)) {
+							accepted++;
+						}
+					}
+				}
+
+				if (received < 0) {
+					failures++;
+					this.tracker.awaitProgress(backoff(context.getRetryOptions(),
+							failures));
+					continue;
+				}
+				failures = 0;
+
+				// Telegram returned only updates which are still being
+				// processed: polling again would return them immediately.
+				if (accepted == 0 && received > 0) {
+					this.tracker.awaitProgress(pollTimeout);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Poller interrupted, stopping.");
+			this.running = false;
+		}
+
+		// Graceful stop: waits for the fetched updates and acknowledges them.
+		try {
+			if (ownDispatcher != null) {
+				ownDispatcher.shutdown();
+			}
+			if (!this.tracker.awaitIdle(STOP_TIMEOUT)) {
+				logger.warn("{} updates still being processed won't be acknowledged.",
+						this.tracker.getInFlight());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		acknowledge();
+		if (this.journal != null) {
+			this.journal.commit(this.tracker.getOffset());
+		}
+		logger.info("Poller stopped at offset {}.", this.tracker.getOffset());
+	}
+
+	/**
+	 * Dispatches an update received from Telegram, unless it was already
+	 * received by a previous poll.
+	 *
+	 * @param dispatcher
+	 *            the dispatcher.
+	 * @param update
+	 *            the update.
+	 * @param json
+	 *            the raw JSON of the update to record in the journal, null
+	 *            if there's no journal.
+	 * @return true if the update has been dispatched.
+	 * @throws InterruptedException
+	 *             if the poller thread is interrupted.
+	 */
+	private boolean accept(UpdateDispatcher dispatcher, Update update,
+			JsonElement json) throws InterruptedException {
+		Long updateId = parseUpdateId(update);
+		if (updateId == null || !this.tracker.begin(updateId)) {
+			return false;
+		}
+		if (json != null) {
+			this.journal.begin(updateId, json.toString().getBytes(UTF_8));
+		}
+		dispatch(dispatcher, update, updateId);
+		return true;
+	}
+
+	/**
+	 * Hands an update over to the dispatcher. If the dispatcher rejects it,
+	 * the update is submitted again until it's accepted or the poller is
+	 * stopped.
+	 *
+	 * @param dispatcher
+	 *            the dispatcher.
+	 * @param update
+	 *            the update.
+	 * @param updateId
+	 *            the ID of the update.
+	 * @throws InterruptedException
+	 *             if the poller thread is interrupted.
+	 */
+	private void dispatch(UpdateDispatcher dispatcher, Update update,
+			final long updateId) throws InterruptedException {
+		CompletableFuture<Void> processing = dispatcher.dispatch(update);
+		while (processing.isCompletedExceptionally()) {
+			if (!this.running) {
+				this.tracker.abandon(updateId);
+				return;
+			}
+			this.tracker.awaitProgress(100);
+			processing = dispatcher.dispatch(update);
+		}
+		processing.whenComplete(new BiConsumer<Void, Throwable>() {
+			public void accept(Void result, Throwable error) {
+				tracker.complete(updateId);
+				if (journal != null) {
+					journal.complete(updateId);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replays the updates recorded in the journal which were not processed
+	 * before the last stop.
+	 *
+	 * @param dispatcher
+	 *            the dispatcher.
+	 * @throws InterruptedException
+	 *             if the poller thread is interrupted.
+	 */
+	private void replay(UpdateDispatcher dispatcher)
+			throws InterruptedException {
+		SortedMap<Long, byte[]> pending = this.journal.getPendingUpdates();
+		this.tracker.restore(pending.keySet(),
+				this.journal.getHighestUpdateId() + 1);
+		if (!pending.isEmpty()) {
+			logger.info("Replaying {} updates from the journal.",
+					pending.size());
+		}
+		for (Map.Entry<Long, byte[]> entry : pending.entrySet()) {
+			Update update = JsonUtils.fromJson(new String(entry.getValue(),
+					UTF_8), Update.class);
+			dispatch(dispatcher, update, entry.getKey());
+		}
+	}
+
+	/**
+	 * Acknowledges the processed updates to Telegram with a last short poll.
+	 */
+	private void acknowledge() {
+		GetUpdatesOptions request = new GetUpdatesOptions(this.options);
+		request.setOffset(this.tracker.getOffset());
+		request.setLimit(1);
+		request.setTimeout(0);
+		if (UpdateService.getUpdates(request) == null) {
+			logger.warn("Couldn't acknowledge the processed updates to Telegram.");
+		}
+	}
+
+	/**
+	 * Parses the ID of an update.
+	 *
+	 * @param update
+	 *            the update.
+	 * @return the ID of the update or null if it's not valid.
+	 */
+	private static Long parseUpdateId(Update update) {
+		try {
+			return Long.parseLong(update.getUpdateId());
+		} catch (NumberFormatException e) {
+			logger.warn("Update with invalid ID ignored: {}",
+					update.getUpdateId());
+			return null;
+		}
+	}
+
+	/**
+	 * Computes how long to wait before polling again after a failed poll.
+	 *
+	 * @param retryOptions
+	 *            the retry options.
+	 * @param failures
+	 *            the number of consecutive failures.
+	 * @return the time to wait in milliseconds.
+	 */
+	private static long backoff(RetryOptions retryOptions, int failures) {
+		long delay = retryOptions.getInitialBackoff() << Math.min(failures - 1,
+				20);
+		return Math.max(Math.min(delay, retryOptions.getMaxBackoff()), 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UpdatePoller [options=" + options + ", tracker=" + tracker
+				+ ", running=" + running + "]";
+	}
+
+}
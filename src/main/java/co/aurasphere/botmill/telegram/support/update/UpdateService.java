@@ -23,10 +23,23 @@
  */
 package co.aurasphere.botmill.telegram.support.update;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import co.aurasphere.botmill.telegram.internal.util.network.NetworkUtils;
+import co.aurasphere.botmill.telegram.internal.util.network.TelegramMethod;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillBaseMethodDTO;
 import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.model.update.WebhookInfo;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * Service class that handles Telegram updates and webhook services.
@@ -34,16 +47,145 @@ import co.aurasphere.botmill.telegram.model.update.Update;
  * @author Donato Rimenti
  */
 public class UpdateService {
-	
-	// TODO:
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger logger = LoggerFactory
+			.getLogger(UpdateService.class);
+
+	/**
+	 * The type of the response to getUpdates.
+	 */
+	private static final Type UPDATES_RESPONSE_TYPE = new TypeToken<ApiResponse<List<Update>>>() {
+	}.getType();
+
+	/**
+	 * The type of the response to getUpdates, with the updates left unparsed.
+	 */
+	private static final Type RAW_UPDATES_RESPONSE_TYPE = new TypeToken<ApiResponse<List<JsonElement>>>() {
+	}.getType();
+
+	/**
+	 * The type of the response to getWebhookInfo.
+	 */
+	private static final Type WEBHOOK_INFO_RESPONSE_TYPE = new TypeToken<ApiResponse<WebhookInfo>>() {
+	}.getType();
+
+	/**
+	 * Receives the pending updates from Telegram, without waiting if there
+	 * are none.
+	 * 
+	 * @return the pending updates or null if the request failed.
+	 */
 	public static List<Update> getUpdates() {
-		return null;
+		return getUpdates(new GetUpdatesOptions());
 	}
 
+	/**
+	 * Receives the pending updates from Telegram. This method will not work if
+	 * a webhook is set.
+	 * 
+	 * @param options
+	 *            the options of the request.
+	 * @return the pending updates or null if the request failed.
+	 */
 	public static List<Update> getUpdates(GetUpdatesOptions options) {
+		return getUpdates(options, UPDATES_RESPONSE_TYPE);
+	}
+
+	/**
+	 * Receives the pending updates from Telegram as JSON trees, so that their
+	 * raw JSON can be kept along with the parsed update.
+	 * 
+	 * @param options
+	 *            the options of the request.
+	 * @return the pending updates or null if the request failed.
+	 */
+	static List<JsonElement> getRawUpdates(GetUpdatesOptions options) {
+		return getUpdates(options, RAW_UPDATES_RESPONSE_TYPE);
+	}
+
+	/**
+	 * Receives the pending updates from Telegram.
+	 * 
+	 * @param <T>
+	 *            the type the updates are parsed to.
+	 * @param options
+	 *            the options of the request.
+	 * @param responseType
+	 *            the full type of the response.
+	 * @return the pending updates or null if the request failed.
+	 */
+	private static <T> List<T> getUpdates(GetUpdatesOptions options,
+			Type responseType) {
+		try {
+			ApiResponse<List<T>> response = NetworkUtils.call(options,
+					responseType);
+			if (response != null && response.isOk()) {
+				return response.getResult();
+			}
+		} catch (IOException e) {
+			logger.error("Error while receiving the updates: ", e);
+		} catch (JsonParseException e) {
+			logger.error("Unexpected response to getUpdates: ", e);
+		}
 		return null;
 	}
-	
+
+	/**
+	 * Starts receiving the updates from Telegram through long polling. The
+	 * updates are forwarded to the registered bots until
+	 * {@link UpdatePoller#stop()} is called.
+	 * 
+	 * @param options
+	 *            the options used to poll Telegram.
+	 * @return the started poller.
+	 */
+	public static UpdatePoller startPolling(GetUpdatesOptions options) {
+		return startPolling(options, null);
+	}
+
+	/**
+	 * Starts receiving the updates from Telegram through long polling,
+	 * recording them in a journal. The updates which were not processed when
+	 * the journal was last used are replayed first.
+	 * 
+	 * @param options
+	 *            the options used to poll Telegram.
+	 * @param journal
+	 *            the journal, can be null.
+	 * @return the started poller.
+	 */
+	public static UpdatePoller startPolling(GetUpdatesOptions options,
+			UpdateJournal journal) {
+		UpdatePoller poller = new UpdatePoller(options, journal);
+		poller.start();
+		return poller;
+	}
+
+	/**
+	 * Gets the current status of the webhook.
+	 * 
+	 * @return the webhook status or null if the request failed.
+	 */
+	public static WebhookInfo getWebhookInfo() {
+		TelegramBotMillBaseMethodDTO request = new TelegramBotMillBaseMethodDTO();
+		request.setTelegramMethod(TelegramMethod.GET_WEBHOOK_INFO);
+		try {
+			ApiResponse<WebhookInfo> response = NetworkUtils.call(request,
+					WEBHOOK_INFO_RESPONSE_TYPE);
+			if (response.isOk()) {
+				return response.getResult();
+			}
+		} catch (IOException e) {
+			logger.error("Error while getting the webhook status: ", e);
+		} catch (JsonParseException e) {
+			logger.error("Unexpected response to getWebhookInfo: ", e);
+		}
+		return null;
+	}
+
 	public static void setWebhook(String url){
 		SetWebhookOptions options = new SetWebhookOptions();
 		options.setUrl(url);
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.internal.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Checks that the literal extracted by {@link PatternLiterals} is contained
+ * by every text its pattern matches, since a wrong literal would silently
+ * keep a frame from firing. A corpus of hand-written patterns is checked
+ * first, then randomly generated ones, each against all the short texts over
+ * a small alphabet. It lives in the package of {@link PatternLiterals}, which
+ * is not public. Run it as a plain Java application; any violation ends it
+ * with an exception.
+ */
+public class PatternLiteralsConformance {
+
+	/**
+	 * The hand-written patterns: quantifiers, escapes, quotes, classes,
+	 * groups and supplementary characters.
+	 */
+	private static final String[] CORPUS = { "hello", "hel?lo", "hel*lo",
+			"hel+lo", "hel{0,2}lo", "hel{2}lo", "ab*?c", "ab+?c", "ab?+c",
+			"hi\ud83d\ude00?", "hi\ud83d\ude00*", "hi\ud83d\ude00+",
+			"\ud83d\ude00{0,1}ab", "a\ud83d\ude00b?", "\\Qa.b\\E",
+			"\\Qab\\E?c", "\\Qa\ud83d\ude00\\E?b", "x\\Q)\\E?", "\\.a\\.?",
+			"a\\d?b", "a\\bb", "\\x61b", "\\u0061b", "\\0141b", "a\\p{L}b",
+			"a\\cAb", "a(b)c", "a(b)?c", "a(?:b|c)d", "(\\Q)\\Eab)?z",
+			"(\\Q(\\Eab)?z", "(a\\))?z", "[ab]?c", "[\\Q]\\Eab]?z",
+			"[\\Q]ab\\E]?z", "[]a]?b", "[^]a]?b", "[a[b]]?c", "a|b",
+			"(?i)ab", "a(?i)b", "(?<n>ab)?c", "(?=ab)a", "(?<=a)b", "a.b",
+			"^ab$", "a\\Q", "b\\Q\\E?a", "a\\Qb\\E{0}c" };
+
+	/**
+	 * The characters the texts are made of.
+	 */
+	private static final String[] ALPHABET = { "a", "b", "c", "z", ")",
+			"]", ".", "\ud83d\ude00", "\ud83d" };
+
+	/**
+	 * The tokens the random patterns are made of.
+	 */
+	private static final String[] TOKENS = { "a", "b", "c", "\ud83d\ude00",
+			"\\.", ".", "?", "*", "+", "{0,2}", "{1}", "??", "\\Q)\\E",
+			"\\Q]a\\E", "\\Q\\E", "(", ")", "(?:", "[ab]", "[\\Q]\\E]",
+			"[^a]", "|", "\\d", "\\b", "(a|b)", "\\x61", "\\Qa" };
+
+	/**
+	 * The number of random patterns.
+	 */
+	private static final int RANDOM_PATTERNS = 20000;
+
+	/**
+	 * The maximum length of the texts, in characters of the alphabet.
+	 */
+	private static final int MAX_TEXT_LENGTH = 4;
+
+	/**
+	 * Runs the checks.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		List<String> texts = new ArrayList<String>();
+		collectTexts("", 0, texts);
+
+		int literals = 0;
+		for (String regex : CORPUS) {
+			if (check(regex, texts)) {
+				literals++;
+			}
+		}
+		System.out.println(CORPUS.length + " hand-written patterns conform, "
+				+ literals + " with a literal.");
+
+		Random random = new Random(42);
+		int checked = 0;
+		literals = 0;
+		while (checked < RANDOM_PATTERNS) {
+			StringBuilder regex = new StringBuilder();
+			int tokens = 1 + random.nextInt(6);
+			for (int i = 0; i < tokens; i++) {
+				regex.append(TOKENS[random.nextInt(TOKENS.length)]);
+			}
+			try {
+				Pattern.compile(regex.toString());
+			} catch (PatternSyntaxException e) {
+				continue;
+			}
+			if (check(regex.toString(), texts)) {
+				literals++;
+			}
+			checked++;
+		}
+		System.out.println(checked + " random patterns conform, " + literals
+				+ " with a literal.");
+	}
+
+	/**
+	 * Checks a pattern against all the texts.
+	 *
+	 * @param regex
+	 *            the pattern.
+	 * @param texts
+	 *            the texts.
+	 * @return true if a literal was extracted from the pattern.
+	 */
+	private static boolean check(String regex, List<String> texts) {
+		Pattern pattern = Pattern.compile(regex);
+		String literal = PatternLiterals.requiredLiteral(pattern);
+		if (literal == null) {
+			return false;
+		}
+		for (String text : texts) {
+			if ((pattern.matcher(text).matches() || pattern.matcher(text)
+					.find()) && !text.contains(literal)) {
+				throw new IllegalStateException("Pattern " + escape(regex)
+						+ " matches " + escape(text)
+						+ " which doesn't contain its literal "
+						+ escape(literal));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Collects all the texts up to {@link #MAX_TEXT_LENGTH}.
+	 *
+	 * @param prefix
+	 *            the text built so far.
+	 * @param length
+	 *            the length of the prefix.
+	 * @param texts
+	 *            the collected texts.
+	 */
+	private static void collectTexts(String prefix, int length,
+			List<String> texts) {
+		texts.add(prefix);
+		if (length == MAX_TEXT_LENGTH) {
+			return;
+		}
+		for (String c : ALPHABET) {
+			collectTexts(prefix + c, length + 1, texts);
+		}
+	}
+
+	/**
+	 * Escapes the characters which are not printable ASCII.
+	 *
+	 * @param s
+	 *            the string.
+	 * @return the escaped string.
+	 */
+	private static String escape(String s) {
+		StringBuilder escaped = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c >= 0x20 && c < 0x7f) {
+				escaped.append(c);
+			} else {
+				escaped.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return escaped.append('"').toString();
+	}
+
+}
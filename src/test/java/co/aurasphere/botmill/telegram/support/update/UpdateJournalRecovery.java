@@ -0,0 +1,680 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.support.update;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Checks that an {@link UpdateJournal} damaged by a crash recovers the state
+ * of its last sound record: torn, partial and truncated records, checksum
+ * mismatches, compactions interrupted before the new file is complete and
+ * records left over from previous generations. The recovered state is then
+ * replayed into an {@link OffsetTracker} as the {@link UpdatePoller} does, and
+ * the resulting offset is checked too. It lives in the package of
+ * {@link OffsetTracker}, which is not public. Run it as a plain Java
+ * application; any mismatch ends it with an exception.
+ */
+public class UpdateJournalRecovery {
+
+	/**
+	 * The size of the file header, as written by the journal.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * The size of a record without its payload, as written by the journal.
+	 */
+	private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+
+	/**
+	 * The capacity of the journals which are never compacted.
+	 */
+	private static final int LARGE_CAPACITY = 64 * 1024;
+
+	/**
+	 * The capacity of the journals compacted every few records.
+	 */
+	private static final int SMALL_CAPACITY = 512;
+
+	/**
+	 * The maximum number of updates in flight in the compacted journals, so
+	 * that their live state always fits in a file.
+	 */
+	private static final int MAX_IN_FLIGHT = 4;
+
+	/**
+	 * The number of random operations run on the compacted journal.
+	 */
+	private static final int OPERATIONS = 5000;
+
+	/**
+	 * The charset of the payloads.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Runs the checks.
+	 *
+	 * @param args
+	 *            not used.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	public static void main(String[] args) throws IOException {
+		File root = Files.createTempDirectory("update-journal").toFile();
+		try {
+			checkCleanReopen(new File(root, "clean"));
+			checkTornRecord(new File(root, "torn"));
+			checkPartialRecord(new File(root, "partial"));
+			checkTruncatedFile(new File(root, "truncated"));
+			checkChecksumMismatch(new File(root, "checksum"));
+			checkCompactions(new File(root, "compacted"), new File(root,
+					"crashed"));
+		} finally {
+			delete(root);
+		}
+	}
+
+	/**
+	 * Checks that a journal closed normally is read back as it was.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkCleanReopen(File directory) throws IOException {
+		JournalState expected = fill(directory);
+		check("clean reopen", directory, LARGE_CAPACITY, expected);
+		System.out.println("Clean reopen recovered.");
+	}
+
+	/**
+	 * Checks that a record whose checksum was not fully written is discarded
+	 * and overwritten by the next record.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkTornRecord(File directory) throws IOException {
+		fill(directory);
+		File file = journalFile(directory, 0);
+		List<Integer> records = recordOffsets(file);
+		int last = records.get(records.size() - 1);
+		// The last record is the completion of update 1: its checksum is
+		// only half written.
+		patch(file, last + RECORD_OVERHEAD - 2, new byte[2]);
+		JournalState expected = filled();
+		expected.begin(1, payload(1));
+		check("torn record", directory, LARGE_CAPACITY, expected);
+
+		UpdateJournal journal = UpdateJournal.open(directory, LARGE_CAPACITY);
+		journal.complete(1);
+		journal.close();
+		if (recordOffsets(file).size() != records.size()) {
+			throw new IllegalStateException(
+					"The torn record has not been overwritten.");
+		}
+		check("record after a torn one", directory, LARGE_CAPACITY, filled());
+		System.out.println("Torn record discarded.");
+	}
+
+	/**
+	 * Checks that a record whose length points past the end of the file and a
+	 * record whose payload was not fully written are discarded.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkPartialRecord(File directory) throws IOException {
+		fill(directory);
+		UpdateJournal journal = UpdateJournal.open(directory, LARGE_CAPACITY);
+		journal.begin(5, payload(5));
+		journal.close();
+		File file = journalFile(directory, 0);
+		List<Integer> records = recordOffsets(file);
+		int last = records.get(records.size() - 1);
+
+		// Only the first half of the payload made it to disk.
+		int payloadLength = payload(5).length;
+		patch(file, last + 13 + payloadLength / 2, new byte[payloadLength
+				- payloadLength / 2 + 4]);
+		check("partial payload", directory, LARGE_CAPACITY, filled());
+
+		// The length itself is garbage.
+		patch(file, last, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE)
+				.array());
+		check("garbage length", directory, LARGE_CAPACITY, filled());
+		System.out.println("Partial records discarded.");
+	}
+
+	/**
+	 * Checks that a file cut in the middle of a record, as left by a crash
+	 * while the file was being extended, is recovered up to the last whole
+	 * record.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkTruncatedFile(File directory) throws IOException {
+		fill(directory);
+		File file = journalFile(directory, 0);
+		List<Integer> records = recordOffsets(file);
+		// Cuts the file in the middle of the completion of update 1.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(records.get(records.size() - 1) + 7);
+		} finally {
+			raf.close();
+		}
+		JournalState expected = filled();
+		expected.begin(1, payload(1));
+		check("truncated file", directory, LARGE_CAPACITY, expected);
+		if (file.length() < LARGE_CAPACITY) {
+			throw new IllegalStateException(
+					"The truncated file has not been extended.");
+		}
+		System.out.println("Truncated file recovered.");
+	}
+
+	/**
+	 * Checks that reading stops at the first record whose checksum doesn't
+	 * match, dropping the following records as well.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkChecksumMismatch(File directory)
+			throws IOException {
+		fill(directory);
+		File file = journalFile(directory, 0);
+		List<Integer> records = recordOffsets(file);
+		// Flips a bit of the payload of update 2, the second record.
+		int second = records.get(1);
+		byte[] original = read(file, second + 13, 1);
+		patch(file, second + 13, new byte[] { (byte) (original[0] ^ 1) });
+		JournalState expected = new JournalState();
+		expected.begin(1, payload(1));
+		check("checksum mismatch", directory, LARGE_CAPACITY, expected);
+
+		// Flips a bit of the update ID of the last record instead.
+		patch(file, second + 13, original);
+		int last = records.get(records.size() - 1);
+		original = read(file, last + 12, 1);
+		patch(file, last + 12, new byte[] { (byte) (original[0] ^ 1) });
+		expected = filled();
+		expected.begin(1, payload(1));
+		check("update ID mismatch", directory, LARGE_CAPACITY, expected);
+		System.out.println("Checksum mismatches detected.");
+	}
+
+	/**
+	 * Runs random operations on a journal small enough to be compacted every
+	 * few records, so that both files are reused many times. The journal is
+	 * reopened at random and must always match a model of its state. Each
+	 * time a compaction happens, a copy of the journal is made as if the
+	 * process crashed before the header of the new file was written: the
+	 * copy must recover the state before the compaction.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @param crashDirectory
+	 *            the directory of the crashed copies.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void checkCompactions(File directory, File crashDirectory)
+			throws IOException {
+		Random random = new Random(42);
+		JournalState model = new JournalState();
+		UpdateJournal journal = UpdateJournal.open(directory, SMALL_CAPACITY);
+		long nextUpdateId = 100;
+		int reopens = 0;
+		int crashes = 0;
+		for (int i = 0; i < OPERATIONS; i++) {
+			byte[][] headers = { read(journalFile(directory, 0), 0,
+					HEADER_SIZE), read(journalFile(directory, 1), 0,
+					HEADER_SIZE) };
+			long generation = currentGeneration(directory);
+			JournalState before = model.copy();
+
+			int operation = random.nextInt(3);
+			if (operation == 0 && model.pending.size() < MAX_IN_FLIGHT) {
+				byte[] payload = payload(nextUpdateId);
+				journal.begin(nextUpdateId, payload);
+				model.begin(nextUpdateId, payload);
+				nextUpdateId++;
+			} else if (operation <= 1 && !model.pending.isEmpty()) {
+				List<Long> ids = new ArrayList<Long>(model.pending.keySet());
+				long updateId = ids.get(random.nextInt(ids.size()));
+				journal.complete(updateId);
+				model.pending.remove(updateId);
+			} else {
+				long offset = model.expectedOffset();
+				journal.commit(offset);
+				model.committedOffset = offset;
+			}
+
+			if (currentGeneration(directory) != generation) {
+				// A compaction happened: the crashed copy still holds the
+				// previous header in the new file.
+				delete(crashDirectory);
+				crashDirectory.mkdirs();
+				for (int f = 0; f < 2; f++) {
+					File copy = journalFile(crashDirectory, f);
+					Files.copy(journalFile(directory, f).toPath(),
+							copy.toPath());
+					patch(copy, 0, headers[f]);
+				}
+				check("compaction " + generation + " interrupted",
+						crashDirectory, SMALL_CAPACITY, before);
+				crashes++;
+			}
+
+			if (random.nextInt(8) == 0) {
+				journal.close();
+				check("reopen after " + (i + 1) + " operations", directory,
+						SMALL_CAPACITY, model);
+				journal = UpdateJournal.open(directory, SMALL_CAPACITY);
+				reopens++;
+			}
+		}
+		journal.close();
+		check("final reopen", directory, SMALL_CAPACITY, model);
+		if (crashes < 10) {
+			throw new IllegalStateException("Only " + crashes
+					+ " compactions happened.");
+		}
+		System.out.println(OPERATIONS + " operations recovered after "
+				+ reopens + " reopens and " + crashes
+				+ " interrupted compactions, generation "
+				+ currentGeneration(directory) + ".");
+	}
+
+	/**
+	 * Writes the reference sequence of records to a new journal and closes
+	 * it: updates 1 to 4 are fetched, 2 and 1 are processed and offset 1 is
+	 * committed in between. The last record is the completion of update 1.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @return the state of the journal.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static JournalState fill(File directory) throws IOException {
+		UpdateJournal journal = UpdateJournal.open(directory, LARGE_CAPACITY);
+		journal.begin(1, payload(1));
+		journal.begin(2, payload(2));
+		journal.begin(3, payload(3));
+		journal.complete(2);
+		journal.commit(1);
+		journal.begin(4, payload(4));
+		journal.complete(1);
+		journal.close();
+		return filled();
+	}
+
+	/**
+	 * Gets the state written by {@link #fill(File)}.
+	 *
+	 * @return the state of the filled journal.
+	 */
+	private static JournalState filled() {
+		JournalState state = new JournalState();
+		state.begin(1, payload(1));
+		state.begin(2, payload(2));
+		state.begin(3, payload(3));
+		state.pending.remove(2L);
+		state.committedOffset = 1;
+		state.begin(4, payload(4));
+		state.pending.remove(1L);
+		return state;
+	}
+
+	/**
+	 * Opens a journal, checks the recovered state and the offset of an
+	 * {@link OffsetTracker} restored from it, then closes it.
+	 *
+	 * @param scenario
+	 *            the name of the scenario, for the error messages.
+	 * @param directory
+	 *            the directory of the journal.
+	 * @param capacity
+	 *            the capacity of the journal.
+	 * @param expected
+	 *            the expected state.
+	 * @throws IOException
+	 *             if the journal files can't be accessed.
+	 */
+	private static void check(String scenario, File directory, int capacity,
+			JournalState expected) throws IOException {
+		UpdateJournal journal = UpdateJournal.open(directory, capacity);
+		try {
+			JournalState actual = JournalState.of(journal);
+			if (!actual.equals(expected)) {
+				throw new IllegalStateException(scenario + ": recovered "
+						+ actual + " instead of " + expected);
+			}
+
+			// Replays the journal as the poller does on start.
+			SortedMap<Long, byte[]> pending = journal.getPendingUpdates();
+			OffsetTracker tracker = new OffsetTracker(null);
+			tracker.restore(pending.keySet(),
+					journal.getHighestUpdateId() + 1);
+			if (tracker.getOffset() != expected.expectedOffset()) {
+				throw new IllegalStateException(scenario + ": offset "
+						+ tracker.getOffset() + " instead of "
+						+ expected.expectedOffset());
+			}
+			if (tracker.getInFlight() != pending.size()) {
+				throw new IllegalStateException(scenario + ": "
+						+ tracker.getInFlight() + " updates in flight instead of "
+						+ pending.size());
+			}
+			// The updates already recorded are not processed again, the
+			// following ones are.
+			long highest = expected.highestUpdateId;
+			if (highest >= 0 && tracker.begin(highest)) {
+				throw new IllegalStateException(scenario + ": update "
+						+ highest + " accepted again");
+			}
+			if (!tracker.begin(highest + 1)) {
+				throw new IllegalStateException(scenario + ": update "
+						+ (highest + 1) + " rejected");
+			}
+		} finally {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Gets the offsets of the records of a journal file which has never been
+	 * compacted.
+	 *
+	 * @param file
+	 *            the journal file.
+	 * @return the offsets of the records, in order.
+	 * @throws IOException
+	 *             if the file can't be read.
+	 */
+	private static List<Integer> recordOffsets(File file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		List<Integer> offsets = new ArrayList<Integer>();
+		int position = HEADER_SIZE;
+		while (position + RECORD_OVERHEAD <= buffer.limit()
+				&& buffer.get(position + 4) != 0) {
+			offsets.add(position);
+			position += RECORD_OVERHEAD + buffer.getInt(position);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Gets the highest valid generation of a journal, as far as the checks
+	 * are concerned: the highest generation written in the file headers.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @return the highest generation.
+	 * @throws IOException
+	 *             if the files can't be read.
+	 */
+	private static long currentGeneration(File directory) throws IOException {
+		return Math.max(
+				ByteBuffer.wrap(read(journalFile(directory, 0), 0, 8))
+						.getLong(),
+				ByteBuffer.wrap(read(journalFile(directory, 1), 0, 8))
+						.getLong());
+	}
+
+	/**
+	 * Gets a file of a journal.
+	 *
+	 * @param directory
+	 *            the directory of the journal.
+	 * @param index
+	 *            the index of the file.
+	 * @return the journal file.
+	 */
+	private static File journalFile(File directory, int index) {
+		return new File(directory, "updates-" + index + ".journal");
+	}
+
+	/**
+	 * Reads some bytes of a file.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param position
+	 *            the position of the first byte.
+	 * @param length
+	 *            the number of bytes to read.
+	 * @return the bytes read.
+	 * @throws IOException
+	 *             if the file can't be read.
+	 */
+	private static byte[] read(File file, long position, int length)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[length];
+			raf.seek(position);
+			raf.readFully(bytes);
+			return bytes;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Overwrites some bytes of a file.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param position
+	 *            the position of the first byte.
+	 * @param bytes
+	 *            the bytes to write.
+	 * @throws IOException
+	 *             if the file can't be written.
+	 */
+	private static void patch(File file, long position, byte[] bytes)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(position);
+			raf.write(bytes);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Deletes a file or a directory with all its content.
+	 *
+	 * @param file
+	 *            the file to delete.
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Builds the raw JSON of an update.
+	 *
+	 * @param updateId
+	 *            the ID of the update.
+	 * @return the raw JSON.
+	 */
+	private static byte[] payload(long updateId) {
+		return ("{\"update_id\":" + updateId + ",\"message\":{\"text\":\"m"
+				+ updateId + "\"}}").getBytes(UTF_8);
+	}
+
+	/**
+	 * The state of a journal, either expected or recovered.
+	 */
+	private static class JournalState {
+
+		/**
+		 * The updates not processed yet, with their raw JSON as a string.
+		 */
+		private final TreeMap<Long, String> pending = new TreeMap<Long, String>();
+
+		/**
+		 * The last committed offset.
+		 */
+		private long committedOffset;
+
+		/**
+		 * The highest update ID recorded.
+		 */
+		private long highestUpdateId = -1;
+
+		/**
+		 * Records an update fetched.
+		 *
+		 * @param updateId
+		 *            the ID of the update.
+		 * @param payload
+		 *            the raw JSON of the update.
+		 */
+		void begin(long updateId, byte[] payload) {
+			this.pending.put(updateId, new String(payload, UTF_8));
+			this.highestUpdateId = Math.max(this.highestUpdateId, updateId);
+		}
+
+		/**
+		 * Gets the offset a poller resumes from: the oldest update not
+		 * processed yet or the one following the highest recorded.
+		 *
+		 * @return the offset.
+		 */
+		long expectedOffset() {
+			return this.pending.isEmpty() ? this.highestUpdateId + 1
+					: Math.min(this.pending.firstKey(),
+							this.highestUpdateId + 1);
+		}
+
+		/**
+		 * Copies this state.
+		 *
+		 * @return the copy.
+		 */
+		JournalState copy() {
+			JournalState copy = new JournalState();
+			copy.pending.putAll(this.pending);
+			copy.committedOffset = this.committedOffset;
+			copy.highestUpdateId = this.highestUpdateId;
+			return copy;
+		}
+
+		/**
+		 * Reads the state of an opened journal.
+		 *
+		 * @param journal
+		 *            the journal.
+		 * @return the state of the journal.
+		 */
+		static JournalState of(UpdateJournal journal) {
+			JournalState state = new JournalState();
+			for (Map.Entry<Long, byte[]> entry : journal.getPendingUpdates()
+					.entrySet()) {
+				state.pending.put(entry.getKey(), new String(entry.getValue(),
+						UTF_8));
+			}
+			state.committedOffset = journal.getCommittedOffset();
+			state.highestUpdateId = journal.getHighestUpdateId();
+			return state;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof JournalState)) {
+				return false;
+			}
+			JournalState other = (JournalState) obj;
+			return this.pending.equals(other.pending)
+					&& this.committedOffset == other.committedOffset
+					&& this.highestUpdateId == other.highestUpdateId;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new Object[] { this.pending,
+					this.committedOffset, this.highestUpdateId });
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "JournalState [pending=" + pending.keySet()
+					+ ", committedOffset=" + committedOffset
+					+ ", highestUpdateId=" + highestUpdateId + "]";
+		}
+
+	}
+
+}
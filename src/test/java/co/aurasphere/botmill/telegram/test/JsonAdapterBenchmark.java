@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.test;
+
+import java.util.Calendar;
+
+import co.aurasphere.botmill.telegram.internal.util.json.CalendarFromTimestampJsonDeserializer;
+import co.aurasphere.botmill.telegram.internal.util.json.adapter.ModelTypeAdapterFactory;
+import co.aurasphere.botmill.telegram.model.update.Update;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares the reflective Gson adapters with the ones provided by
+ * {@link ModelTypeAdapterFactory} when parsing updates, after checking that
+ * both produce the same objects. Run it as a plain Java application; for
+ * rigorous numbers use a JVM with a fixed heap and disabled frequency
+ * scaling.
+ */
+public class JsonAdapterBenchmark {
+
+	/**
+	 * A text message replying to another message, with entities.
+	 */
+	static final String TEXT_UPDATE = "{\"update_id\":815426183,\"message\":{\"message_id\":4211,"
+			+ "\"from\":{\"id\":123456789,\"first_name\":\"Mario\",\"last_name\":\"Rossi\",\"username\":\"mrossi\",\"language_code\":\"it\"},"
+			+ "\"chat\":{\"id\":-1001234567890,\"title\":\"BotMill\",\"username\":\"botmill\",\"type\":\"supergroup\"},"
+			+ "\"date\":1493219434,\"text\":\"/start@botmill_bot hello https://botmill.io\","
+			+ "\"entities\":[{\"type\":\"bot_command\",\"offset\":0,\"length\":18},{\"type\":\"url\",\"offset\":25,\"length\":18}],"
+			+ "\"reply_to_message\":{\"message_id\":4210,\"from\":{\"id\":987654321,\"first_name\":\"Anna\"},"
+			+ "\"chat\":{\"id\":-1001234567890,\"title\":\"BotMill\",\"type\":\"supergroup\"},\"date\":1493219400,"
+			+ "\"photo\":[{\"file_id\":\"AgADBAADq6cxG\",\"file_size\":1204,\"width\":90,\"height\":67},"
+			+ "{\"file_id\":\"AgADBAADq6cxH\",\"file_size\":18311,\"width\":320,\"height\":240}],\"caption\":\"look\"}}}";
+
+	/**
+	 * A callback query from an inline keyboard.
+	 */
+	static final String CALLBACK_UPDATE = "{\"update_id\":815426184,\"callback_query\":{\"id\":\"530330862286110531\","
+			+ "\"from\":{\"id\":123456789,\"first_name\":\"Mario\",\"username\":\"mrossi\"},"
+			+ "\"message\":{\"message_id\":4212,\"chat\":{\"id\":123456789,\"first_name\":\"Mario\",\"type\":\"private\"},"
+			+ "\"date\":1493219500,\"text\":\"Choose\"},\"chat_instance\":\"-2854716387292715\",\"data\":\"choice_1\"}}";
+
+	/**
+	 * The number of iterations of each measure.
+	 */
+	private static final int ITERATIONS = 200000;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		Gson reflective = new GsonBuilder().registerTypeHierarchyAdapter(
+				Calendar.class, new CalendarFromTimestampJsonDeserializer())
+				.create();
+		Gson generated = new GsonBuilder()
+				.registerTypeHierarchyAdapter(Calendar.class,
+						new CalendarFromTimestampJsonDeserializer())
+				.registerTypeAdapterFactory(new ModelTypeAdapterFactory())
+				.create();
+
+		for (String json : new String[] { TEXT_UPDATE, CALLBACK_UPDATE }) {
+			String expected = reflective.toJson(reflective.fromJson(json,
+					Update.class));
+			String actual = reflective.toJson(generated.fromJson(json,
+					Update.class));
+			if (!expected.equals(actual)) {
+				throw new IllegalStateException("Adapters disagree:\n"
+						+ expected + "\n" + actual);
+			}
+		}
+
+		// Warm-up, then measure.
+		for (int round = 0; round < 3; round++) {
+			long reflectiveTime = measure(reflective);
+			long generatedTime = measure(generated);
+			System.out.println("Round " + round + ": reflective "
+					+ reflectiveTime / ITERATIONS + " ns/op, adapters "
+					+ generatedTime / ITERATIONS + " ns/op");
+		}
+	}
+
+	/**
+	 * Parses the sample updates repeatedly.
+	 *
+	 * @param gson
+	 *            the Gson instance to use.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	private static long measure(Gson gson) {
+		long start = System.nanoTime();
+		int sink = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			Update update = gson.fromJson((i & 1) == 0 ? TEXT_UPDATE
+					: CALLBACK_UPDATE, Update.class);
+			sink += update.getUpdateId().length();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 0) {
+			System.out.println(sink);
+		}
+		return elapsed;
+	}
+
+}
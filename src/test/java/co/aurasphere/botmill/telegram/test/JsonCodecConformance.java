@@ -0,0 +1,248 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.test;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import co.aurasphere.botmill.telegram.internal.util.json.GsonJsonCodec;
+import co.aurasphere.botmill.telegram.internal.util.json.JsonCodec;
+import co.aurasphere.botmill.telegram.internal.util.json.StreamingJsonCodec;
+import co.aurasphere.botmill.telegram.model.ApiResponse;
+import co.aurasphere.botmill.telegram.model.Message;
+import co.aurasphere.botmill.telegram.model.outcoming.response.TextMessageResponse;
+import co.aurasphere.botmill.telegram.model.update.Update;
+import co.aurasphere.botmill.telegram.model.update.WebhookInfo;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Checks that every {@link JsonCodec} reads and writes the payloads captured
+ * from Telegram like the default {@link GsonJsonCodec}, then compares their
+ * speed. The JSON produced is compared as a tree, since codecs may escape
+ * characters differently. Run it as a plain Java application; any mismatch
+ * ends it with an exception.
+ */
+public class JsonCodecConformance {
+
+	/**
+	 * An inline query.
+	 */
+	static final String INLINE_QUERY_UPDATE = "{\"update_id\":815426185,\"inline_query\":{\"id\":\"530330862891712013\","
+			+ "\"from\":{\"id\":123456789,\"first_name\":\"Mario\",\"username\":\"mrossi\",\"language_code\":\"it\"},"
+			+ "\"query\":\"pizza <margherita> & \\\"more\\\" \\u00e8\",\"offset\":\"\"}}";
+
+	/**
+	 * An edited message forwarded from a channel.
+	 */
+	static final String EDITED_UPDATE = "{\"update_id\":815426186,\"edited_message\":{\"message_id\":4213,"
+			+ "\"from\":{\"id\":123456789,\"first_name\":\"Mario\"},"
+			+ "\"chat\":{\"id\":123456789,\"first_name\":\"Mario\",\"type\":\"private\"},\"date\":1493219600,"
+			+ "\"forward_from_chat\":{\"id\":-1001098765432,\"title\":\"News\",\"type\":\"channel\"},"
+			+ "\"forward_date\":1493210000,\"edit_date\":1493219650,\"text\":\"fixed\\ntypo \\ud83d\\ude00\"}}";
+
+	/**
+	 * The result of a sendMessage.
+	 */
+	static final String SEND_MESSAGE_RESPONSE = "{\"ok\":true,\"result\":{\"message_id\":4214,"
+			+ "\"from\":{\"id\":311223344,\"first_name\":\"BotMill\",\"username\":\"botmill_bot\"},"
+			+ "\"chat\":{\"id\":123456789,\"first_name\":\"Mario\",\"type\":\"private\"},\"date\":1493219700,\"text\":\"Hi!\"}}";
+
+	/**
+	 * A flood control error.
+	 */
+	static final String FLOOD_RESPONSE = "{\"ok\":false,\"error_code\":429,"
+			+ "\"description\":\"Too Many Requests: retry after 7\",\"parameters\":{\"retry_after\":7}}";
+
+	/**
+	 * The result of a getUpdates.
+	 */
+	static final String UPDATES_RESPONSE = "{\"ok\":true,\"result\":["
+			+ JsonAdapterBenchmark.TEXT_UPDATE + ","
+			+ JsonAdapterBenchmark.CALLBACK_UPDATE + "," + INLINE_QUERY_UPDATE
+			+ "]}";
+
+	/**
+	 * The result of a getWebhookInfo.
+	 */
+	static final String WEBHOOK_INFO = "{\"url\":\"https://botmill.io/hook\",\"has_custom_certificate\":false,"
+			+ "\"pending_update_count\":3,\"last_error_date\":1493219000,"
+			+ "\"last_error_message\":\"Wrong response from the webhook: 502 Bad Gateway\",\"max_connections\":40}";
+
+	/**
+	 * The payloads with their types.
+	 */
+	private static final Object[][] PAYLOADS = {
+			{ JsonAdapterBenchmark.TEXT_UPDATE, Update.class },
+			{ JsonAdapterBenchmark.CALLBACK_UPDATE, Update.class },
+			{ INLINE_QUERY_UPDATE, Update.class },
+			{ EDITED_UPDATE, Update.class },
+			{ SEND_MESSAGE_RESPONSE,
+					new TypeToken<ApiResponse<Message>>() {
+					}.getType() },
+			{ FLOOD_RESPONSE, new TypeToken<ApiResponse<Message>>() {
+			}.getType() },
+			{ UPDATES_RESPONSE, new TypeToken<ApiResponse<List<Update>>>() {
+			}.getType() }, { WEBHOOK_INFO, WebhookInfo.class } };
+
+	/**
+	 * The number of iterations of each measure.
+	 */
+	private static final int ITERATIONS = 100000;
+
+	/**
+	 * Runs the checks and the benchmark.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		JsonCodec reference = new GsonJsonCodec();
+		JsonCodec[] codecs = { reference, new StreamingJsonCodec() };
+
+		TextMessageResponse reply = new TextMessageResponse();
+		reply.setChatId("-1001234567890");
+		reply.setText("<b>Hello</b> & 'welcome' \u00e8 \ud83d\ude00");
+
+		for (JsonCodec codec : codecs) {
+			for (Object[] payload : PAYLOADS) {
+				String json = (String) payload[0];
+				Type type = (Type) payload[1];
+				// Reading: the objects must be the same.
+				Object expected = reference.fromJson(json, type);
+				Object actual = codec.fromJson(json, type);
+				assertSameJson(codec, reference.toJson(expected),
+						reference.toJson(actual));
+				// Writing: the JSON must be equivalent.
+				assertSameJson(codec, reference.toJson(expected),
+						codec.toJson(expected));
+			}
+			assertSameJson(codec, reference.toJson(reply), codec.toJson(reply));
+
+			check(codec, codec.fromJson((String) null, Update.class) == null,
+					"null input");
+			check(codec, codec.fromJson("", Update.class) == null,
+					"empty input");
+			check(codec, "null".equals(codec.toJson(null)), "null output");
+			check(codec, rejects(codec, "{\"update_id\":1} {}"),
+					"trailing data");
+			check(codec, rejects(codec, "{\"update_id\":"), "truncated input");
+			System.out.println(codec + " conforms.");
+		}
+
+		// Warm-up, then measure.
+		for (int round = 0; round < 3; round++) {
+			StringBuilder line = new StringBuilder("Round " + round + ":");
+			for (JsonCodec codec : codecs) {
+				line.append(" ").append(codec.getClass().getSimpleName())
+						.append(" ").append(measure(codec) / ITERATIONS)
+						.append(" ns/op");
+			}
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Checks that two JSON strings represent the same tree.
+	 *
+	 * @param codec
+	 *            the codec being checked.
+	 * @param expected
+	 *            the expected JSON.
+	 * @param actual
+	 *            the JSON produced.
+	 */
+	private static void assertSameJson(JsonCodec codec, String expected,
+			String actual) {
+		JsonElement expectedTree = new JsonParser().parse(expected);
+		JsonElement actualTree = new JsonParser().parse(actual);
+		check(codec, expectedTree.equals(actualTree), "JSON mismatch:\n"
+				+ expected + "\n" + actual);
+	}
+
+	/**
+	 * Checks if a codec refuses an invalid input.
+	 *
+	 * @param codec
+	 *            the codec being checked.
+	 * @param json
+	 *            the invalid input.
+	 * @return true if the codec throws a {@link JsonParseException}.
+	 */
+	private static boolean rejects(JsonCodec codec, String json) {
+		try {
+			codec.fromJson(json, Update.class);
+			return false;
+		} catch (JsonParseException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Fails if a condition doesn't hold.
+	 *
+	 * @param codec
+	 *            the codec being checked.
+	 * @param condition
+	 *            the condition.
+	 * @param message
+	 *            the description of the check.
+	 */
+	private static void check(JsonCodec codec, boolean condition,
+			String message) {
+		if (!condition) {
+			throw new IllegalStateException(codec + ": " + message);
+		}
+	}
+
+	/**
+	 * Reads a sample update and writes a sample reply repeatedly.
+	 *
+	 * @param codec
+	 *            the codec to use.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	private static long measure(JsonCodec codec) {
+		TextMessageResponse reply = new TextMessageResponse();
+		reply.setChatId("-1001234567890");
+		reply.setText("Hello <b>Mario</b>, welcome to BotMill & friends!");
+		long start = System.nanoTime();
+		int sink = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			Update update = codec.fromJson(JsonAdapterBenchmark.TEXT_UPDATE,
+					Update.class);
+			sink += update.getUpdateId().length();
+			sink += codec.toJson(reply).length();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 0) {
+			System.out.println(sink);
+		}
+		return elapsed;
+	}
+
+}
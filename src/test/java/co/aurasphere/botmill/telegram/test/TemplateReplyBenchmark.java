@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.test;
+
+import java.nio.charset.Charset;
+
+import co.aurasphere.botmill.telegram.autoreply.MessageAutoReply;
+import co.aurasphere.botmill.telegram.internal.util.json.JsonUtils;
+import co.aurasphere.botmill.telegram.model.outcoming.TelegramBotMillResponse;
+import co.aurasphere.botmill.telegram.model.outcoming.response.PreparedResponse;
+import co.aurasphere.botmill.telegram.model.update.Update;
+
+import com.google.gson.JsonParser;
+
+/**
+ * Compares the cost of producing the body of a {@link MessageAutoReply} with
+ * and without a precompiled template, after checking that both produce the
+ * same JSON. The measure covers building the response and encoding it in
+ * UTF-8, which is what is sent to Telegram. Run it as a plain Java
+ * application.
+ */
+public class TemplateReplyBenchmark {
+
+	/**
+	 * The UTF-8 charset.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The text of the reply.
+	 */
+	private static final String REPLY = "Thanks for your message! We will get back to you "
+			+ "as soon as possible. Meanwhile, check out https://botmill.io \u00e8 \"quoted\"";
+
+	/**
+	 * The number of iterations of each measure.
+	 */
+	private static final int ITERATIONS = 500000;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		Update update = JsonUtils.fromJson(JsonAdapterBenchmark.TEXT_UPDATE,
+				Update.class);
+
+		MessageAutoReply classic = new MessageAutoReply(REPLY);
+		MessageAutoReply precompiled = new MessageAutoReply(REPLY);
+		precompiled.setPrecompiled(true);
+		for (boolean quote : new boolean[] { false, true }) {
+			classic.setQuote(quote);
+			precompiled.setQuote(quote);
+			String expected = new String(body(classic, update), UTF_8);
+			String actual = new String(body(precompiled, update), UTF_8);
+			if (!new JsonParser().parse(expected).equals(
+					new JsonParser().parse(actual))) {
+				throw new IllegalStateException("Templates disagree:\n"
+						+ expected + "\n" + actual);
+			}
+		}
+
+		// Warm-up, then measure.
+		for (int round = 0; round < 3; round++) {
+			long classicTime = measure(classic, update);
+			long precompiledTime = measure(precompiled, update);
+			System.out.println("Round " + round + ": serialized "
+					+ classicTime / ITERATIONS + " ns/op, precompiled "
+					+ precompiledTime / ITERATIONS + " ns/op");
+		}
+	}
+
+	/**
+	 * Builds the body of a reply.
+	 *
+	 * @param reply
+	 *            the reply.
+	 * @param update
+	 *            the update replied to.
+	 * @return the UTF-8 JSON sent to Telegram.
+	 */
+	private static byte[] body(MessageAutoReply reply, Update update) {
+		TelegramBotMillResponse response = reply.createResponse(update);
+		if (response instanceof PreparedResponse) {
+			return ((PreparedResponse) response).toJsonBytes();
+		}
+		return JsonUtils.toJson(response).getBytes(UTF_8);
+	}
+
+	/**
+	 * Builds the body of a reply repeatedly.
+	 *
+	 * @param reply
+	 *            the reply.
+	 * @param update
+	 *            the update replied to.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	private static long measure(MessageAutoReply reply, Update update) {
+		long start = System.nanoTime();
+		int sink = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += body(reply, update).length;
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 0) {
+			System.out.println(sink);
+		}
+		return elapsed;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 BotMill.io
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package co.aurasphere.botmill.telegram.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import co.aurasphere.botmill.telegram.internal.dispatch.UpdateDeduplicator;
+
+/**
+ * Checks that {@link UpdateDeduplicator} remembers exactly the last update IDs
+ * of its window, even when forgotten IDs are received again, as happens when
+ * the servlet asks Telegram to redeliver an update. The deduplicator is
+ * compared with a straightforward model over random sequences of received
+ * and forgotten IDs. Run it as a plain Java application; any mismatch ends it
+ * with an exception.
+ */
+public class UpdateDeduplicatorConformance {
+
+	/**
+	 * The window sizes checked.
+	 */
+	private static final int[] WINDOW_SIZES = { 1, 2, 3, 8, 100 };
+
+	/**
+	 * The number of random operations for each window size.
+	 */
+	private static final int OPERATIONS = 200000;
+
+	/**
+	 * Runs the checks.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		// An update rejected and then redelivered must be filtered as soon as
+		// it has been accepted again.
+		UpdateDeduplicator deduplicator = new UpdateDeduplicator(2);
+		check(deduplicator.add(1), "first 1 rejected");
+		check(deduplicator.add(2), "first 2 rejected");
+		deduplicator.forget(1);
+		check(deduplicator.add(1), "redelivered 1 rejected");
+		check(!deduplicator.add(1), "duplicate of redelivered 1 accepted");
+		check(!deduplicator.add(2), "duplicate of 2 accepted");
+		System.out.println("Redelivered update filtered.");
+
+		Random random = new Random(42);
+		for (int windowSize : WINDOW_SIZES) {
+			deduplicator = new UpdateDeduplicator(windowSize);
+			Model model = new Model(windowSize);
+			long nextUpdateId = 0;
+			for (int i = 0; i < OPERATIONS; i++) {
+				// Mostly new IDs, with redeliveries of recent ones.
+				long updateId = random.nextInt(4) == 0 ? nextUpdateId
+						- random.nextInt(2 * windowSize + 2) : nextUpdateId++;
+				if (random.nextInt(5) == 0) {
+					deduplicator.forget(updateId);
+					model.forget(updateId);
+				} else {
+					boolean expected = model.add(updateId);
+					check(deduplicator.add(updateId) == expected, "window "
+							+ windowSize + ", operation " + i + ": update "
+							+ updateId + (expected ? " rejected" : " accepted"));
+				}
+			}
+			System.out.println(OPERATIONS + " operations conform with window "
+					+ windowSize + ".");
+		}
+	}
+
+	/**
+	 * Throws an exception if a condition is not met.
+	 *
+	 * @param condition
+	 *            the condition.
+	 * @param message
+	 *            the message of the exception.
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+
+	/**
+	 * Reference implementation of the window: the last accepted IDs in order
+	 * of arrival, where a forgotten ID keeps its place as a null until it's
+	 * evicted.
+	 */
+	private static class Model {
+
+		/**
+		 * The size of the window.
+		 */
+		private final int windowSize;
+
+		/**
+		 * The accepted IDs, oldest first.
+		 */
+		private final List<Long> window = new ArrayList<Long>();
+
+		/**
+		 * The IDs currently filtered.
+		 */
+		private final Set<Long> filtered = new HashSet<Long>();
+
+		/**
+		 * Instantiates a new Model.
+		 *
+		 * @param windowSize
+		 *            the {@link #windowSize}.
+		 */
+		Model(int windowSize) {
+			this.windowSize = windowSize;
+		}
+
+		/**
+		 * Receives an ID.
+		 *
+		 * @param updateId
+		 *            the ID.
+		 * @return true if the ID is new.
+		 */
+		boolean add(long updateId) {
+			if (!this.filtered.add(updateId)) {
+				return false;
+			}
+			if (this.window.size() == this.windowSize) {
+				Long evicted = this.window.remove(0);
+				if (evicted != null) {
+					this.filtered.remove(evicted);
+				}
+			}
+			this.window.add(updateId);
+			return true;
+		}
+
+		/**
+		 * Forgets an ID.
+		 *
+		 * @param updateId
+		 *            the ID.
+		 */
+		void forget(long updateId) {
+			if (this.filtered.remove(updateId)) {
+				this.window.set(this.window.lastIndexOf(updateId), null);
+			}
+		}
+
+	}
+
+}